@@ -0,0 +1,71 @@
+package com.ft.config.audit;
+
+import com.ft.domain.PersistentAuditEvent;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.boot.actuate.security.AuthenticationAuditListener.AUTHENTICATION_FAILURE;
+
+/**
+ * Cost of converting audit events between their persistent and actuator representations with {@link AuditEventConverter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditEventConverterBenchmark {
+
+    private AuditEventConverter auditEventConverter;
+
+    private PersistentAuditEvent persistentAuditEvent;
+
+    private List<PersistentAuditEvent> persistentAuditEvents;
+
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() {
+        auditEventConverter = new AuditEventConverter();
+
+        persistentAuditEvent = new PersistentAuditEvent();
+        persistentAuditEvent.setPrincipal("user");
+        persistentAuditEvent.setAuditEventType(AUTHENTICATION_FAILURE);
+        persistentAuditEvent.setAuditEventDate(Instant.now());
+        Map<String, String> eventData = new HashMap<>();
+        eventData.put("type", "org.springframework.security.authentication.BadCredentialsException");
+        eventData.put("message", "Bad credentials");
+        persistentAuditEvent.setData(eventData);
+
+        persistentAuditEvents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            persistentAuditEvents.add(persistentAuditEvent);
+        }
+
+        data = new HashMap<>(eventData);
+    }
+
+    @Benchmark
+    public AuditEvent convertToAuditEvent() {
+        return auditEventConverter.convertToAuditEvent(persistentAuditEvent);
+    }
+
+    @Benchmark
+    public List<AuditEvent> convertPageToAuditEvents() {
+        return auditEventConverter.convertToAuditEvent(persistentAuditEvents);
+    }
+
+    @Benchmark
+    public Map<String, String> convertDataToStrings() {
+        return auditEventConverter.convertDataToStrings(data);
+    }
+}
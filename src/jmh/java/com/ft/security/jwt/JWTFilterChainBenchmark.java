@@ -0,0 +1,114 @@
+package com.ft.security.jwt;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.security.AuthoritiesConstants;
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link JWTFilter} and {@link JWTRelayGatewayFilterFactory} pair for a proxied request.
+ * <p>
+ * {@code reparsePerFilter} replays the previous filters, which verified the token in {@code validateToken} and
+ * {@code getAuthentication} and again in the relay, while {@code parseOncePerExchange} runs the current filters.
+ * {@code anonymous} runs the current filters for a request without an {@code Authorization} header.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JWTFilterChainBenchmark {
+
+    @Param({"true", "false"})
+    public boolean tokenCache;
+
+    private String bearerToken;
+
+    private WebFilter jwtFilter;
+
+    private GatewayFilter relayFilter;
+
+    private WebFilter previousJwtFilter;
+
+    private GatewayFilter previousRelayFilter;
+
+    @Setup
+    public void setup() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(TokenProviderBenchmark.BASE64_SECRET);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getTokenCache().setEnabled(tokenCache);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, applicationProperties, meterRegistry);
+        tokenProvider.init();
+
+        bearerToken = "Bearer " + tokenProvider.createToken(new UsernamePasswordAuthenticationToken("user", "user",
+            Arrays.asList(new SimpleGrantedAuthority(AuthoritiesConstants.USER), new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN))), false);
+
+        jwtFilter = new JWTFilter(tokenProvider);
+        relayFilter = new JWTRelayGatewayFilterFactory(tokenProvider, meterRegistry).apply(new JWTRelayGatewayFilterFactory.Config());
+
+        previousJwtFilter = (exchange, chain) -> {
+            String jwt = exchange.getRequest().getHeaders().getFirst(JWTFilter.AUTHORIZATION_HEADER).substring(7);
+            if (tokenProvider.validateToken(jwt)) {
+                Authentication authentication = tokenProvider.getAuthentication(jwt);
+                exchange.getAttributes().put(Authentication.class.getName(), authentication);
+            }
+            return chain.filter(exchange);
+        };
+        previousRelayFilter = (exchange, chain) -> {
+            String jwt = exchange.getRequest().getHeaders().getFirst(JWTFilter.AUTHORIZATION_HEADER).substring(7);
+            if (tokenProvider.validateToken(jwt)) {
+                ServerHttpRequest request = exchange.getRequest().mutate()
+                    .header(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt)
+                    .build();
+                return chain.filter(exchange.mutate().request(request).build());
+            }
+            return chain.filter(exchange);
+        };
+    }
+
+    @Benchmark
+    public ServerWebExchange reparsePerFilter() {
+        return run(previousJwtFilter, previousRelayFilter);
+    }
+
+    @Benchmark
+    public ServerWebExchange parseOncePerExchange() {
+        return run(jwtFilter, relayFilter);
+    }
+
+    @Benchmark
+    public ServerWebExchange anonymous() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/services/backend/api/test"));
+        return run(exchange, jwtFilter, relayFilter);
+    }
+
+    private ServerWebExchange run(WebFilter webFilter, GatewayFilter gatewayFilter) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+            .get("/services/backend/api/test")
+            .header(JWTFilter.AUTHORIZATION_HEADER, bearerToken));
+        return run(exchange, webFilter, gatewayFilter);
+    }
+
+    private ServerWebExchange run(ServerWebExchange exchange, WebFilter webFilter, GatewayFilter gatewayFilter) {
+        webFilter.filter(exchange, filtered -> gatewayFilter.filter(filtered, relayed -> Mono.empty())).block();
+        return exchange;
+    }
+}
@@ -2,6 +2,9 @@ package com.ft.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Properties specific to Api Gateway.
  * <p>
@@ -10,4 +13,846 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Security security = new Security();
+
+    private final AuditEvents auditEvents = new AuditEvents();
+
+    private final Retention retention = new Retention();
+
+    private final Scheduling scheduling = new Scheduling();
+
+    public Security getSecurity() {
+        return security;
+    }
+
+    public AuditEvents getAuditEvents() {
+        return auditEvents;
+    }
+
+    public Retention getRetention() {
+        return retention;
+    }
+
+    public Scheduling getScheduling() {
+        return scheduling;
+    }
+
+    /**
+     * Leases of the scheduled jobs that run on a single instance, see {@link com.ft.service.JobLeaseService}.
+     */
+    public static class Scheduling {
+
+        /**
+         * Time after which the lease of a job expires, if the instance running it stops renewing it. Running jobs
+         * renew their lease three times in this time.
+         */
+        private long lockAtMostInSeconds = 3600;
+
+        /**
+         * Time the lease of a job is kept after it starts, so that instances whose clock is behind do not run it again.
+         */
+        private long lockAtLeastInSeconds = 60;
+
+        public long getLockAtMostInSeconds() {
+            return lockAtMostInSeconds;
+        }
+
+        public void setLockAtMostInSeconds(long lockAtMostInSeconds) {
+            this.lockAtMostInSeconds = lockAtMostInSeconds;
+        }
+
+        public long getLockAtLeastInSeconds() {
+            return lockAtLeastInSeconds;
+        }
+
+        public void setLockAtLeastInSeconds(long lockAtLeastInSeconds) {
+            this.lockAtLeastInSeconds = lockAtLeastInSeconds;
+        }
+    }
+
+    /**
+     * Deletion of old audit events and of users who never activated their account.
+     * <p>
+     * The retention of audit events is {@code jhipster.audit-events.retention-period}.
+     */
+    public static class Retention {
+
+        /**
+         * Let MongoDB delete expired documents with TTL indexes, see
+         * {@link com.ft.config.dbmigrations.RetentionMigration}. When disabled, scheduled jobs delete them in chunks.
+         */
+        private boolean ttlIndexes = true;
+
+        private int notActivatedUsersInDays = 3;
+
+        /**
+         * Number of documents removed by a single delete when TTL indexes are disabled.
+         */
+        private int deleteChunkSize = 1000;
+
+        public boolean isTtlIndexes() {
+            return ttlIndexes;
+        }
+
+        public void setTtlIndexes(boolean ttlIndexes) {
+            this.ttlIndexes = ttlIndexes;
+        }
+
+        public int getNotActivatedUsersInDays() {
+            return notActivatedUsersInDays;
+        }
+
+        public void setNotActivatedUsersInDays(int notActivatedUsersInDays) {
+            this.notActivatedUsersInDays = notActivatedUsersInDays;
+        }
+
+        public int getDeleteChunkSize() {
+            return deleteChunkSize;
+        }
+
+        public void setDeleteChunkSize(int deleteChunkSize) {
+            this.deleteChunkSize = deleteChunkSize;
+        }
+    }
+
+    /**
+     * Buffered writes of audit events, see {@link com.ft.service.AuditEventWriter}.
+     */
+    public static class AuditEvents {
+
+        /**
+         * What to do with an event when the buffer is full.
+         */
+        public enum OverflowPolicy {
+            /**
+             * Drop the event, so the request does not wait.
+             */
+            DROP,
+            /**
+             * Write the event on its own, so the request waits for it.
+             */
+            BLOCK
+        }
+
+        /**
+         * How events are stored in MongoDB.
+         */
+        public enum Storage {
+            /**
+             * One {@link com.ft.domain.PersistentAuditEvent} document per event.
+             */
+            DOCUMENT,
+            /**
+             * One {@link com.ft.domain.PersistentAuditEventBucket} document per principal and hour.
+             */
+            BUCKET
+        }
+
+        /**
+         * Number of events waiting to be written.
+         */
+        private int bufferSize = 10000;
+
+        /**
+         * Number of events written by a single insert, a full batch is written at once.
+         */
+        private int batchSize = 100;
+
+        /**
+         * Longest time an event waits for its batch to be full.
+         */
+        private long flushIntervalInMilliseconds = 1000;
+
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        private Storage storage = Storage.DOCUMENT;
+
+        /**
+         * Number of events in a bucket, beyond which the next events of the hour go to a new bucket.
+         */
+        private int maxEventsPerBucket = 200;
+
+        private final Journal journal = new Journal();
+
+        private final Archive archive = new Archive();
+
+        private final Stream stream = new Stream();
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushIntervalInMilliseconds() {
+            return flushIntervalInMilliseconds;
+        }
+
+        public void setFlushIntervalInMilliseconds(long flushIntervalInMilliseconds) {
+            this.flushIntervalInMilliseconds = flushIntervalInMilliseconds;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public Storage getStorage() {
+            return storage;
+        }
+
+        public void setStorage(Storage storage) {
+            this.storage = storage;
+        }
+
+        public int getMaxEventsPerBucket() {
+            return maxEventsPerBucket;
+        }
+
+        public void setMaxEventsPerBucket(int maxEventsPerBucket) {
+            this.maxEventsPerBucket = maxEventsPerBucket;
+        }
+
+        public Journal getJournal() {
+            return journal;
+        }
+
+        public Archive getArchive() {
+            return archive;
+        }
+
+        public Stream getStream() {
+            return stream;
+        }
+
+        /**
+         * Local journal buffering events instead of memory, see {@link com.ft.service.AuditEventJournal}.
+         */
+        public static class Journal {
+
+            private boolean enabled = false;
+
+            private String directory = "data/audit-journal";
+
+            private int segmentSizeInBytes = 8 * 1024 * 1024;
+
+            /**
+             * Number of segments kept on disk, events are handled by the overflow policy beyond it.
+             */
+            private int maxSegments = 16;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+
+            public int getSegmentSizeInBytes() {
+                return segmentSizeInBytes;
+            }
+
+            public void setSegmentSizeInBytes(int segmentSizeInBytes) {
+                this.segmentSizeInBytes = segmentSizeInBytes;
+            }
+
+            public int getMaxSegments() {
+                return maxSegments;
+            }
+
+            public void setMaxSegments(int maxSegments) {
+                this.maxSegments = maxSegments;
+            }
+        }
+
+        /**
+         * Archive of old events in MinIO, see {@link com.ft.service.AuditEventArchiveService}.
+         */
+        public static class Archive {
+
+            private boolean enabled = false;
+
+            /**
+             * Age in days from which events are moved to MinIO, which must be less than the retention period.
+             */
+            private int afterDays = 7;
+
+            private String objectPrefix = "audit-events";
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getAfterDays() {
+                return afterDays;
+            }
+
+            public void setAfterDays(int afterDays) {
+                this.afterDays = afterDays;
+            }
+
+            public String getObjectPrefix() {
+                return objectPrefix;
+            }
+
+            public void setObjectPrefix(String objectPrefix) {
+                this.objectPrefix = objectPrefix;
+            }
+        }
+
+        /**
+         * Live stream of new events, see {@link com.ft.service.AuditEventStreamService}.
+         */
+        public static class Stream {
+
+            /**
+             * Number of events buffered for a slow client, beyond which its oldest events are dropped.
+             */
+            private int clientBufferSize = 256;
+
+            public int getClientBufferSize() {
+                return clientBufferSize;
+            }
+
+            public void setClientBufferSize(int clientBufferSize) {
+                this.clientBufferSize = clientBufferSize;
+            }
+        }
+    }
+
+    public static class Security {
+
+        private final TokenCache tokenCache = new TokenCache();
+
+        private final Signing signing = new Signing();
+
+        private final Revocation revocation = new Revocation();
+
+        private final RefreshToken refreshToken = new RefreshToken();
+
+        private final PasswordEncoder passwordEncoder = new PasswordEncoder();
+
+        private final LoginThrottling loginThrottling = new LoginThrottling();
+
+        private final UserCache userCache = new UserCache();
+
+        public TokenCache getTokenCache() {
+            return tokenCache;
+        }
+
+        public Signing getSigning() {
+            return signing;
+        }
+
+        public Revocation getRevocation() {
+            return revocation;
+        }
+
+        public RefreshToken getRefreshToken() {
+            return refreshToken;
+        }
+
+        public PasswordEncoder getPasswordEncoder() {
+            return passwordEncoder;
+        }
+
+        public LoginThrottling getLoginThrottling() {
+            return loginThrottling;
+        }
+
+        public UserCache getUserCache() {
+            return userCache;
+        }
+
+        /**
+         * Cache of already verified JWTs, see {@link com.ft.security.jwt.VerifiedTokenCache}.
+         */
+        public static class TokenCache {
+
+            private boolean enabled = true;
+
+            private long maximumSize = 10000;
+
+            /**
+             * Upper bound for an entry's lifetime, used for tokens that carry no {@code exp} claim.
+             */
+            private long timeToLiveInSeconds = 3600;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getMaximumSize() {
+                return maximumSize;
+            }
+
+            public void setMaximumSize(long maximumSize) {
+                this.maximumSize = maximumSize;
+            }
+
+            public long getTimeToLiveInSeconds() {
+                return timeToLiveInSeconds;
+            }
+
+            public void setTimeToLiveInSeconds(long timeToLiveInSeconds) {
+                this.timeToLiveInSeconds = timeToLiveInSeconds;
+            }
+        }
+
+        /**
+         * In-memory list of revoked JWTs, see {@link com.ft.security.jwt.TokenRevocationList}.
+         */
+        public static class Revocation {
+
+            /**
+             * Number of revoked tokens the Bloom filter is sized for, it grows when more tokens are revoked.
+             */
+            private int expectedRevokedTokens = 10000;
+
+            private double falsePositiveProbability = 0.01;
+
+            public int getExpectedRevokedTokens() {
+                return expectedRevokedTokens;
+            }
+
+            public void setExpectedRevokedTokens(int expectedRevokedTokens) {
+                this.expectedRevokedTokens = expectedRevokedTokens;
+            }
+
+            public double getFalsePositiveProbability() {
+                return falsePositiveProbability;
+            }
+
+            public void setFalsePositiveProbability(double falsePositiveProbability) {
+                this.falsePositiveProbability = falsePositiveProbability;
+            }
+        }
+
+        /**
+         * bcrypt hashing of passwords, see {@link com.ft.security.CalibratedPasswordEncoder}, and the threads that run it,
+         * see {@link com.ft.security.PasswordEncoderScheduler}.
+         */
+        public static class PasswordEncoder {
+
+            /**
+             * Number of threads, defaults to the number of processors.
+             */
+            private int threads = Runtime.getRuntime().availableProcessors();
+
+            /**
+             * Number of passwords waiting for a thread, beyond which requests are rejected with a 503 status.
+             */
+            private int queueCapacity = 100;
+
+            /**
+             * bcrypt strength, calibrated at startup against {@code targetLatencyInMilliseconds} when not set.
+             */
+            private Integer strength;
+
+            /**
+             * Time a single password hash should take on this host.
+             */
+            private long targetLatencyInMilliseconds = 250;
+
+            private int minimumStrength = 10;
+
+            private int maximumStrength = 14;
+
+            public int getThreads() {
+                return threads;
+            }
+
+            public void setThreads(int threads) {
+                this.threads = threads;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public Integer getStrength() {
+                return strength;
+            }
+
+            public void setStrength(Integer strength) {
+                this.strength = strength;
+            }
+
+            public long getTargetLatencyInMilliseconds() {
+                return targetLatencyInMilliseconds;
+            }
+
+            public void setTargetLatencyInMilliseconds(long targetLatencyInMilliseconds) {
+                this.targetLatencyInMilliseconds = targetLatencyInMilliseconds;
+            }
+
+            public int getMinimumStrength() {
+                return minimumStrength;
+            }
+
+            public void setMinimumStrength(int minimumStrength) {
+                this.minimumStrength = minimumStrength;
+            }
+
+            public int getMaximumStrength() {
+                return maximumStrength;
+            }
+
+            public void setMaximumStrength(int maximumStrength) {
+                this.maximumStrength = maximumStrength;
+            }
+        }
+
+        /**
+         * Cache of the credentials checked at login, see {@link com.ft.security.UserCredentialsCache}.
+         */
+        public static class UserCache {
+
+            private boolean enabled = true;
+
+            private long maximumSize = 10000;
+
+            /**
+             * How long other gateway instances may use credentials changed on this one.
+             */
+            private long timeToLiveInSeconds = 60;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getMaximumSize() {
+                return maximumSize;
+            }
+
+            public void setMaximumSize(long maximumSize) {
+                this.maximumSize = maximumSize;
+            }
+
+            public long getTimeToLiveInSeconds() {
+                return timeToLiveInSeconds;
+            }
+
+            public void setTimeToLiveInSeconds(long timeToLiveInSeconds) {
+                this.timeToLiveInSeconds = timeToLiveInSeconds;
+            }
+        }
+
+        /**
+         * Limits on login attempts, checked before the password, see {@link com.ft.security.LoginThrottle}.
+         */
+        public static class LoginThrottling {
+
+            private boolean enabled = true;
+
+            /**
+             * Login attempts allowed per client IP address in {@code durationInSeconds}.
+             */
+            private long ipLimit = 20;
+
+            /**
+             * Login attempts allowed per login in {@code durationInSeconds}.
+             */
+            private long loginLimit = 5;
+
+            private long durationInSeconds = 60;
+
+            /**
+             * Number of client IP addresses and logins that are tracked, the least used are forgotten first.
+             */
+            private long maximumSize = 100000;
+
+            /**
+             * Consecutive failures after which a login is locked out.
+             */
+            private int lockoutThreshold = 5;
+
+            /**
+             * Duration of the first lockout, doubled for each further failure.
+             */
+            private long lockoutDurationInSeconds = 60;
+
+            private long maximumLockoutDurationInSeconds = 3600;
+
+            /**
+             * IP addresses or CIDR ranges of the proxies and load balancers in front of the gateway, whose
+             * {@code X-Forwarded-For} header gives the client IP address.
+             */
+            private List<String> trustedProxies = new ArrayList<>();
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getIpLimit() {
+                return ipLimit;
+            }
+
+            public void setIpLimit(long ipLimit) {
+                this.ipLimit = ipLimit;
+            }
+
+            public long getLoginLimit() {
+                return loginLimit;
+            }
+
+            public void setLoginLimit(long loginLimit) {
+                this.loginLimit = loginLimit;
+            }
+
+            public long getDurationInSeconds() {
+                return durationInSeconds;
+            }
+
+            public void setDurationInSeconds(long durationInSeconds) {
+                this.durationInSeconds = durationInSeconds;
+            }
+
+            public long getMaximumSize() {
+                return maximumSize;
+            }
+
+            public void setMaximumSize(long maximumSize) {
+                this.maximumSize = maximumSize;
+            }
+
+            public List<String> getTrustedProxies() {
+                return trustedProxies;
+            }
+
+            public void setTrustedProxies(List<String> trustedProxies) {
+                this.trustedProxies = trustedProxies;
+            }
+
+            public int getLockoutThreshold() {
+                return lockoutThreshold;
+            }
+
+            public void setLockoutThreshold(int lockoutThreshold) {
+                this.lockoutThreshold = lockoutThreshold;
+            }
+
+            public long getLockoutDurationInSeconds() {
+                return lockoutDurationInSeconds;
+            }
+
+            public void setLockoutDurationInSeconds(long lockoutDurationInSeconds) {
+                this.lockoutDurationInSeconds = lockoutDurationInSeconds;
+            }
+
+            public long getMaximumLockoutDurationInSeconds() {
+                return maximumLockoutDurationInSeconds;
+            }
+
+            public void setMaximumLockoutDurationInSeconds(long maximumLockoutDurationInSeconds) {
+                this.maximumLockoutDurationInSeconds = maximumLockoutDurationInSeconds;
+            }
+        }
+
+        /**
+         * Opaque tokens that get a new JWT without the password, see {@link com.ft.service.RefreshTokenService}.
+         */
+        public static class RefreshToken {
+
+            private long validityInSeconds = 2592000;
+
+            public long getValidityInSeconds() {
+                return validityInSeconds;
+            }
+
+            public void setValidityInSeconds(long validityInSeconds) {
+                this.validityInSeconds = validityInSeconds;
+            }
+        }
+
+        /**
+         * How JWTs are signed, see {@link com.ft.security.jwt.TokenSigningKey}.
+         */
+        public static class Signing {
+
+            /**
+             * Either {@code HS512}, which uses the {@code jhipster.security.authentication.jwt} secret,
+             * or one of the asymmetric {@code RS256} and {@code ES256} algorithms.
+             */
+            private String algorithm = "HS512";
+
+            /**
+             * Value of the {@code kid} header, derived from the key when not set.
+             */
+            private String keyId;
+
+            /**
+             * Location of the PKCS12 key store holding the RSA or EC key pair, a key pair is generated at startup when not set.
+             */
+            private String keyStore;
+
+            private String keyStorePassword;
+
+            private String keyAlias;
+
+            /**
+             * How long clients may cache the {@code /.well-known/jwks.json} document.
+             */
+            private long jwksMaxAgeInSeconds = 300;
+
+            /**
+             * Retired keys that still verify the tokens they signed, until these tokens expire.
+             */
+            private List<VerificationKey> verificationKeys = new ArrayList<>();
+
+            public String getAlgorithm() {
+                return algorithm;
+            }
+
+            public void setAlgorithm(String algorithm) {
+                this.algorithm = algorithm;
+            }
+
+            public String getKeyId() {
+                return keyId;
+            }
+
+            public void setKeyId(String keyId) {
+                this.keyId = keyId;
+            }
+
+            public String getKeyStore() {
+                return keyStore;
+            }
+
+            public void setKeyStore(String keyStore) {
+                this.keyStore = keyStore;
+            }
+
+            public String getKeyStorePassword() {
+                return keyStorePassword;
+            }
+
+            public void setKeyStorePassword(String keyStorePassword) {
+                this.keyStorePassword = keyStorePassword;
+            }
+
+            public String getKeyAlias() {
+                return keyAlias;
+            }
+
+            public void setKeyAlias(String keyAlias) {
+                this.keyAlias = keyAlias;
+            }
+
+            public long getJwksMaxAgeInSeconds() {
+                return jwksMaxAgeInSeconds;
+            }
+
+            public void setJwksMaxAgeInSeconds(long jwksMaxAgeInSeconds) {
+                this.jwksMaxAgeInSeconds = jwksMaxAgeInSeconds;
+            }
+
+            public List<VerificationKey> getVerificationKeys() {
+                return verificationKeys;
+            }
+
+            public void setVerificationKeys(List<VerificationKey> verificationKeys) {
+                this.verificationKeys = verificationKeys;
+            }
+
+            /**
+             * A key that verifies tokens but no longer signs them, either an HMAC secret or an RSA or EC public key.
+             */
+            public static class VerificationKey {
+
+                /**
+                 * The {@code kid} of its tokens, derived from the key when not set.
+                 */
+                private String keyId;
+
+                /**
+                 * Algorithm of an RSA or EC public key, defaults to the signing algorithm.
+                 */
+                private String algorithm;
+
+                private String base64Secret;
+
+                /**
+                 * Base64-encoded X.509 {@code SubjectPublicKeyInfo}, as in the body of a PEM public key.
+                 */
+                private String publicKey;
+
+                public String getKeyId() {
+                    return keyId;
+                }
+
+                public void setKeyId(String keyId) {
+                    this.keyId = keyId;
+                }
+
+                public String getAlgorithm() {
+                    return algorithm;
+                }
+
+                public void setAlgorithm(String algorithm) {
+                    this.algorithm = algorithm;
+                }
+
+                public String getBase64Secret() {
+                    return base64Secret;
+                }
+
+                public void setBase64Secret(String base64Secret) {
+                    this.base64Secret = base64Secret;
+                }
+
+                public String getPublicKey() {
+                    return publicKey;
+                }
+
+                public void setPublicKey(String publicKey) {
+                    this.publicKey = publicKey;
+                }
+            }
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package com.ft.config;
 
 import com.ft.security.AuthoritiesConstants;
+import com.ft.security.CalibratedPasswordEncoder;
+import com.ft.security.PasswordEncoderScheduler;
 import com.ft.security.jwt.JWTFilter;
 import com.ft.security.jwt.TokenProvider;
 import com.ft.web.filter.SpaWebFilter;
@@ -13,8 +15,8 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.header.ReferrerPolicyServerHttpHeadersWriter;
@@ -31,25 +33,52 @@ public class SecurityConfiguration {
 
     private final ReactiveUserDetailsService userDetailsService;
 
+    private final ReactiveUserDetailsPasswordService userDetailsPasswordService;
+
+    private final PasswordEncoder passwordEncoder;
+
     private final TokenProvider tokenProvider;
 
     private final SecurityProblemSupport problemSupport;
 
-    public SecurityConfiguration(ReactiveUserDetailsService userDetailsService, TokenProvider tokenProvider, SecurityProblemSupport problemSupport) {
+    private final PasswordEncoderScheduler passwordEncoderScheduler;
+
+    public SecurityConfiguration(ReactiveUserDetailsService userDetailsService, ReactiveUserDetailsPasswordService userDetailsPasswordService,
+                                 PasswordEncoder passwordEncoder, TokenProvider tokenProvider, SecurityProblemSupport problemSupport,
+                                 PasswordEncoderScheduler passwordEncoderScheduler) {
         this.userDetailsService = userDetailsService;
+        this.userDetailsPasswordService = userDetailsPasswordService;
+        this.passwordEncoder = passwordEncoder;
         this.tokenProvider = tokenProvider;
         this.problemSupport = problemSupport;
+        this.passwordEncoderScheduler = passwordEncoderScheduler;
     }
 
+    /**
+     * The bcrypt password encoder, with a fixed strength or one calibrated on this host.
+     * <p>
+     * This method is static because the user details service, which this configuration depends on, hashes
+     * passwords as well.
+     *
+     * @param applicationProperties the application properties.
+     * @return the password encoder.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public static PasswordEncoder passwordEncoder(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Security.PasswordEncoder properties = applicationProperties.getSecurity().getPasswordEncoder();
+        if (properties.getStrength() != null) {
+            return new CalibratedPasswordEncoder(properties.getStrength());
+        }
+        return CalibratedPasswordEncoder.calibrate(properties.getMinimumStrength(), properties.getMaximumStrength(),
+            properties.getTargetLatencyInMilliseconds());
     }
 
     @Bean
     public ReactiveAuthenticationManager reactiveAuthenticationManager() {
         UserDetailsRepositoryReactiveAuthenticationManager authenticationManager = new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
-        authenticationManager.setPasswordEncoder(passwordEncoder());
+        authenticationManager.setPasswordEncoder(passwordEncoder);
+        authenticationManager.setUserDetailsPasswordService(userDetailsPasswordService);
+        authenticationManager.setScheduler(passwordEncoderScheduler.getScheduler());
         return authenticationManager;
     }
 
@@ -85,9 +114,11 @@ public class SecurityConfiguration {
             .pathMatchers("/api/register").permitAll()
             .pathMatchers("/api/activate").permitAll()
             .pathMatchers("/api/authenticate").permitAll()
+            .pathMatchers("/api/authenticate/refresh").permitAll()
             .pathMatchers("/api/account/reset-password/init").permitAll()
             .pathMatchers("/api/account/reset-password/finish").permitAll()
             .pathMatchers("/api/auth-info").permitAll()
+            .pathMatchers("/.well-known/jwks.json").permitAll()
             .pathMatchers("/api/**").authenticated()
             .pathMatchers("/services/**", "/swagger-resources/**", "/v2/api-docs").authenticated()
             .pathMatchers("/management/health").permitAll()
@@ -1,16 +1,31 @@
 package com.ft.config.audit;
 
 import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.PersistentAuditEventBucket;
+import com.ft.service.AuditEventService;
 
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.util.*;
 
+import static org.springframework.boot.actuate.security.AuthenticationAuditListener.AUTHENTICATION_FAILURE;
+import static org.springframework.boot.actuate.security.AuthenticationAuditListener.AUTHENTICATION_SUCCESS;
+
 @Component
 public class AuditEventConverter {
 
+    /**
+     * Event types stored as their index in bucket records. Codes are stored, so types may only be appended.
+     */
+    private static final List<String> EVENT_TYPES = Collections.unmodifiableList(Arrays.asList(
+        AUTHENTICATION_SUCCESS,
+        AUTHENTICATION_FAILURE,
+        AuditEventService.AUTHENTICATION_LOCKOUT
+    ));
+
     /**
      * Convert a list of {@link PersistentAuditEvent}s to a list of {@link AuditEvent}s.
      *
@@ -83,4 +98,85 @@ public class AuditEventConverter {
         }
         return results;
     }
+
+    /**
+     * Convert a {@link PersistentAuditEventBucket} to the list of its {@link AuditEvent}s.
+     *
+     * @param bucket the bucket to convert.
+     * @return the converted list.
+     */
+    public List<AuditEvent> convertToAuditEvent(PersistentAuditEventBucket bucket) {
+        return convertToAuditEvent(convertToPersistentAuditEvents(bucket));
+    }
+
+    /**
+     * Expand a {@link PersistentAuditEventBucket} into {@link PersistentAuditEvent}s.
+     * <p>
+     * An event is identified by the id of its bucket and its index in the bucket.
+     *
+     * @param bucket the bucket to expand.
+     * @return the events of the bucket, in the order they were written.
+     */
+    public List<PersistentAuditEvent> convertToPersistentAuditEvents(PersistentAuditEventBucket bucket) {
+        if (bucket == null || bucket.getEvents() == null) {
+            return Collections.emptyList();
+        }
+        List<PersistentAuditEvent> persistentAuditEvents = new ArrayList<>(bucket.getEvents().size());
+        for (int i = 0; i < bucket.getEvents().size(); i++) {
+            PersistentAuditEventBucket.Event event = bucket.getEvents().get(i);
+            PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
+            persistentAuditEvent.setId(bucket.getId() + '-' + i);
+            persistentAuditEvent.setPrincipal(bucket.getPrincipal());
+            persistentAuditEvent.setAuditEventDate(bucket.getBucketDate().plusMillis(event.getOffset()));
+            persistentAuditEvent.setAuditEventType(event.getTypeCode() != null ? decodeEventType(event.getTypeCode()) : event.getTypeName());
+            persistentAuditEvent.setData(event.getData() != null ? event.getData() : new HashMap<>());
+            persistentAuditEvents.add(persistentAuditEvent);
+        }
+        return persistentAuditEvents;
+    }
+
+    /**
+     * Convert a {@link PersistentAuditEvent} to a record of the bucket starting at a date.
+     *
+     * @param persistentAuditEvent the event to convert.
+     * @param bucketDate the date of the bucket, see {@link PersistentAuditEventBucket#bucketDateOf(Instant)}.
+     * @return the converted record.
+     */
+    public PersistentAuditEventBucket.Event convertToBucketEvent(PersistentAuditEvent persistentAuditEvent, Instant bucketDate) {
+        PersistentAuditEventBucket.Event event = new PersistentAuditEventBucket.Event();
+        event.setOffset(persistentAuditEvent.getAuditEventDate().toEpochMilli() - bucketDate.toEpochMilli());
+        event.setTypeCode(encodeEventType(persistentAuditEvent.getAuditEventType()));
+        if (event.getTypeCode() == null) {
+            event.setTypeName(persistentAuditEvent.getAuditEventType());
+        }
+        if (persistentAuditEvent.getData() != null && !persistentAuditEvent.getData().isEmpty()) {
+            event.setData(persistentAuditEvent.getData());
+        }
+        return event;
+    }
+
+    /**
+     * Get the code of an event type in bucket records.
+     *
+     * @param eventType the event type.
+     * @return the code, or {@code null} if the type has none and is stored by name.
+     */
+    public Integer encodeEventType(String eventType) {
+        int code = EVENT_TYPES.indexOf(eventType);
+        return code >= 0 ? code : null;
+    }
+
+    /**
+     * Get the event type of a code in bucket records.
+     *
+     * @param code the code.
+     * @return the event type.
+     * @throws IllegalArgumentException if the code is unknown.
+     */
+    public String decodeEventType(int code) {
+        if (code < 0 || code >= EVENT_TYPES.size()) {
+            throw new IllegalArgumentException("Unknown audit event type code " + code);
+        }
+        return EVENT_TYPES.get(code);
+    }
 }
@@ -0,0 +1,121 @@
+package com.ft.config.dbmigrations;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.AuditEventRollup;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.PersistentAuditEventBucket;
+import com.ft.domain.User;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import io.github.jhipster.config.JHipsterProperties;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the TTL indexes that delete old audit events, with their buckets and rollups, and users who never
+ * activated their account.
+ * <p>
+ * The retention is read from the Spring environment given by Mongobee, see
+ * {@link ApplicationProperties.Retention} and {@code jhipster.audit-events.retention-period}.
+ */
+@ChangeLog(order = "002")
+public class RetentionMigration {
+
+    static final String AUDIT_EVENT_TTL_INDEX = "event_date_ttl";
+
+    static final String AUDIT_EVENT_BUCKET_TTL_INDEX = "bucket_date_ttl";
+
+    static final String AUDIT_EVENT_ROLLUP_TTL_INDEX = "rollup_bucket_date_ttl";
+
+    static final String NOT_ACTIVATED_USER_TTL_INDEX = "not_activated_user_ttl";
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionMigration.class);
+
+    /**
+     * Unlike the other change sets, this one runs on every startup: the retention is configuration, not a one-off
+     * migration, so a change of retention updates the indexes and disabling TTL indexes drops them, letting the
+     * scheduled jobs take over. Indexes already matching the configuration are left untouched.
+     */
+    @ChangeSet(order = "01", author = "initiator", id = "01-updateRetentionIndexes", runAlways = true)
+    public void updateRetentionIndexes(MongoTemplate mongoTemplate, Environment environment) {
+        Retention current = Retention.from(environment);
+        updateTtlIndex(mongoTemplate, mongoTemplate.getCollectionName(PersistentAuditEvent.class), AUDIT_EVENT_TTL_INDEX,
+            new IndexOptions().name(AUDIT_EVENT_TTL_INDEX), "event_date", current.ttlIndexes, current.auditEvents);
+        // A bucket is kept until its last event, up to an hour after its date, is old enough
+        updateTtlIndex(mongoTemplate, mongoTemplate.getCollectionName(PersistentAuditEventBucket.class), AUDIT_EVENT_BUCKET_TTL_INDEX,
+            new IndexOptions().name(AUDIT_EVENT_BUCKET_TTL_INDEX), "bucket_date", current.ttlIndexes, current.auditEvents.plusHours(1));
+        updateTtlIndex(mongoTemplate, mongoTemplate.getCollectionName(AuditEventRollup.class), AUDIT_EVENT_ROLLUP_TTL_INDEX,
+            new IndexOptions().name(AUDIT_EVENT_ROLLUP_TTL_INDEX), "bucket_date", current.ttlIndexes, current.auditEvents.plusHours(1));
+        Bson notActivated = new Document("activated", false).append("activation_key", new Document("$exists", true));
+        updateTtlIndex(mongoTemplate, mongoTemplate.getCollectionName(User.class), NOT_ACTIVATED_USER_TTL_INDEX,
+            new IndexOptions().name(NOT_ACTIVATED_USER_TTL_INDEX).partialFilterExpression(notActivated), "created_date",
+            current.ttlIndexes, current.notActivatedUsers);
+    }
+
+    private void updateTtlIndex(MongoTemplate mongoTemplate, String collectionName, String indexName, IndexOptions options,
+                                String field, boolean enabled, Duration expireAfter) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(collectionName);
+        Document existing = null;
+        for (Document index : collection.listIndexes()) {
+            if (indexName.equals(index.getString("name"))) {
+                existing = index;
+            }
+        }
+        if (!enabled) {
+            if (existing != null) {
+                log.info("Dropping TTL index {} on {}", indexName, collectionName);
+                collection.dropIndex(indexName);
+            }
+            return;
+        }
+        long expireAfterSeconds = expireAfter.getSeconds();
+        if (existing == null) {
+            log.info("Creating TTL index {} on {}, expiring after {}", indexName, collectionName, expireAfter);
+            collection.createIndex(Indexes.ascending(field), options.expireAfter(expireAfterSeconds, TimeUnit.SECONDS));
+        } else if (((Number) existing.get("expireAfterSeconds")).longValue() != expireAfterSeconds) {
+            log.info("Updating TTL index {} on {}, expiring after {}", indexName, collectionName, expireAfter);
+            mongoTemplate.executeCommand(new Document("collMod", collectionName)
+                .append("index", new Document("name", indexName).append("expireAfterSeconds", expireAfterSeconds)));
+        }
+    }
+
+    private static final class Retention {
+
+        private final boolean ttlIndexes;
+
+        private final Duration auditEvents;
+
+        private final Duration notActivatedUsers;
+
+        private Retention(boolean ttlIndexes, Duration auditEvents, Duration notActivatedUsers) {
+            this.ttlIndexes = ttlIndexes;
+            this.auditEvents = auditEvents;
+            this.notActivatedUsers = notActivatedUsers;
+        }
+
+        /**
+         * Bind the retention from the environment, as the properties beans are not available to change logs.
+         */
+        private static Retention from(Environment environment) {
+            Binder binder = Binder.get(environment);
+            ApplicationProperties.Retention retention = binder.bind("application", ApplicationProperties.class)
+                .orElseGet(ApplicationProperties::new).getRetention();
+            JHipsterProperties.AuditEvents auditEvents = binder.bind("jhipster", JHipsterProperties.class)
+                .orElseGet(JHipsterProperties::new).getAuditEvents();
+            return new Retention(retention.isTtlIndexes(), Duration.ofDays(auditEvents.getRetentionPeriod()),
+                Duration.ofDays(retention.getNotActivatedUsersInDays()));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ft.config.dbmigrations;
+
+import com.ft.domain.User;
+import com.ft.security.KeyDigests;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * Stores the activation and reset keys of users as digests, and indexes them so that activations and password resets
+ * do not scan the users.
+ */
+@ChangeLog(order = "003")
+public class UserKeyMigration {
+
+    static final String ACTIVATION_KEY_INDEX = "activation_key_sparse";
+
+    static final String RESET_KEY_INDEX = "reset_key_sparse";
+
+    private static final Logger log = LoggerFactory.getLogger(UserKeyMigration.class);
+
+    @ChangeSet(order = "01", author = "initiator", id = "01-digestUserKeys")
+    public void digestUserKeys(MongoTemplate mongoTemplate) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class));
+        digestKeys(collection, "activation_key");
+        digestKeys(collection, "reset_key");
+    }
+
+    @ChangeSet(order = "02", author = "initiator", id = "02-addUserKeyIndexes")
+    public void addUserKeyIndexes(MongoTemplate mongoTemplate) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class));
+        collection.createIndex(Indexes.ascending("activation_key"), new IndexOptions().name(ACTIVATION_KEY_INDEX).sparse(true).unique(true));
+        collection.createIndex(Indexes.ascending("reset_key"), new IndexOptions().name(RESET_KEY_INDEX).sparse(true).unique(true));
+    }
+
+    private void digestKeys(MongoCollection<Document> collection, String field) {
+        // A sparse index only leaves out missing fields, so that null keys would collide
+        long unset = collection.updateMany(Filters.type(field, BsonType.NULL), Updates.unset(field)).getModifiedCount();
+        long digested = 0;
+        for (Document user : collection.find(Filters.type(field, BsonType.STRING))) {
+            String key = user.getString(field);
+            if (key.length() != KeyDigests.DIGEST_LENGTH) {
+                collection.updateOne(Filters.eq("_id", user.get("_id")), Updates.set(field, KeyDigests.digest(key)));
+                digested++;
+            }
+        }
+        log.info("Digested {} users {}, removed {} empty ones", digested, field, unset);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ft.config.dbmigrations;
+
+import com.ft.domain.User;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Locale;
+
+/**
+ * Makes logins and lower-cased emails unique, so that users are created without checking for existing ones first.
+ * <p>
+ * The indexes replace the plain ones on the login and email: creating them fails if users already share a login or
+ * an email, which must then be fixed by hand.
+ */
+@ChangeLog(order = "004")
+public class UserUniqueIndexMigration {
+
+    public static final String LOGIN_INDEX = "login_unique";
+
+    public static final String EMAIL_INDEX = "email_unique";
+
+    private static final Logger log = LoggerFactory.getLogger(UserUniqueIndexMigration.class);
+
+    @ChangeSet(order = "01", author = "initiator", id = "01-lowerCaseUserEmails")
+    public void lowerCaseUserEmails(MongoTemplate mongoTemplate) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class));
+        long updated = 0;
+        for (Document user : collection.find(Filters.type("email", BsonType.STRING))) {
+            String email = user.getString("email");
+            String lowerCaseEmail = email.toLowerCase(Locale.ENGLISH);
+            if (!email.equals(lowerCaseEmail)) {
+                collection.updateOne(Filters.eq("_id", user.get("_id")), Updates.set("email", lowerCaseEmail));
+                updated++;
+            }
+        }
+        log.info("Lower-cased the email of {} users", updated);
+    }
+
+    @ChangeSet(order = "02", author = "initiator", id = "02-addUserUniqueIndexes")
+    public void addUserUniqueIndexes(MongoTemplate mongoTemplate) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class));
+        for (Document index : collection.listIndexes()) {
+            String name = index.getString("name");
+            if ("login".equals(name) || "email".equals(name)) {
+                collection.dropIndex(name);
+            }
+        }
+        collection.createIndex(Indexes.ascending("login"), new IndexOptions().name(LOGIN_INDEX).unique(true));
+        // Users may have no email
+        collection.createIndex(Indexes.ascending("email"), new IndexOptions().name(EMAIL_INDEX).sparse(true).unique(true));
+    }
+}
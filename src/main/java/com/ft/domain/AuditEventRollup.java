@@ -0,0 +1,102 @@
+package com.ft.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Number of audit events of a type and principal during an hour, incremented as events are written.
+ */
+@Document(collection = "jhi_audit_event_rollup")
+@CompoundIndex(name = "bucket_date_event_type_principal", def = "{ 'bucket_date': 1, 'event_type': 1, 'principal': 1 }", unique = true)
+public class AuditEventRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+
+    /**
+     * Start of the hour.
+     */
+    @Field("bucket_date")
+    private Instant bucketDate;
+
+    @Field("event_type")
+    private String eventType;
+
+    private String principal;
+
+    private long count;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Instant getBucketDate() {
+        return bucketDate;
+    }
+
+    public void setBucketDate(Instant bucketDate) {
+        this.bucketDate = bucketDate;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(String principal) {
+        this.principal = principal;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AuditEventRollup)) {
+            return false;
+        }
+        return id != null && id.equals(((AuditEventRollup) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "AuditEventRollup{" +
+            "bucketDate=" + bucketDate +
+            ", eventType='" + eventType + '\'' +
+            ", principal='" + principal + '\'' +
+            ", count=" + count +
+            '}';
+    }
+}
@@ -0,0 +1,105 @@
+package com.ft.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A lease on a scheduled job, held by a single gateway instance at a time.
+ * <p>
+ * The fencing token increases each time the lease is acquired, so that work done under an expired lease can be told
+ * apart from work done under the current one.
+ */
+@Document(collection = "jhi_job_lease")
+public class JobLease implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Name of the job.
+     */
+    @Id
+    private String id;
+
+    private String owner;
+
+    @Field("locked_at")
+    private Instant lockedAt;
+
+    @Field("locked_until")
+    private Instant lockedUntil;
+
+    @Field("fencing_token")
+    private long fencingToken;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Instant getLockedAt() {
+        return lockedAt;
+    }
+
+    public void setLockedAt(Instant lockedAt) {
+        this.lockedAt = lockedAt;
+    }
+
+    public Instant getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(Instant lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public long getFencingToken() {
+        return fencingToken;
+    }
+
+    public void setFencingToken(long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof JobLease)) {
+            return false;
+        }
+        return id != null && id.equals(((JobLease) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "JobLease{" +
+            "id='" + id + '\'' +
+            ", owner='" + owner + '\'' +
+            ", lockedAt=" + lockedAt +
+            ", lockedUntil=" + lockedUntil +
+            ", fencingToken=" + fencingToken +
+            '}';
+    }
+}
@@ -1,6 +1,7 @@
 package com.ft.domain;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import javax.validation.constraints.NotNull;
@@ -15,6 +16,7 @@ import java.util.Map;
  * @see org.springframework.boot.actuate.audit.AuditEvent
  */
 @Document(collection = "jhi_persistent_audit_event")
+@CompoundIndex(name = "event_date_id", def = "{ 'event_date': -1, '_id': -1 }")
 public class PersistentAuditEvent implements Serializable {
 
     private static final long serialVersionUID = 1L;
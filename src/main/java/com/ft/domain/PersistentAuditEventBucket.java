@@ -0,0 +1,181 @@
+package com.ft.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Audit events of one principal during one hour, stored as compact records in a single document.
+ * <p>
+ * A principal may have several buckets for the same hour, when a bucket is full or two instances create it at once.
+ *
+ * @see com.ft.config.audit.AuditEventConverter
+ */
+@Document(collection = "jhi_persistent_audit_event_bucket")
+@CompoundIndexes({
+    @CompoundIndex(name = "bucket_date_id", def = "{ 'bucket_date': -1, '_id': -1 }"),
+    @CompoundIndex(name = "principal_bucket_date", def = "{ 'principal': 1, 'bucket_date': 1 }")
+})
+public class PersistentAuditEventBucket implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+
+    @NotNull
+    private String principal;
+
+    @Field("bucket_date")
+    private Instant bucketDate;
+
+    private int count;
+
+    private List<Event> events = new ArrayList<>();
+
+    /**
+     * Get the date of the bucket holding the events of a date.
+     *
+     * @param date the date of an event.
+     * @return the start of the hour of the date.
+     */
+    public static Instant bucketDateOf(Instant date) {
+        return date.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(String principal) {
+        this.principal = principal;
+    }
+
+    public Instant getBucketDate() {
+        return bucketDate;
+    }
+
+    public void setBucketDate(Instant bucketDate) {
+        this.bucketDate = bucketDate;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<Event> events) {
+        this.events = events;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PersistentAuditEventBucket)) {
+            return false;
+        }
+        return id != null && id.equals(((PersistentAuditEventBucket) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "PersistentAuditEventBucket{" +
+            "principal='" + principal + '\'' +
+            ", bucketDate=" + bucketDate +
+            ", count=" + count +
+            '}';
+    }
+
+    /**
+     * An audit event of the bucket, with short field names since they are repeated in every record.
+     */
+    public static class Event implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Milliseconds since the date of the bucket.
+         */
+        @Field("t")
+        private long offset;
+
+        /**
+         * Code of the event type, see {@link com.ft.config.audit.AuditEventConverter#encodeEventType(String)}.
+         */
+        @Field("c")
+        private Integer typeCode;
+
+        /**
+         * Name of an event type without a code.
+         */
+        @Field("n")
+        private String typeName;
+
+        @Field("d")
+        private Map<String, String> data;
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public void setOffset(long offset) {
+            this.offset = offset;
+        }
+
+        public Integer getTypeCode() {
+            return typeCode;
+        }
+
+        public void setTypeCode(Integer typeCode) {
+            this.typeCode = typeCode;
+        }
+
+        public String getTypeName() {
+            return typeName;
+        }
+
+        public void setTypeName(String typeName) {
+            this.typeName = typeName;
+        }
+
+        public Map<String, String> getData() {
+            return data;
+        }
+
+        public void setData(Map<String, String> data) {
+            this.data = data;
+        }
+    }
+}
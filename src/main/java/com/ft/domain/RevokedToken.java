@@ -0,0 +1,108 @@
+package com.ft.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A revoked JWT, or all the JWTs of a user issued up to the revocation date when it has no token id.
+ */
+@Document(collection = "jhi_revoked_token")
+public class RevokedToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+
+    @Field("token_id")
+    private String tokenId;
+
+    @NotNull
+    private String login;
+
+    @NotNull
+    @Indexed
+    @Field("revoked_date")
+    private Instant revokedDate;
+
+    /**
+     * Expiry of the revoked token, after which MongoDB removes the entry.
+     */
+    @NotNull
+    @Indexed(expireAfterSeconds = 0)
+    @Field("expiry_date")
+    private Instant expiryDate;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public void setTokenId(String tokenId) {
+        this.tokenId = tokenId;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public Instant getRevokedDate() {
+        return revokedDate;
+    }
+
+    public void setRevokedDate(Instant revokedDate) {
+        this.revokedDate = revokedDate;
+    }
+
+    public Instant getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(Instant expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RevokedToken)) {
+            return false;
+        }
+        return id != null && id.equals(((RevokedToken) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "RevokedToken{" +
+            "tokenId='" + tokenId + '\'' +
+            ", login='" + login + '\'' +
+            ", revokedDate=" + revokedDate +
+            ", expiryDate=" + expiryDate +
+            '}';
+    }
+}
@@ -5,7 +5,8 @@ import com.ft.config.Constants;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import javax.validation.constraints.Email;
@@ -20,8 +21,15 @@ import java.util.Set;
 
 /**
  * A user.
+ * <p>
+ * Logins and emails are unique, through the indexes created by
+ * {@link com.ft.config.dbmigrations.UserUniqueIndexMigration}.
  */
 @org.springframework.data.mongodb.core.mapping.Document(collection = "jhi_user")
+@CompoundIndexes({
+    @CompoundIndex(name = "login_id", def = "{ 'login': 1, '_id': 1 }"),
+    @CompoundIndex(name = "activated_created_date", def = "{ 'activated': 1, 'created_date': 1 }")
+})
 public class User extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -32,7 +40,6 @@ public class User extends AbstractAuditingEntity implements Serializable {
     @NotNull
     @Pattern(regexp = Constants.LOGIN_REGEX)
     @Size(min = 1, max = 50)
-    @Indexed
     private String login;
 
     @JsonIgnore
@@ -50,7 +57,6 @@ public class User extends AbstractAuditingEntity implements Serializable {
 
     @Email
     @Size(min = 5, max = 254)
-    @Indexed
     private String email;
 
     private boolean activated = false;
@@ -63,12 +69,18 @@ public class User extends AbstractAuditingEntity implements Serializable {
     @Field("image_url")
     private String imageUrl;
 
-    @Size(max = 20)
+    /**
+     * Digest of the activation key, see {@link com.ft.security.KeyDigests}.
+     */
+    @Size(max = 64)
     @Field("activation_key")
     @JsonIgnore
     private String activationKey;
 
-    @Size(max = 20)
+    /**
+     * Digest of the reset key, see {@link com.ft.security.KeyDigests}.
+     */
+    @Size(max = 64)
     @Field("reset_key")
     @JsonIgnore
     private String resetKey;
@@ -126,7 +138,7 @@ public class User extends AbstractAuditingEntity implements Serializable {
     }
 
     public void setEmail(String email) {
-        this.email = email;
+        this.email = StringUtils.lowerCase(email, Locale.ENGLISH);
     }
 
     public String getImageUrl() {
@@ -2,11 +2,13 @@ package com.ft.repository;
 
 import com.ft.domain.PersistentAuditEvent;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.Collection;
 
 /**
  * Spring Data MongoDB repository for the {@link PersistentAuditEvent} entity.
@@ -19,6 +21,11 @@ public interface PersistenceAuditEventRepository extends ReactiveMongoRepository
 
     Flux<PersistentAuditEvent> findByAuditEventDateBefore(Instant before);
 
+    @Query(value = "{ 'event_date': { '$lt': ?0 } }", fields = "{ '_id': 1 }")
+    Flux<PersistentAuditEvent> findIdsByAuditEventDateBefore(Instant before, Pageable pageable);
+
+    Mono<Long> deleteByIdIn(Collection<String> ids);
+
     Flux<PersistentAuditEvent> findAllBy(Pageable pageable);
 
     Mono<Long> countByAuditEventDateBetween(Instant fromDate, Instant toDate);
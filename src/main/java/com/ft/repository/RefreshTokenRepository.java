@@ -0,0 +1,18 @@
+package com.ft.repository;
+
+import com.ft.domain.RefreshToken;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Spring Data MongoDB repository for the {@link RefreshToken} entity.
+ */
+@Repository
+public interface RefreshTokenRepository extends ReactiveMongoRepository<RefreshToken, String> {
+
+    Mono<Long> deleteByTokenHash(String tokenHash);
+
+    Mono<Long> deleteByLogin(String login);
+}
@@ -0,0 +1,20 @@
+package com.ft.repository;
+
+import com.ft.domain.RevokedToken;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+/**
+ * Spring Data MongoDB repository for the {@link RevokedToken} entity.
+ */
+@Repository
+public interface RevokedTokenRepository extends ReactiveMongoRepository<RevokedToken, String> {
+
+    Flux<RevokedToken> findAllByExpiryDateAfter(Instant date);
+
+    Flux<RevokedToken> findAllByRevokedDateAfter(Instant date);
+}
@@ -3,12 +3,14 @@ package com.ft.repository;
 import com.ft.domain.User;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.Collection;
 
 /**
  * Spring Data MongoDB repository for the {@link User} entity.
@@ -20,12 +22,50 @@ public interface UserRepository extends ReactiveMongoRepository<User, String> {
 
     Flux<User> findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(Instant dateTime);
 
+    /**
+     * Find the ids of the users who did not activate their account in time, for chunked deletion.
+     *
+     * @param dateTime the creation date before which users are expired.
+     * @param pageable the chunk to read, only the id of the users is read.
+     * @return the users, with only their id.
+     */
+    @Query(value = "{ 'activated': false, 'activation_key': { '$ne': null }, 'created_date': { '$lt': ?0 } }", fields = "{ '_id': 1 }")
+    Flux<User> findIdsOfNotActivatedUsersCreatedBefore(Instant dateTime, Pageable pageable);
+
+    Mono<Long> deleteByIdIn(Collection<String> ids);
+
     Mono<User> findOneByResetKey(String resetKey);
 
-    Mono<User> findOneByEmailIgnoreCase(String email);
+    /**
+     * Find a user by email, which is stored lower-cased.
+     *
+     * @param email the lower-cased email.
+     * @return the user with this email.
+     */
+    Mono<User> findOneByEmail(String email);
 
     Mono<User> findOneByLogin(String login);
 
+    /**
+     * Find the users holding a login or an email, in a single query.
+     *
+     * @param login the lower-cased login.
+     * @param email the lower-cased email, which must not be {@code null}.
+     * @return the user with this login and the user with this email, which may be the same.
+     */
+    Flux<User> findAllByLoginOrEmail(String login, String email);
+
+    /**
+     * Find the users to authenticate with a login or an email, in a single query.
+     * <p>
+     * Only the id, login, password, activated flag and authorities are read, the other fields are {@code null}.
+     *
+     * @param username the lower-cased login or email.
+     * @return the user with this login and the user with this email, which are usually the same.
+     */
+    @Query(value = "{ '$or': [ { 'login': ?0 }, { 'email': ?0 } ] }", fields = "{ 'login': 1, 'password': 1, 'activated': 1, 'authorities': 1 }")
+    Flux<User> findCredentialsByLoginOrEmail(String username);
+
     Flux<User> findAllByLoginNot(Pageable pageable, String login);
 
     Mono<Long> countAllByLoginNot(String anonymousUser);
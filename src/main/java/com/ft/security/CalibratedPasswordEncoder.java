@@ -0,0 +1,88 @@
+package com.ft.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link BCryptPasswordEncoder} whose strength can be calibrated against a latency target on the current host.
+ * <p>
+ * Passwords hashed with another strength, weaker or stronger, are reported by {@link #upgradeEncoding(String)}
+ * so that they are hashed again with the current strength on the next successful login.
+ */
+public class CalibratedPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(CalibratedPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_STRENGTH = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private static final int CALIBRATION_SAMPLES = 3;
+
+    private final int strength;
+
+    public CalibratedPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    /**
+     * Create an encoder with the highest strength that hashes a password within the target latency.
+     * <p>
+     * The cost of bcrypt doubles with each strength, so it is measured once at the minimum strength and
+     * extrapolated from there.
+     *
+     * @param minimumStrength the strength to use even when it misses the target.
+     * @param maximumStrength the strength not to exceed even when it meets the target.
+     * @param targetLatencyInMilliseconds the time a single hash should take.
+     * @return the encoder.
+     */
+    public static CalibratedPasswordEncoder calibrate(int minimumStrength, int maximumStrength, long targetLatencyInMilliseconds) {
+        String salt = BCrypt.gensalt(minimumStrength);
+        BCrypt.hashpw(CALIBRATION_PASSWORD, salt);
+        long latency = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_SAMPLES; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw(CALIBRATION_PASSWORD, salt);
+            latency = Math.min(latency, System.nanoTime() - start);
+        }
+        long targetLatency = TimeUnit.MILLISECONDS.toNanos(targetLatencyInMilliseconds);
+        int strength = minimumStrength;
+        while (strength < maximumStrength && latency * 2 <= targetLatency) {
+            strength++;
+            latency *= 2;
+        }
+        log.info("Hashing passwords with bcrypt strength {}, in about {} ms", strength, TimeUnit.NANOSECONDS.toMillis(latency));
+        return new CalibratedPasswordEncoder(strength);
+    }
+
+    /**
+     * Get the strength of a bcrypt hash.
+     *
+     * @param encodedPassword the hash.
+     * @return the strength, or {@code -1} if it is not a bcrypt hash.
+     */
+    public static int strengthOf(String encodedPassword) {
+        if (encodedPassword == null) {
+            return -1;
+        }
+        Matcher matcher = BCRYPT_STRENGTH.matcher(encodedPassword);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int encodedStrength = strengthOf(encodedPassword);
+        return encodedStrength != -1 && encodedStrength != strength;
+    }
+}
@@ -2,60 +2,83 @@ package com.ft.security;
 
 import com.ft.domain.User;
 import com.ft.repository.UserRepository;
-import org.hibernate.validator.internal.constraintvalidators.hv.EmailValidator;
+import com.ft.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Locale;
 
 /**
- * Authenticate a user from the database.
+ * Authenticate a user from the database, through the {@link UserCredentialsCache}, and upgrade its password hash
+ * when it was hashed with another strength.
  */
 @Component("userDetailsService")
-public class DomainUserDetailsService implements ReactiveUserDetailsService {
+public class DomainUserDetailsService implements ReactiveUserDetailsService, ReactiveUserDetailsPasswordService {
 
     private final Logger log = LoggerFactory.getLogger(DomainUserDetailsService.class);
 
     private final UserRepository userRepository;
 
-    public DomainUserDetailsService(UserRepository userRepository) {
+    private final UserService userService;
+
+    private final UserCredentialsCache userCredentialsCache;
+
+    public DomainUserDetailsService(UserRepository userRepository, UserService userService, UserCredentialsCache userCredentialsCache) {
         this.userRepository = userRepository;
+        this.userService = userService;
+        this.userCredentialsCache = userCredentialsCache;
     }
 
     @Override
     public Mono<UserDetails> findByUsername(final String login) {
         log.debug("Authenticating {}", login);
 
-        if (new EmailValidator().isValid(login, null)) {
-            return userRepository.findOneByEmailIgnoreCase(login)
-                .switchIfEmpty(Mono.error(new UsernameNotFoundException("User with email " + login + " was not found in the database")))
-                .map(user -> createSpringSecurityUser(login, user));
+        String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
+        UserCredentials cachedCredentials = userCredentialsCache.get(lowercaseLogin);
+        if (cachedCredentials != null) {
+            return Mono.fromCallable(() -> createSpringSecurityUser(lowercaseLogin, cachedCredentials));
         }
 
-        String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
-        return userRepository.findOneByLogin(lowercaseLogin)
+        long version = userCredentialsCache.version();
+        return userRepository.findCredentialsByLoginOrEmail(lowercaseLogin)
+            // A login may look like the email of another user, the email wins
+            .reduce((user, other) -> lowercaseLogin.equals(user.getLogin()) ? other : user)
             .switchIfEmpty(Mono.error(new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the database")))
-            .map(user -> createSpringSecurityUser(lowercaseLogin, user));
+            .map(user -> cacheCredentials(lowercaseLogin, user, version))
+            .map(credentials -> createSpringSecurityUser(lowercaseLogin, credentials));
+    }
+
+    @Override
+    public Mono<UserDetails> updatePassword(UserDetails user, String newPassword) {
+        log.debug("Upgrading password hash of {}", user.getUsername());
+        return userService.upgradePasswordHash(user.getUsername(), newPassword)
+            .then()
+            // The password was checked, so the login goes on with the old hash
+            .onErrorResume(e -> {
+                log.warn("Could not upgrade password hash of {}: {}", user.getUsername(), e.getMessage());
+                return Mono.empty();
+            })
+            .thenReturn(org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build());
+    }
 
+    private UserCredentials cacheCredentials(String lowercaseLogin, User user, long version) {
+        UserCredentials credentials = new UserCredentials(user);
+        userCredentialsCache.put(lowercaseLogin, credentials, version);
+        return credentials;
     }
 
-    private org.springframework.security.core.userdetails.User createSpringSecurityUser(String lowercaseLogin, User user) {
-        if (!user.getActivated()) {
+    private org.springframework.security.core.userdetails.User createSpringSecurityUser(String lowercaseLogin, UserCredentials credentials) {
+        if (!credentials.isActivated()) {
             throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
         }
-        List<GrantedAuthority> grantedAuthorities = user.getAuthorities().stream()
-            .map(authority -> new SimpleGrantedAuthority(authority.getName()))
-            .collect(Collectors.toList());
-        return new org.springframework.security.core.userdetails.User(user.getLogin(),
-            user.getPassword(),
-            grantedAuthorities);
+        return new org.springframework.security.core.userdetails.User(credentials.getLogin(),
+            credentials.getPassword(),
+            credentials.getAuthorities());
     }
 }
@@ -0,0 +1,64 @@
+package com.ft.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility class computing the SHA-256 digests of keys and tokens, for the activation and reset keys of users and the
+ * refresh tokens, which are stored as digests only, and for the JWTs and signing keys.
+ * <p>
+ * Keys are random, so an unsalted SHA-256 digest is enough to not keep them usable in the database, while it is
+ * still looked up with an equality match on an index.
+ */
+public final class KeyDigests {
+
+    /**
+     * Length of a digest, in hexadecimal characters.
+     */
+    public static final int DIGEST_LENGTH = 64;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private KeyDigests() {
+    }
+
+    /**
+     * Get the digest of a key.
+     *
+     * @param key the key.
+     * @return the hexadecimal SHA-256 digest of the key, or {@code null} if the key is {@code null}.
+     */
+    public static String digest(String key) {
+        if (key == null) {
+            return null;
+        }
+        byte[] hash = sha256(key.getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Get the SHA-256 digest of bytes.
+     *
+     * @param bytes the bytes.
+     * @return the 32 bytes of the digest.
+     */
+    public static byte[] sha256(byte[] bytes) {
+        MessageDigest messageDigest = SHA_256.get();
+        messageDigest.reset();
+        return messageDigest.digest(bytes);
+    }
+}
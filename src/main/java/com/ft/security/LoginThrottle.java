@@ -0,0 +1,242 @@
+package com.ft.security;
+
+import com.ft.config.ApplicationProperties;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.net.InetAddresses;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.local.LocalBucketBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Limits login attempts before their password is checked, so that a burst of attempts does not cost a bcrypt hash each.
+ * <p>
+ * Each client IP address and each login has its own token bucket, kept in bounded in-memory caches. A login that
+ * keeps failing is also locked out, for a duration that doubles with each further failure, until it succeeds.
+ * <p>
+ * Behind trusted proxies, the client IP address is read from the {@code X-Forwarded-For} header, so that the clients
+ * of a load balancer do not share its address.
+ */
+@Component
+public class LoginThrottle {
+
+    static final String THROTTLED_METER_NAME = "security.authentication.throttled";
+
+    private final Logger log = LoggerFactory.getLogger(LoginThrottle.class);
+
+    private final ApplicationProperties.Security.LoginThrottling properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Cache<String, Bucket> ipBuckets;
+
+    private final Cache<String, Bucket> loginBuckets;
+
+    private final Cache<String, Failures> failures;
+
+    private final List<AddressRange> trustedProxies;
+
+    public LoginThrottle(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getSecurity().getLoginThrottling();
+        this.meterRegistry = meterRegistry;
+        Duration duration = Duration.ofSeconds(properties.getDurationInSeconds());
+        this.ipBuckets = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterAccess(duration)
+            .build();
+        this.loginBuckets = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterAccess(duration)
+            .build();
+        this.failures = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(Duration.ofSeconds(properties.getMaximumLockoutDurationInSeconds()).plus(duration))
+            .build();
+        this.trustedProxies = properties.getTrustedProxies().stream()
+            .map(AddressRange::parse)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the IP address a request comes from.
+     * <p>
+     * When the request comes from a trusted proxy, this is the last address of its {@code X-Forwarded-For} header
+     * which is not a trusted proxy: the addresses before it are set by the client, and cannot be trusted.
+     *
+     * @param request the request.
+     * @return the client IP address.
+     */
+    public String clientIp(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null) {
+            return "unknown";
+        }
+        String clientIp = remoteAddress.getHostString();
+        if (!isTrustedProxy(clientIp)) {
+            return clientIp;
+        }
+        List<String> forwardedFor = request.getHeaders().getValuesAsList("X-Forwarded-For");
+        for (int i = forwardedFor.size() - 1; i >= 0 && isTrustedProxy(clientIp); i--) {
+            clientIp = forwardedFor.get(i);
+        }
+        return clientIp;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        if (trustedProxies.isEmpty() || !InetAddresses.isInetAddress(address)) {
+            // Not an IP address, such as an obfuscated X-Forwarded-For identifier
+            return false;
+        }
+        byte[] bytes = InetAddresses.forString(address).getAddress();
+        return trustedProxies.stream().anyMatch(range -> range.contains(bytes));
+    }
+
+    /**
+     * Take a login attempt from the buckets of a client IP address and of a login.
+     *
+     * @param clientIp the IP address the attempt comes from.
+     * @param login the login, as entered by the user.
+     * @throws LoginThrottledException if the login is locked out, or if either bucket is empty.
+     */
+    public void acquire(String clientIp, String login) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        String key = normalize(login);
+        Failures loginFailures = failures.getIfPresent(key);
+        Instant lockedUntil = loginFailures == null ? null : loginFailures.lockedUntil;
+        if (lockedUntil != null && lockedUntil.isAfter(Instant.now())) {
+            throw throttled("lockout", "Login " + key + " is locked out", Duration.between(Instant.now(), lockedUntil));
+        }
+        consume(ipBuckets, clientIp, properties.getIpLimit(), "ip", "Too many login attempts from " + clientIp);
+        consume(loginBuckets, key, properties.getLoginLimit(), "login", "Too many login attempts for " + key);
+    }
+
+    /**
+     * Record a failed login attempt.
+     *
+     * @param login the login, as entered by the user.
+     * @return the end of the lockout this failure started, or {@code null} if the login is not locked out.
+     */
+    public Instant onFailure(String login) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        String key = normalize(login);
+        Failures loginFailures = failures.asMap().compute(key, (k, previous) ->
+            new Failures(previous == null ? 1 : previous.count + 1, lockedUntil(previous == null ? 1 : previous.count + 1)));
+        if (loginFailures.lockedUntil != null) {
+            log.debug("Locking out {} until {} after {} failures", key, loginFailures.lockedUntil, loginFailures.count);
+        }
+        return loginFailures.lockedUntil;
+    }
+
+    /**
+     * Forget the failed login attempts of a login.
+     *
+     * @param login the login, as entered by the user.
+     */
+    public void onSuccess(String login) {
+        failures.invalidate(normalize(login));
+    }
+
+    private Instant lockedUntil(int count) {
+        if (count < properties.getLockoutThreshold()) {
+            return null;
+        }
+        int doublings = Math.min(count - properties.getLockoutThreshold(), 30);
+        long seconds = Math.min(properties.getLockoutDurationInSeconds() << doublings, properties.getMaximumLockoutDurationInSeconds());
+        return Instant.now().plusSeconds(seconds);
+    }
+
+    private void consume(Cache<String, Bucket> buckets, String key, long limit, String reason, String message) {
+        // Not Bucket4j.builder(), whose serialization handles need the JCache API
+        Bucket bucket = buckets.get(key, k -> new LocalBucketBuilder()
+            .addLimit(Bandwidth.simple(limit, Duration.ofSeconds(properties.getDurationInSeconds())))
+            .build());
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        if (!probe.isConsumed()) {
+            throw throttled(reason, message, Duration.ofNanos(probe.getNanosToWaitForRefill()));
+        }
+    }
+
+    private LoginThrottledException throttled(String reason, String message, Duration retryAfter) {
+        meterRegistry.counter(THROTTLED_METER_NAME, "reason", reason).increment();
+        return new LoginThrottledException(message, retryAfter);
+    }
+
+    private static String normalize(String login) {
+        return login == null ? "" : login.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * IP address range in CIDR notation, or a single IP address, parsed without any DNS lookup.
+     */
+    private static final class AddressRange {
+
+        private final byte[] address;
+
+        private final int prefixLength;
+
+        private AddressRange(byte[] address, int prefixLength) {
+            this.address = address;
+            this.prefixLength = prefixLength;
+        }
+
+        private static AddressRange parse(String range) {
+            int separator = range.indexOf('/');
+            InetAddress address = InetAddresses.forString(separator < 0 ? range : range.substring(0, separator));
+            byte[] bytes = address.getAddress();
+            int prefixLength = separator < 0 ? bytes.length * 8 : Integer.parseInt(range.substring(separator + 1));
+            if (prefixLength < 0 || prefixLength > bytes.length * 8) {
+                throw new IllegalArgumentException("Invalid trusted proxy range " + range);
+            }
+            return new AddressRange(bytes, prefixLength);
+        }
+
+        private boolean contains(byte[] other) {
+            if (other.length != address.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (other[i] != address[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xff << (8 - remainingBits);
+            return (other[fullBytes] & mask) == (address[fullBytes] & mask);
+        }
+    }
+
+    private static final class Failures {
+
+        private final int count;
+
+        private final Instant lockedUntil;
+
+        private Failures(int count, Instant lockedUntil) {
+            this.count = count;
+            this.lockedUntil = lockedUntil;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.ft.security;
+
+import java.time.Duration;
+
+/**
+ * This exception is thrown when a login attempt is rejected before its password is checked.
+ */
+public class LoginThrottledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    public LoginThrottledException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,69 @@
+package com.ft.security;
+
+import com.ft.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler dedicated to the bcrypt hashing of passwords, so that a burst of logins cannot use the threads of other
+ * requests.
+ * <p>
+ * It has a fixed number of threads and a bounded queue: once the queue is full, passwords are rejected at once with
+ * a {@link RejectedExecutionException}, which is translated to a {@code 503 (Service Unavailable)} status.
+ * The queue depth and the time spent waiting for a thread are exposed as the {@code executor} metrics named
+ * {@value #NAME}.
+ */
+@Component
+public class PasswordEncoderScheduler implements DisposableBean {
+
+    static final String NAME = "password-encoder";
+
+    private final Logger log = LoggerFactory.getLogger(PasswordEncoderScheduler.class);
+
+    private final Scheduler scheduler;
+
+    public PasswordEncoderScheduler(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.Security.PasswordEncoder properties = applicationProperties.getSecurity().getPasswordEncoder();
+        Counter rejectedCounter = Counter.builder("executor.rejected")
+            .tag("name", NAME)
+            .description("Passwords rejected because the queue was full")
+            .register(meterRegistry);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+            new CustomizableThreadFactory(NAME + "-"),
+            (runnable, rejectedExecutor) -> {
+                rejectedCounter.increment();
+                throw new RejectedExecutionException("Too many passwords waiting to be hashed");
+            });
+        log.debug("Hashing passwords with {} threads and a queue of {}", properties.getThreads(), properties.getQueueCapacity());
+        this.scheduler = Schedulers.fromExecutorService(ExecutorServiceMetrics.monitor(meterRegistry, executor, NAME), NAME);
+    }
+
+    /**
+     * Get the scheduler to hash or check passwords on.
+     *
+     * @return the scheduler.
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,67 @@
+package com.ft.security;
+
+import com.ft.domain.Authority;
+import com.ft.domain.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The part of a {@link User} needed to check its password, kept by the {@link UserCredentialsCache}.
+ */
+public final class UserCredentials {
+
+    private final String id;
+
+    private final String login;
+
+    private final String password;
+
+    private final boolean activated;
+
+    private final List<GrantedAuthority> authorities;
+
+    public UserCredentials(User user) {
+        this.id = user.getId();
+        this.login = user.getLogin();
+        this.password = user.getPassword();
+        this.activated = user.getActivated();
+        this.authorities = Collections.unmodifiableList(user.getAuthorities().stream()
+            .map(Authority::getName)
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList()));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isActivated() {
+        return activated;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "UserCredentials{" +
+            "login='" + login + '\'' +
+            ", activated=" + activated +
+            ", authorities=" + authorities +
+            "}";
+    }
+}
@@ -0,0 +1,139 @@
+package com.ft.security;
+
+import com.ft.config.ApplicationProperties;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, short-lived cache of the {@link UserCredentials} found by {@link DomainUserDetailsService}, keyed by the
+ * lower-cased login or email used to log in.
+ * <p>
+ * The user service evicts a user whenever it saves or deletes it. Other gateway instances are not notified, so
+ * their entries stay stale for at most the time to live.
+ * <p>
+ * The logins and emails each user is cached under are indexed by its id, so that evicting a user does not scan the
+ * cache.
+ */
+@Component
+public class UserCredentialsCache {
+
+    static final String CACHE_NAME = "security.user-credentials";
+
+    private final boolean enabled;
+
+    private final Cache<String, UserCredentials> cache;
+
+    /**
+     * Usernames of the cached credentials by user id, updated with the cache itself.
+     */
+    private final ConcurrentMap<String, Set<String>> usernamesById = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on each eviction, so that credentials loaded before an eviction are not cached after it.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    public UserCredentialsCache(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.Security.UserCache properties = applicationProperties.getSecurity().getUserCache();
+        this.enabled = properties.isEnabled();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(Duration.ofSeconds(properties.getTimeToLiveInSeconds()))
+            .writer(new UsernameIndexWriter())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the cached credentials of a user.
+     *
+     * @param username the lower-cased login or email.
+     * @return the credentials, or {@code null} if they are not cached.
+     */
+    public UserCredentials get(String username) {
+        return enabled ? cache.getIfPresent(username) : null;
+    }
+
+    /**
+     * Get a version to pass to {@link #put(String, UserCredentials, long)}, taken before loading the credentials.
+     *
+     * @return the version.
+     */
+    public long version() {
+        return evictions.get();
+    }
+
+    /**
+     * Cache the credentials of a user, unless a user was evicted since they were loaded.
+     *
+     * @param username the lower-cased login or email.
+     * @param credentials the credentials.
+     * @param version the {@link #version()} taken before loading the credentials.
+     */
+    public void put(String username, UserCredentials credentials, long version) {
+        if (enabled && evictions.get() == version) {
+            cache.put(username, credentials);
+            if (evictions.get() != version) {
+                // A concurrent eviction may have missed this entry
+                cache.asMap().remove(username, credentials);
+            }
+        }
+    }
+
+    /**
+     * Evict the credentials of a user, whatever login or email they are cached under.
+     *
+     * @param userId the id of the user.
+     */
+    public void evict(String userId) {
+        evictions.incrementAndGet();
+        Set<String> usernames = usernamesById.remove(userId);
+        if (usernames != null) {
+            // A username may have been cached again for another user since it was indexed
+            usernames.forEach(username -> cache.asMap().computeIfPresent(username,
+                (key, credentials) -> credentials.getId().equals(userId) ? null : credentials));
+        }
+    }
+
+    /**
+     * Evict the credentials of all users.
+     */
+    public void invalidateAll() {
+        evictions.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Keeps {@link #usernamesById} in sync with the cache, as its entries are written, removed, evicted or expired.
+     */
+    private final class UsernameIndexWriter implements CacheWriter<String, UserCredentials> {
+
+        @Override
+        public void write(String username, UserCredentials credentials) {
+            usernamesById.computeIfAbsent(credentials.getId(), id -> ConcurrentHashMap.newKeySet()).add(username);
+        }
+
+        @Override
+        public void delete(String username, UserCredentials credentials, RemovalCause cause) {
+            if (credentials != null) {
+                usernamesById.computeIfPresent(credentials.getId(), (id, usernames) -> {
+                    usernames.remove(username);
+                    return usernames.isEmpty() ? null : usernames;
+                });
+            }
+        }
+    }
+}
@@ -17,6 +17,12 @@ public class JWTFilter implements WebFilter {
 
     public static final String AUTHORIZATION_HEADER = "Authorization";
 
+    /**
+     * Exchange attribute holding the {@link Authentication} parsed from the request token, so that later filters
+     * do not verify the same token again.
+     */
+    public static final String AUTHENTICATION_ATTRIBUTE = JWTFilter.class.getName() + ".AUTHENTICATION";
+
     private final TokenProvider tokenProvider;
 
     public JWTFilter(TokenProvider tokenProvider) {
@@ -26,14 +32,17 @@ public class JWTFilter implements WebFilter {
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
         String jwt = resolveToken(exchange.getRequest());
-        if (StringUtils.hasText(jwt) && this.tokenProvider.validateToken(jwt)) {
-            Authentication authentication = this.tokenProvider.getAuthentication(jwt);
-            return chain.filter(exchange).subscriberContext(ReactiveSecurityContextHolder.withAuthentication(authentication));
+        if (StringUtils.hasText(jwt)) {
+            Authentication authentication = this.tokenProvider.parseAuthentication(jwt);
+            if (authentication != null) {
+                exchange.getAttributes().put(AUTHENTICATION_ATTRIBUTE, authentication);
+                return chain.filter(exchange).subscriberContext(ReactiveSecurityContextHolder.withAuthentication(authentication));
+            }
         }
         return chain.filter(exchange);
     }
 
-    private String resolveToken(ServerHttpRequest request) {
+    String resolveToken(ServerHttpRequest request) {
         String bearerToken = request.getHeaders().getFirst(AUTHORIZATION_HEADER);
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
             return bearerToken.substring(7);
@@ -1,27 +1,51 @@
 package com.ft.security.jwt;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.Collections;
+import java.util.List;
 
 import static com.ft.security.jwt.JWTFilter.AUTHORIZATION_HEADER;
 
 @Component
-public class JWTRelayGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+public class JWTRelayGatewayFilterFactory extends AbstractGatewayFilterFactory<JWTRelayGatewayFilterFactory.Config> {
+
+    static final String RELAY_METER_NAME = "gateway.jwt.relay";
 
     private final TokenProvider tokenProvider;
 
-    public JWTRelayGatewayFilterFactory(TokenProvider tokenProvider) {
+    private final Counter relayedCounter;
+
+    private final Counter skippedCounter;
+
+    private final Counter rejectedCounter;
+
+    public JWTRelayGatewayFilterFactory(TokenProvider tokenProvider, MeterRegistry meterRegistry) {
+        super(Config.class);
         this.tokenProvider = tokenProvider;
+        this.relayedCounter = relayCounter(meterRegistry, "relayed", "Requests relayed with a valid token");
+        this.skippedCounter = relayCounter(meterRegistry, "skipped", "Requests without a bearer token");
+        this.rejectedCounter = relayCounter(meterRegistry, "rejected", "Requests with an invalid bearer token");
     }
 
     @Override
-    public GatewayFilter apply(Object config) {
+    public List<String> shortcutFieldOrder() {
+        return Collections.singletonList("verify");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
         return (exchange, chain) -> {
-            String token = this.extractJWTToken(exchange.getRequest());
-            if (StringUtils.hasText(token) && this.tokenProvider.validateToken(token)) {
+            String token = this.relayedToken(exchange, config.isVerify());
+            if (token != null) {
                 ServerHttpRequest request = exchange.getRequest().mutate()
                     .header(AUTHORIZATION_HEADER, "Bearer " + token)
                     .build();
@@ -32,11 +56,61 @@ public class JWTRelayGatewayFilterFactory extends AbstractGatewayFilterFactory<O
         };
     }
 
+    /**
+     * Get the token to relay, reusing the authentication already parsed by {@link JWTFilter} when there is one.
+     *
+     * When {@code verify} is disabled, the bearer token is forwarded as is and left to the backend to verify.
+     *
+     * @return the valid token, or {@code null} if the request has no bearer token or an invalid one.
+     */
+    private String relayedToken(ServerWebExchange exchange, boolean verify) {
+        Authentication authentication = exchange.getAttribute(JWTFilter.AUTHENTICATION_ATTRIBUTE);
+        if (authentication != null) {
+            relayedCounter.increment();
+            return authentication.getCredentials().toString();
+        }
+        String token = this.extractJWTToken(exchange.getRequest());
+        if (token == null) {
+            skippedCounter.increment();
+            return null;
+        }
+        if (!verify || this.tokenProvider.validateToken(token)) {
+            relayedCounter.increment();
+            return token;
+        }
+        rejectedCounter.increment();
+        return null;
+    }
+
     private String extractJWTToken(ServerHttpRequest request) {
         String bearerToken = request.getHeaders().getFirst(AUTHORIZATION_HEADER);
-        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ") && bearerToken.length() > 7) {
             return bearerToken.substring(7);
         }
-        throw new IllegalArgumentException("Invalid token in Authorization header");
+        return null;
+    }
+
+    public static class Config {
+
+        /**
+         * Whether to verify tokens that {@link JWTFilter} did not already parse, disable it when the backends verify
+         * tokens themselves against {@code /.well-known/jwks.json}.
+         */
+        private boolean verify = true;
+
+        public boolean isVerify() {
+            return verify;
+        }
+
+        public void setVerify(boolean verify) {
+            this.verify = verify;
+        }
+    }
+
+    private static Counter relayCounter(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder(RELAY_METER_NAME)
+            .tag("result", result)
+            .description(description)
+            .register(meterRegistry);
     }
 }
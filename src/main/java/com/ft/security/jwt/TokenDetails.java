@@ -0,0 +1,54 @@
+package com.ft.security.jwt;
+
+import java.io.Serializable;
+
+/**
+ * Claims of a verified JWT that identify it, kept as the details of its authentication.
+ */
+public final class TokenDetails implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String tokenId;
+
+    private final Long issuedAt;
+
+    private final Long expiresAt;
+
+    public TokenDetails(String tokenId, Long issuedAt, Long expiresAt) {
+        this.tokenId = tokenId;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return the {@code jti} claim, or {@code null} for tokens issued before it was added.
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * @return the issue date in milliseconds since epoch, from the {@code iat_ms} claim or else the whole seconds of the
+     * {@code iat} claim, or {@code null} if the token has none.
+     */
+    public Long getIssuedAt() {
+        return issuedAt;
+    }
+
+    /**
+     * @return the {@code exp} claim in milliseconds since epoch, or {@code null} if the token has none.
+     */
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenDetails{" +
+            "tokenId='" + tokenId + '\'' +
+            ", issuedAt=" + issuedAt +
+            ", expiresAt=" + expiresAt +
+            '}';
+    }
+}
@@ -0,0 +1,85 @@
+package com.ft.security.jwt;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable set of the keys that verify JWTs, indexed by {@code kid}, with the single key that signs new tokens.
+ * <p>
+ * A new key ring replaces the previous one on rotation, so reading it needs no lock.
+ */
+public final class TokenKeyRing {
+
+    private final TokenSigningKey activeKey;
+
+    private final Map<String, TokenSigningKey> keys;
+
+    private final Map<String, Object> jsonWebKeySet;
+
+    public TokenKeyRing(TokenSigningKey activeKey, List<TokenSigningKey> verificationKeys) {
+        Map<String, TokenSigningKey> keys = new LinkedHashMap<>();
+        keys.put(activeKey.getKeyId(), activeKey);
+        for (TokenSigningKey verificationKey : verificationKeys) {
+            TokenSigningKey existing = keys.putIfAbsent(verificationKey.getKeyId(), verificationKey);
+            if (existing != null && !existing.getVerificationKey().equals(verificationKey.getVerificationKey())) {
+                throw new IllegalArgumentException("Duplicate JWT key id: " + verificationKey.getKeyId());
+            }
+        }
+        this.activeKey = activeKey;
+        this.keys = Collections.unmodifiableMap(keys);
+        List<Map<String, Object>> jsonWebKeys = keys.values().stream()
+            .filter(TokenSigningKey::isPublishable)
+            .map(TokenSigningKey::toJsonWebKey)
+            .collect(Collectors.toList());
+        this.jsonWebKeySet = Collections.singletonMap("keys", Collections.unmodifiableList(jsonWebKeys));
+    }
+
+    public TokenSigningKey getActiveKey() {
+        return activeKey;
+    }
+
+    /**
+     * Get a verification key.
+     *
+     * @param keyId the {@code kid} header of the token.
+     * @return the key, or {@code null} if the key ring has no such key.
+     */
+    public TokenSigningKey getKey(String keyId) {
+        return keys.get(keyId);
+    }
+
+    public Collection<TokenSigningKey> getKeys() {
+        return keys.values();
+    }
+
+    /**
+     * Get the public keys of the key ring as a JSON Web Key Set (RFC 7517).
+     *
+     * @return the key set, without the HMAC keys.
+     */
+    public Map<String, Object> getJsonWebKeySet() {
+        return jsonWebKeySet;
+    }
+
+    /**
+     * Check whether this key ring has the same keys as another one.
+     */
+    public boolean hasSameKeys(TokenKeyRing other) {
+        return activeKey.getKeyId().equals(other.activeKey.getKeyId()) && !retires(other) && !other.retires(this);
+    }
+
+    /**
+     * Check whether a key of a previous key ring is missing from this one, or has a different value,
+     * in which case the tokens verified with it must be verified again.
+     */
+    public boolean retires(TokenKeyRing previous) {
+        for (TokenSigningKey previousKey : previous.keys.values()) {
+            TokenSigningKey key = keys.get(previousKey.getKeyId());
+            if (key == null || key.getAlgorithm() != previousKey.getAlgorithm()
+                || !key.getVerificationKey().equals(previousKey.getVerificationKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,17 +1,26 @@
 package com.ft.security.jwt;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
+import java.security.*;
 import java.util.*;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 
+import com.ft.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -19,8 +28,8 @@ import org.springframework.util.StringUtils;
 import io.github.jhipster.config.JHipsterProperties;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.jackson.io.JacksonDeserializer;
 import io.jsonwebtoken.jackson.io.JacksonSerializer;
-import io.jsonwebtoken.security.Keys;
 
 @Component
 public class TokenProvider {
@@ -29,7 +38,20 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
-    private Key key;
+    /**
+     * Issue date in milliseconds, as the {@code iat} claim only has whole seconds: a token issued right after the
+     * revocation of every token of its user must not look issued before it.
+     */
+    private static final String ISSUED_AT_MILLIS_KEY = "iat_ms";
+
+    /**
+     * Replaced as a whole on rotation, so that verifying a token reads the keys without taking a lock.
+     */
+    private volatile TokenKeyRing keyRing;
+
+    private volatile long keyStoreLastModified;
+
+    private JwtParser jwtParser;
 
     private long tokenValidityInMilliseconds;
 
@@ -37,23 +59,33 @@ public class TokenProvider {
 
     private final JHipsterProperties jHipsterProperties;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties.Security.Signing signingProperties;
+
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    private final TokenRevocationList revocationList;
+
+    private final JacksonSerializer<Map<String, ?>> serializer = new JacksonSerializer<>();
+
+    public TokenProvider(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+                         MeterRegistry meterRegistry) {
         this.jHipsterProperties = jHipsterProperties;
+        this.signingProperties = applicationProperties.getSecurity().getSigning();
+        this.verifiedTokenCache = new VerifiedTokenCache(applicationProperties.getSecurity().getTokenCache(), meterRegistry);
+        this.revocationList = new TokenRevocationList(applicationProperties.getSecurity().getRevocation(), meterRegistry);
     }
 
     @PostConstruct
     public void init() {
-        byte[] keyBytes;
-        String secret = jHipsterProperties.getSecurity().getAuthentication().getJwt().getSecret();
-        if (!StringUtils.isEmpty(secret)) {
-            log.warn("Warning: the JWT key used is not Base64-encoded. " +
-                "We recommend using the `jhipster.security.authentication.jwt.base64-secret` key for optimum security.");
-            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        } else {
-            log.debug("Using a Base64-encoded JWT secret key");
-            keyBytes = Decoders.BASE64.decode(jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret());
-        }
-        this.key = Keys.hmacShaKeyFor(keyBytes);
+        long lastModified = keyStoreLastModified();
+        this.keyRing = loadKeyRing();
+        this.keyStoreLastModified = lastModified;
+        log.debug("Signing JWTs with {} key {}", keyRing.getActiveKey().getAlgorithm(), keyRing.getActiveKey().getKeyId());
+        // The parser is thread-safe, building it once avoids creating a new JSON deserializer for each token
+        this.jwtParser = Jwts.parserBuilder()
+            .setSigningKeyResolver(new KeyIdResolver())
+            .deserializeJsonWith(new JacksonDeserializer<>())
+            .build();
         this.tokenValidityInMilliseconds =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
         this.tokenValidityInMillisecondsForRememberMe =
@@ -61,6 +93,134 @@ public class TokenProvider {
                 .getTokenValidityInSecondsForRememberMe();
     }
 
+    /**
+     * Reload the keys after the configuration is refreshed, for example by a change of the Consul KV store.
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onConfigurationRefresh() {
+        reloadKeys();
+    }
+
+    /**
+     * Reload the keys when the key store file changes, or when it is created.
+     * <p>
+     * This is scheduled every 30 seconds.
+     */
+    @Scheduled(fixedDelay = 30000, initialDelay = 30000)
+    public void watchKeyStore() {
+        long lastModified = keyStoreLastModified();
+        if (lastModified != 0 && lastModified != keyStoreLastModified) {
+            reloadKeys();
+        }
+    }
+
+    /**
+     * Replace the keys with the ones currently configured.
+     * <p>
+     * The previous keys are kept if the new ones cannot be loaded. When a key is removed or changed, the tokens
+     * that were already verified are verified again.
+     * <p>
+     * The modification time of the key store is only recorded once its keys are loaded, so that a key store which
+     * could not be loaded is loaded again by the next {@link #watchKeyStore()}.
+     */
+    public synchronized void reloadKeys() {
+        long lastModified = keyStoreLastModified();
+        TokenKeyRing previous = this.keyRing;
+        TokenKeyRing loaded;
+        try {
+            loaded = loadKeyRing();
+        } catch (RuntimeException e) {
+            log.error("Could not reload the JWT keys, keeping key {}", previous.getActiveKey().getKeyId(), e);
+            return;
+        }
+        if (!loaded.hasSameKeys(previous)) {
+            this.keyRing = loaded;
+            if (loaded.retires(previous)) {
+                verifiedTokenCache.invalidateAll();
+            }
+            log.info("Reloaded the JWT keys, signing with {} key {} and verifying with {} keys",
+                loaded.getActiveKey().getAlgorithm(), loaded.getActiveKey().getKeyId(), loaded.getKeys().size());
+        }
+        this.keyStoreLastModified = lastModified;
+    }
+
+    private TokenKeyRing loadKeyRing() {
+        SignatureAlgorithm algorithm = SignatureAlgorithm.forName(signingProperties.getAlgorithm());
+        TokenSigningKey activeKey;
+        if (algorithm == SignatureAlgorithm.HS512) {
+            activeKey = TokenSigningKey.hmac(signingProperties.getKeyId(), hmacSecret());
+        } else {
+            activeKey = TokenSigningKey.asymmetric(signingProperties.getKeyId(), algorithm, keyPair(algorithm));
+        }
+        List<TokenSigningKey> verificationKeys = new ArrayList<>();
+        for (ApplicationProperties.Security.Signing.VerificationKey verificationKey : signingProperties.getVerificationKeys()) {
+            if (!StringUtils.isEmpty(verificationKey.getBase64Secret())) {
+                verificationKeys.add(TokenSigningKey.hmac(verificationKey.getKeyId(),
+                    Decoders.BASE64.decode(verificationKey.getBase64Secret())));
+            } else {
+                SignatureAlgorithm verificationAlgorithm = StringUtils.isEmpty(verificationKey.getAlgorithm()) ? algorithm :
+                    SignatureAlgorithm.forName(verificationKey.getAlgorithm());
+                verificationKeys.add(TokenSigningKey.publicKey(verificationKey.getKeyId(), verificationAlgorithm,
+                    Decoders.BASE64.decode(verificationKey.getPublicKey())));
+            }
+        }
+        return new TokenKeyRing(activeKey, verificationKeys);
+    }
+
+    private byte[] hmacSecret() {
+        String secret = jHipsterProperties.getSecurity().getAuthentication().getJwt().getSecret();
+        if (!StringUtils.isEmpty(secret)) {
+            log.warn("Warning: the JWT key used is not Base64-encoded. " +
+                "We recommend using the `jhipster.security.authentication.jwt.base64-secret` key for optimum security.");
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        log.debug("Using a Base64-encoded JWT secret key");
+        return Decoders.BASE64.decode(jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret());
+    }
+
+    private KeyPair keyPair(SignatureAlgorithm algorithm) {
+        if (StringUtils.isEmpty(signingProperties.getKeyStore())) {
+            TokenKeyRing current = this.keyRing;
+            if (current != null && current.getActiveKey().getAlgorithm() == algorithm) {
+                // Keep the generated key pair, a new one would invalidate every token
+                return new KeyPair((PublicKey) current.getActiveKey().getVerificationKey(),
+                    (PrivateKey) current.getActiveKey().getSigningKey());
+            }
+            log.warn("Warning: no `application.security.signing.key-store` is configured, generating a {} key pair. " +
+                "Tokens will not be valid after a restart or on other instances.", algorithm);
+            return TokenSigningKey.generateKeyPair(algorithm);
+        }
+        char[] password = signingProperties.getKeyStorePassword() == null ? new char[0] :
+            signingProperties.getKeyStorePassword().toCharArray();
+        try (InputStream in = new DefaultResourceLoader().getResource(signingProperties.getKeyStore()).getInputStream()) {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(in, password);
+            String alias = signingProperties.getKeyAlias();
+            Key privateKey = keyStore.getKey(alias, password);
+            if (!(privateKey instanceof PrivateKey) || keyStore.getCertificate(alias) == null) {
+                throw new IllegalStateException("No private key with alias '" + alias + "' in " + signingProperties.getKeyStore());
+            }
+            return new KeyPair(keyStore.getCertificate(alias).getPublicKey(), (PrivateKey) privateKey);
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalStateException("Could not load the JWT signing key from " + signingProperties.getKeyStore(), e);
+        }
+    }
+
+    /**
+     * Get the modification time of the key store, or {@code 0} if it is not a file.
+     */
+    private long keyStoreLastModified() {
+        if (StringUtils.isEmpty(signingProperties.getKeyStore())) {
+            return 0;
+        }
+        Resource resource = new DefaultResourceLoader().getResource(signingProperties.getKeyStore());
+        try {
+            return resource.isFile() ? resource.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
     public String createToken(Authentication authentication, boolean rememberMe) {
         String authorities = authentication.getAuthorities().stream()
             .map(GrantedAuthority::getAuthority)
@@ -74,40 +234,124 @@ public class TokenProvider {
             validity = new Date(now + this.tokenValidityInMilliseconds);
         }
 
+        TokenSigningKey signingKey = keyRing.getActiveKey();
         return Jwts.builder()
+            .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKeyId())
+            .setId(UUID.randomUUID().toString())
+            .setIssuedAt(new Date(now))
             .setSubject(authentication.getName())
             .claim(AUTHORITIES_KEY, authorities)
-            .signWith(key, SignatureAlgorithm.HS512)
+            .claim(ISSUED_AT_MILLIS_KEY, now)
+            .signWith(signingKey.getSigningKey(), signingKey.getAlgorithm())
             .setExpiration(validity)
-            .serializeToJsonWith(new JacksonSerializer())
+            .serializeToJsonWith(serializer)
             .compact();
     }
 
+    /**
+     * Get the public keys that verify the tokens signed by this provider, as a JSON Web Key Set (RFC 7517).
+     *
+     * @return the key set, without the shared secrets.
+     */
+    public Map<String, Object> getJsonWebKeySet() {
+        return keyRing.getJsonWebKeySet();
+    }
+
+    /**
+     * Get the list of revoked tokens, which every token is checked against.
+     *
+     * @return the revocation list.
+     */
+    public TokenRevocationList getRevocationList() {
+        return revocationList;
+    }
+
     public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parserBuilder()
-            .setSigningKey(key)
-            .build()
+        Authentication authentication = verifiedTokenCache.get(token);
+        if (authentication == null) {
+            authentication = verify(token);
+        }
+        if (revocationList.isRevoked(authentication.getName(), (TokenDetails) authentication.getDetails())) {
+            throw new JwtException("The JWT token was revoked");
+        }
+        return authentication;
+    }
+
+    public boolean validateToken(String authToken) {
+        return parseAuthentication(authToken) != null;
+    }
+
+    /**
+     * Validate a token and build its authentication in a single pass.
+     *
+     * @param authToken the compact JWT.
+     * @return the authentication of the token, or {@code null} if the token is not valid or was revoked.
+     */
+    public Authentication parseAuthentication(String authToken) {
+        try {
+            return getAuthentication(authToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.info("Invalid JWT token.");
+            log.trace("Invalid JWT token trace.", e);
+        }
+        return null;
+    }
+
+    /**
+     * Check the signature and claims of a token, and cache the resulting authentication until the token expires.
+     */
+    private Authentication verify(String token) {
+        Claims claims = jwtParser
             .parseClaimsJws(token)
             .getBody();
 
-        Collection<? extends GrantedAuthority> authorities =
-            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                .map(SimpleGrantedAuthority::new)
+        Object authoritiesClaim = claims.get(AUTHORITIES_KEY);
+        Collection<? extends GrantedAuthority> authorities = authoritiesClaim == null ? Collections.emptyList() :
+            Arrays.stream(authoritiesClaim.toString().split(","))
+                .filter(StringUtils::hasText)
+                .map(verifiedTokenCache::authority)
                 .collect(Collectors.toList());
 
         User principal = new User(claims.getSubject(), "", authorities);
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        Long expiresAt = claims.getExpiration() == null ? null : claims.getExpiration().getTime();
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        authentication.setDetails(new TokenDetails(claims.getId(), issuedAt(claims), expiresAt));
+        return verifiedTokenCache.put(token, expiresAt, authentication);
     }
 
-    public boolean validateToken(String authToken) {
-        try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            log.info("Invalid JWT token.");
-            log.trace("Invalid JWT token trace.", e);
+    private static Long issuedAt(Claims claims) {
+        Object issuedAtMillis = claims.get(ISSUED_AT_MILLIS_KEY);
+        if (issuedAtMillis instanceof Number) {
+            return ((Number) issuedAtMillis).longValue();
+        }
+        // Tokens issued before the claim was added
+        return claims.getIssuedAt() == null ? null : claims.getIssuedAt().getTime();
+    }
+
+    /**
+     * Select the verification key from the {@code kid} header, tokens without one were signed before key ids were added.
+     * The key ring is read once per token, without a lock.
+     */
+    private final class KeyIdResolver extends SigningKeyResolverAdapter {
+
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            return verificationKey(header.getKeyId());
+        }
+
+        @Override
+        public Key resolveSigningKey(JwsHeader header, String plaintext) {
+            return verificationKey(header.getKeyId());
+        }
+
+        private Key verificationKey(String keyId) {
+            TokenKeyRing ring = keyRing;
+            TokenSigningKey key = keyId == null ? ring.getActiveKey() : ring.getKey(keyId);
+            if (key == null) {
+                throw new UnsupportedJwtException("Unknown JWT key id: " + keyId);
+            }
+            return key.getVerificationKey();
         }
-        return false;
     }
 }
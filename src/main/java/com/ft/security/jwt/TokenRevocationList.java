@@ -0,0 +1,119 @@
+package com.ft.security.jwt;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.RevokedToken;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory list of the revoked JWTs, checked on every request without any I/O.
+ * <p>
+ * Revoked token ids go into a Bloom filter, which rules out almost every valid token with a few bit lookups,
+ * and into an exact set that confirms the Bloom filter's matches. Revoking every token of a user is recorded
+ * by login, for the tokens issued up to the revocation date.
+ * <p>
+ * Revocations are added as they are read from the database, and the whole list is rebuilt from time to time to
+ * drop the expired ones, as a Bloom filter cannot remove entries.
+ */
+public class TokenRevocationList {
+
+    static final String METER_NAME = "jwt.revoked-tokens";
+
+    private final int expectedRevokedTokens;
+
+    private final double falsePositiveProbability;
+
+    private volatile Revocations revocations;
+
+    public TokenRevocationList(ApplicationProperties.Security.Revocation properties, MeterRegistry meterRegistry) {
+        this.expectedRevokedTokens = properties.getExpectedRevokedTokens();
+        this.falsePositiveProbability = properties.getFalsePositiveProbability();
+        this.revocations = new Revocations(expectedRevokedTokens, falsePositiveProbability);
+        Gauge.builder(METER_NAME, this, list -> list.revocations.tokens.size())
+            .tag("type", "token")
+            .description("Revoked tokens")
+            .register(meterRegistry);
+        Gauge.builder(METER_NAME, this, list -> list.revocations.users.size())
+            .tag("type", "user")
+            .description("Users whose tokens have all been revoked")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Check whether a token was revoked.
+     *
+     * @param login the subject of the token.
+     * @param details the claims that identify the token.
+     * @return {@code true} if the token, or every token of its user, was revoked.
+     */
+    public boolean isRevoked(String login, TokenDetails details) {
+        Revocations current = this.revocations;
+        String tokenId = details.getTokenId();
+        if (tokenId != null && current.tokenFilter.mightContain(tokenId) && current.tokens.containsKey(tokenId)) {
+            return true;
+        }
+        if (current.users.isEmpty()) {
+            return false;
+        }
+        Long revokedAt = current.users.get(login);
+        return revokedAt != null && (details.getIssuedAt() == null || details.getIssuedAt() <= revokedAt);
+    }
+
+    /**
+     * Add a revocation to the list.
+     *
+     * @param revokedToken the revoked token, or the revocation of all the tokens of a user.
+     */
+    public void add(RevokedToken revokedToken) {
+        add(this.revocations, revokedToken);
+    }
+
+    /**
+     * Replace the whole list, which drops the expired revocations.
+     *
+     * @param revokedTokens the revocations that have not expired.
+     */
+    public void rebuild(Collection<RevokedToken> revokedTokens) {
+        Revocations rebuilt = new Revocations(Math.max(expectedRevokedTokens, 2 * revokedTokens.size()), falsePositiveProbability);
+        revokedTokens.forEach(revokedToken -> add(rebuilt, revokedToken));
+        this.revocations = rebuilt;
+    }
+
+    private static void add(Revocations revocations, RevokedToken revokedToken) {
+        long expiresAt = revokedToken.getExpiryDate().toEpochMilli();
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        if (revokedToken.getTokenId() != null) {
+            // The exact set first, so that a match of the Bloom filter is always confirmed
+            revocations.tokens.put(revokedToken.getTokenId(), expiresAt);
+            revocations.tokenFilter.put(revokedToken.getTokenId());
+        } else {
+            // Compared with the issue date in milliseconds of the tokens. Tokens issued before that claim was added
+            // only have whole seconds, so those issued later in the second of the revocation are revoked too
+            revocations.users.merge(revokedToken.getLogin(), revokedToken.getRevokedDate().toEpochMilli(), Math::max);
+        }
+    }
+
+    private static final class Revocations {
+
+        private final BloomFilter<CharSequence> tokenFilter;
+
+        private final ConcurrentMap<String, Long> tokens = new ConcurrentHashMap<>();
+
+        private final ConcurrentMap<String, Long> users = new ConcurrentHashMap<>();
+
+        private Revocations(int expectedRevokedTokens, double falsePositiveProbability) {
+            this.tokenFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                expectedRevokedTokens, falsePositiveProbability);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.ft.security.jwt;
+
+import com.ft.security.KeyDigests;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A key used to sign and verify JWTs, identified by the {@code kid} header of the tokens it signs.
+ * <p>
+ * HMAC keys sign and verify with the same secret, while RSA and EC keys sign with their private key and can be
+ * published as a JSON Web Key so that other services verify tokens with the public key.
+ */
+public final class TokenSigningKey {
+
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final String keyId;
+
+    private final SignatureAlgorithm algorithm;
+
+    private final Key signingKey;
+
+    private final Key verificationKey;
+
+    private TokenSigningKey(String keyId, SignatureAlgorithm algorithm, Key signingKey, Key verificationKey) {
+        this.keyId = keyId == null ? thumbprint(verificationKey) : keyId;
+        this.algorithm = algorithm;
+        this.signingKey = signingKey;
+        this.verificationKey = verificationKey;
+    }
+
+    /**
+     * Create an HMAC key.
+     *
+     * @param keyId the key id, or {@code null} to derive it from the secret.
+     * @param secret the shared secret.
+     * @return the key.
+     */
+    public static TokenSigningKey hmac(String keyId, byte[] secret) {
+        Key key = Keys.hmacShaKeyFor(secret);
+        return new TokenSigningKey(keyId, SignatureAlgorithm.HS512, key, key);
+    }
+
+    /**
+     * Create an RSA or EC key from a key pair.
+     *
+     * @param keyId the key id, or {@code null} to derive it from the public key.
+     * @param algorithm the asymmetric signature algorithm.
+     * @param keyPair the key pair, its private key may be {@code null} for a verification-only key.
+     * @return the key.
+     */
+    public static TokenSigningKey asymmetric(String keyId, SignatureAlgorithm algorithm, KeyPair keyPair) {
+        if (!algorithm.isRsa() && !algorithm.isEllipticCurve()) {
+            throw new IllegalArgumentException("Not an asymmetric signature algorithm: " + algorithm);
+        }
+        return new TokenSigningKey(keyId, algorithm, keyPair.getPrivate(), keyPair.getPublic());
+    }
+
+    /**
+     * Create an RSA or EC key that only verifies tokens.
+     *
+     * @param keyId the key id, or {@code null} to derive it from the public key.
+     * @param algorithm the asymmetric signature algorithm.
+     * @param encodedPublicKey the X.509 encoded public key.
+     * @return the key.
+     */
+    public static TokenSigningKey publicKey(String keyId, SignatureAlgorithm algorithm, byte[] encodedPublicKey) {
+        try {
+            PublicKey publicKey = KeyFactory.getInstance(algorithm.isEllipticCurve() ? "EC" : "RSA")
+                .generatePublic(new X509EncodedKeySpec(encodedPublicKey));
+            return asymmetric(keyId, algorithm, new KeyPair(publicKey, null));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid " + algorithm + " public key", e);
+        }
+    }
+
+    /**
+     * Generate a new RSA or EC key pair for an asymmetric algorithm.
+     *
+     * @param algorithm the asymmetric signature algorithm.
+     * @return the key pair.
+     */
+    public static KeyPair generateKeyPair(SignatureAlgorithm algorithm) {
+        try {
+            KeyPairGenerator generator;
+            if (algorithm.isRsa()) {
+                generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(algorithm.getMinKeyLength());
+            } else if (algorithm.isEllipticCurve()) {
+                generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec(algorithm == SignatureAlgorithm.ES256 ? "secp256r1" :
+                    algorithm == SignatureAlgorithm.ES384 ? "secp384r1" : "secp521r1"));
+            } else {
+                throw new IllegalArgumentException("Cannot generate a key pair for " + algorithm);
+            }
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not generate a " + algorithm + " key pair", e);
+        }
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public Key getSigningKey() {
+        return signingKey;
+    }
+
+    public Key getVerificationKey() {
+        return verificationKey;
+    }
+
+    public boolean canSign() {
+        return signingKey != null;
+    }
+
+    public boolean isPublishable() {
+        return verificationKey instanceof PublicKey;
+    }
+
+    /**
+     * Get the public JSON Web Key (RFC 7517) of this key.
+     *
+     * @return the JWK members, or an empty map for HMAC keys, which must never be published.
+     */
+    public Map<String, Object> toJsonWebKey() {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        if (verificationKey instanceof RSAPublicKey) {
+            RSAPublicKey publicKey = (RSAPublicKey) verificationKey;
+            jwk.put("kty", "RSA");
+            jwk.put("n", base64Url(publicKey.getModulus(), 0));
+            jwk.put("e", base64Url(publicKey.getPublicExponent(), 0));
+        } else if (verificationKey instanceof ECPublicKey) {
+            ECPublicKey publicKey = (ECPublicKey) verificationKey;
+            int length = (publicKey.getParams().getCurve().getField().getFieldSize() + 7) / 8;
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-" + publicKey.getParams().getCurve().getField().getFieldSize());
+            jwk.put("x", base64Url(publicKey.getW().getAffineX(), length));
+            jwk.put("y", base64Url(publicKey.getW().getAffineY(), length));
+        } else {
+            return Collections.emptyMap();
+        }
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithm.getValue());
+        jwk.put("kid", keyId);
+        return jwk;
+    }
+
+    /**
+     * Encode an unsigned big-endian integer, left-padded with zeros to {@code length} bytes when it is not zero.
+     */
+    private static String base64Url(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (bytes.length < length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return BASE64_URL.encodeToString(bytes);
+    }
+
+    private static String thumbprint(Key key) {
+        byte[] digest = KeyDigests.sha256(key.getEncoded());
+        return new String(BASE64_URL.encode(Arrays.copyOf(digest, 12)), StandardCharsets.US_ASCII);
+    }
+}
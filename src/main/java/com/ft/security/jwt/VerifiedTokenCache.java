@@ -0,0 +1,130 @@
+package com.ft.security.jwt;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.security.KeyDigests;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of JWTs whose signature and claims have already been verified.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the compact token, so raw tokens are never used as map keys,
+ * and each entry expires no later than the {@code exp} claim of its token.
+ */
+public class VerifiedTokenCache {
+
+    static final String CACHE_NAME = "jwt.verified-tokens";
+
+    private final boolean enabled;
+
+    private final long maximumTimeToLiveInMillis;
+
+    private final Cache<ByteBuffer, Entry> cache;
+
+    private final ConcurrentMap<String, SimpleGrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+    public VerifiedTokenCache(ApplicationProperties.Security.TokenCache properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.maximumTimeToLiveInMillis = TimeUnit.SECONDS.toMillis(properties.getTimeToLiveInSeconds());
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfter(new EntryExpiry())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the authentication previously built for a verified token.
+     *
+     * @param token the compact JWT.
+     * @return the cached authentication, or {@code null} if the token is unknown or has expired.
+     */
+    public Authentication get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(digest(token));
+        return entry == null ? null : entry.authentication;
+    }
+
+    /**
+     * Remember the authentication built for a verified token.
+     *
+     * @param token the compact JWT.
+     * @param expiresAt the {@code exp} claim of the token in milliseconds since epoch, or {@code null} if it has none.
+     * @param authentication the authentication built from the token claims.
+     * @return the given authentication.
+     */
+    public Authentication put(String token, Long expiresAt, Authentication authentication) {
+        if (enabled) {
+            long maximumExpiresAt = System.currentTimeMillis() + maximumTimeToLiveInMillis;
+            long entryExpiresAt = expiresAt == null ? maximumExpiresAt : Math.min(expiresAt, maximumExpiresAt);
+            cache.put(digest(token), new Entry(authentication, entryExpiresAt));
+        }
+        return authentication;
+    }
+
+    /**
+     * Get the shared {@link SimpleGrantedAuthority} instance for an authority name.
+     *
+     * @param authority the authority name.
+     * @return the interned authority.
+     */
+    public SimpleGrantedAuthority authority(String authority) {
+        return authorities.computeIfAbsent(authority, SimpleGrantedAuthority::new);
+    }
+
+    /**
+     * Drop every cached token, for example after the signing keys have changed.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static ByteBuffer digest(String token) {
+        return ByteBuffer.wrap(KeyDigests.sha256(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static final class Entry {
+
+        private final Authentication authentication;
+
+        private final long expiresAt;
+
+        private Entry(Authentication authentication, long expiresAt) {
+            this.authentication = authentication;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class EntryExpiry implements Expiry<ByteBuffer, Entry> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer key, Entry entry, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, entry.expiresAt - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, Entry entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.ft.service;
+
+import io.github.jhipster.config.JHipsterProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.config.ApplicationProperties;
+import com.ft.config.MinioConfiguration;
+import com.ft.config.audit.AuditEventConverter;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.PersistentAuditEventBucket;
+
+import io.minio.MinioClient;
+import io.minio.PutObjectOptions;
+import io.minio.Result;
+import io.minio.messages.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service moving old audit events from MongoDB to gzip NDJSON objects in MinIO, one per day, and reading them back.
+ * <p>
+ * The events of a day are only deleted from MongoDB once the object holding them is stored with its full size, and
+ * while the day still has as many events as were archived. Days are in UTC.
+ */
+@Service
+@ConditionalOnProperty(prefix = "minio", name = { "endpoint", "bucket-name" })
+public class AuditEventArchiveService {
+
+    private static final String ARCHIVE_OLD_AUDIT_EVENTS_JOB = "archive-old-audit-events";
+
+    private static final String OBJECT_SUFFIX = ".ndjson.gz";
+
+    private static final String CONTENT_TYPE = "application/gzip";
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventArchiveService.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final AuditEventBucketService auditEventBucketService;
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final JobLeaseService jobLeaseService;
+
+    private final MinioClient minioClient;
+
+    private final String bucketName;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationProperties applicationProperties;
+
+    public AuditEventArchiveService(ReactiveMongoTemplate mongoTemplate, AuditEventBucketService auditEventBucketService,
+                                    AuditEventConverter auditEventConverter, JobLeaseService jobLeaseService,
+                                    MinioClient minioClient, MinioConfiguration minioConfiguration, ObjectMapper objectMapper,
+                                    ApplicationProperties applicationProperties, JHipsterProperties jHipsterProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.auditEventBucketService = auditEventBucketService;
+        this.auditEventConverter = auditEventConverter;
+        this.jobLeaseService = jobLeaseService;
+        this.minioClient = minioClient;
+        this.bucketName = minioConfiguration.getBucketName();
+        this.objectMapper = objectMapper;
+        this.applicationProperties = applicationProperties;
+        ApplicationProperties.AuditEvents.Archive archive = applicationProperties.getAuditEvents().getArchive();
+        if (archive.isEnabled() && archive.getAfterDays() >= jHipsterProperties.getAuditEvents().getRetentionPeriod()) {
+            log.warn("Audit events are deleted after {} days, before they are archived after {} days",
+                jHipsterProperties.getAuditEvents().getRetentionPeriod(), archive.getAfterDays());
+        }
+    }
+
+    /**
+     * Old audit events are archived every day, on a single instance.
+     * <p>
+     * This is scheduled to get fired at 00:30 (am).
+     */
+    @Scheduled(cron = "0 30 0 * * ?")
+    public void archiveOldAuditEvents() {
+        if (!applicationProperties.getAuditEvents().getArchive().isEnabled()) {
+            return;
+        }
+        jobLeaseService.runExclusively(ARCHIVE_OLD_AUDIT_EVENTS_JOB,
+            lease -> Mono.fromRunnable(() -> archive(Instant.now())).subscribeOn(Schedulers.boundedElastic())).block();
+    }
+
+    /**
+     * Archive the days of events older than the archive age, blocking until done.
+     *
+     * @param now the current date.
+     */
+    void archive(Instant now) {
+        Instant before = now.truncatedTo(ChronoUnit.DAYS).minus(applicationProperties.getAuditEvents().getArchive().getAfterDays(), ChronoUnit.DAYS);
+        Instant oldest = oldestEventDate().block();
+        if (oldest == null) {
+            return;
+        }
+        for (Instant day = oldest.truncatedTo(ChronoUnit.DAYS); day.isBefore(before); day = day.plus(1, ChronoUnit.DAYS)) {
+            archiveDay(day);
+        }
+    }
+
+    private void archiveDay(Instant day) {
+        Instant end = day.plus(1, ChronoUnit.DAYS);
+        Path file = null;
+        try {
+            file = Files.createTempFile("audit-events-", OBJECT_SUFFIX);
+            long archived = write(findEvents(day, end), file);
+            if (archived == 0) {
+                return;
+            }
+            String objectName = newObjectName(LocalDate.from(day.atOffset(ZoneOffset.UTC)));
+            long size = Files.size(file);
+            upload(objectName, file, size);
+            long stored = minio(() -> minioClient.statObject(bucketName, objectName).length());
+            if (stored != size) {
+                log.warn("Audit event archive {} has {} bytes instead of {}, the events are kept in MongoDB", objectName, stored, size);
+                return;
+            }
+            long current = countEvents(day, end).block();
+            if (current != archived) {
+                log.warn("Audit events of {} changed while they were archived, they are kept in MongoDB", day);
+                minio(() -> {
+                    minioClient.removeObject(bucketName, objectName);
+                    return null;
+                });
+                return;
+            }
+            removeEvents(day, end).block();
+            log.info("Archived {} audit events of {} to {}", archived, day, objectName);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not archive the audit events of " + day, e);
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Could not delete {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private long write(Flux<PersistentAuditEvent> events, Path file) throws IOException {
+        long count = 0;
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8)) {
+            for (PersistentAuditEvent event : events.toIterable()) {
+                writer.write(objectMapper.writeValueAsString(event));
+                writer.write('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void upload(String objectName, Path file, long size) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            PutObjectOptions options = new PutObjectOptions(size, -1);
+            options.setContentType(CONTENT_TYPE);
+            minio(() -> {
+                minioClient.putObject(bucketName, objectName, in, options);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Get the name of a new object for the events of a day: the events of a day archived again, for instance after
+     * they were kept in MongoDB, go to another object.
+     */
+    private String newObjectName(LocalDate day) {
+        List<String> existing = findObjectNames(day);
+        return objectPrefix(day) + (existing.isEmpty() ? "" : "." + existing.size()) + OBJECT_SUFFIX;
+    }
+
+    private String objectPrefix(LocalDate day) {
+        return applicationProperties.getAuditEvents().getArchive().getObjectPrefix() + "/" + day;
+    }
+
+    private List<String> findObjectNames(LocalDate day) {
+        List<String> names = new ArrayList<>();
+        for (Result<Item> result : minioClient.listObjects(bucketName, objectPrefix(day) + ".", false)) {
+            names.add(minio(() -> result.get().objectName()));
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Read back archived audit events.
+     *
+     * @param fromDate the first day of events, in UTC.
+     * @param toDate the last day of events, in UTC.
+     * @return the events, day by day.
+     */
+    public Flux<AuditEvent> findArchived(LocalDate fromDate, LocalDate toDate) {
+        return Flux.range(0, (int) ChronoUnit.DAYS.between(fromDate, toDate) + 1)
+            .map(fromDate::plusDays)
+            .concatMapIterable(this::findObjectNames)
+            .concatMap(this::readObject)
+            .map(auditEventConverter::convertToAuditEvent)
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Flux<PersistentAuditEvent> readObject(String objectName) {
+        return Flux.using(
+            () -> new BufferedReader(new InputStreamReader(new GZIPInputStream(minioClient.getObject(bucketName, objectName)), StandardCharsets.UTF_8)),
+            reader -> Flux.fromStream(reader.lines()).map(this::readEvent),
+            reader -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    log.warn("Could not close audit event archive {}: {}", objectName, e.getMessage());
+                }
+            });
+    }
+
+    private PersistentAuditEvent readEvent(String line) {
+        try {
+            return objectMapper.readValue(line, PersistentAuditEvent.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isBucketStorage() {
+        return applicationProperties.getAuditEvents().getStorage() == ApplicationProperties.AuditEvents.Storage.BUCKET;
+    }
+
+    private Mono<Instant> oldestEventDate() {
+        if (isBucketStorage()) {
+            return mongoTemplate.findOne(new Query().with(Sort.by("bucketDate")), PersistentAuditEventBucket.class)
+                .map(PersistentAuditEventBucket::getBucketDate);
+        }
+        return mongoTemplate.findOne(new Query().with(Sort.by("auditEventDate")), PersistentAuditEvent.class)
+            .map(PersistentAuditEvent::getAuditEventDate);
+    }
+
+    private Flux<PersistentAuditEvent> findEvents(Instant fromDate, Instant toDate) {
+        if (isBucketStorage()) {
+            return auditEventBucketService.findBetween(fromDate, toDate.minusMillis(1));
+        }
+        return mongoTemplate.find(eventsBetween(fromDate, toDate).with(Sort.by("auditEventDate")), PersistentAuditEvent.class);
+    }
+
+    private Mono<Long> countEvents(Instant fromDate, Instant toDate) {
+        if (isBucketStorage()) {
+            return auditEventBucketService.countBetween(fromDate, toDate.minusMillis(1));
+        }
+        return mongoTemplate.count(eventsBetween(fromDate, toDate), PersistentAuditEvent.class);
+    }
+
+    private Mono<Long> removeEvents(Instant fromDate, Instant toDate) {
+        if (isBucketStorage()) {
+            return auditEventBucketService.removeBetween(fromDate, toDate);
+        }
+        return mongoTemplate.remove(eventsBetween(fromDate, toDate), PersistentAuditEvent.class)
+            .map(result -> result.getDeletedCount());
+    }
+
+    private Query eventsBetween(Instant fromDate, Instant toDate) {
+        return Query.query(Criteria.where("auditEventDate").gte(fromDate).lt(toDate));
+    }
+
+    /**
+     * Call MinIO, whose client throws many checked exceptions.
+     */
+    private static <T> T minio(MinioCall<T> call) {
+        try {
+            return call.call();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("MinIO call failed: " + e.getMessage(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface MinioCall<T> {
+
+        T call() throws Exception;
+    }
+}
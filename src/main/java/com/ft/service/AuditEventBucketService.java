@@ -0,0 +1,341 @@
+package com.ft.service;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.config.audit.AuditEventConverter;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.PersistentAuditEventBucket;
+
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Service storing audit events in {@link PersistentAuditEventBucket}s, when the
+ * {@link ApplicationProperties.AuditEvents.Storage#BUCKET bucket storage} is enabled.
+ * <p>
+ * A batch of events is appended with one bulk write, with an upsert per principal and hour that pushes the events
+ * into a bucket which is not full yet, or creates a new one. Reads expand the buckets back into events, newest first.
+ * <p>
+ * Counts and pages use the number of events of each bucket, so that only the buckets of the hours partly read are
+ * expanded.
+ */
+@Service
+public class AuditEventBucketService {
+
+    /**
+     * Order in which events are read: newest first, then by id, so that it is a total order to read pages after.
+     */
+    public static final Comparator<PersistentAuditEvent> NEWEST_FIRST = Comparator
+        .comparing(PersistentAuditEvent::getAuditEventDate)
+        .thenComparing(PersistentAuditEvent::getId)
+        .reversed();
+
+    private static final Duration BUCKET_DURATION = Duration.ofHours(1);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final ApplicationProperties.AuditEvents properties;
+
+    public AuditEventBucketService(ReactiveMongoTemplate mongoTemplate, AuditEventConverter auditEventConverter,
+                                   ApplicationProperties applicationProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.auditEventConverter = auditEventConverter;
+        this.properties = applicationProperties.getAuditEvents();
+    }
+
+    /**
+     * Append events to the buckets of their principal and hour.
+     *
+     * @param events the events.
+     * @return a {@link Mono} completing once the events are written.
+     */
+    public Mono<Void> insert(List<PersistentAuditEvent> events) {
+        Map<String, Map<Instant, List<PersistentAuditEvent>>> byBucket = events.stream()
+            .collect(Collectors.groupingBy(PersistentAuditEvent::getPrincipal, LinkedHashMap::new,
+                Collectors.groupingBy(event -> PersistentAuditEventBucket.bucketDateOf(event.getAuditEventDate()),
+                    LinkedHashMap::new, Collectors.toList())));
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        int maxEvents = properties.getMaxEventsPerBucket();
+        byBucket.forEach((principal, hours) -> hours.forEach((bucketDate, bucketEvents) -> {
+            for (int from = 0; from < bucketEvents.size(); from += maxEvents) {
+                List<PersistentAuditEvent> chunk = bucketEvents.subList(from, Math.min(from + maxEvents, bucketEvents.size()));
+                updates.add(appendToBucket(principal, bucketDate, chunk));
+            }
+        }));
+        if (updates.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.from(mongoTemplate.getCollection(mongoTemplate.getCollectionName(PersistentAuditEventBucket.class)).bulkWrite(updates))
+            .then();
+    }
+
+    private WriteModel<Document> appendToBucket(String principal, Instant bucketDate, List<PersistentAuditEvent> events) {
+        List<Document> records = new ArrayList<>(events.size());
+        for (PersistentAuditEvent event : events) {
+            records.add(toDocument(auditEventConverter.convertToBucketEvent(event, bucketDate)));
+        }
+        Document filter = new Document("principal", principal)
+            .append("bucket_date", Date.from(bucketDate))
+            .append("count", new Document("$lte", properties.getMaxEventsPerBucket() - events.size()));
+        Document update = new Document("$push", new Document("events", new Document("$each", records)))
+            .append("$inc", new Document("count", events.size()));
+        return new UpdateOneModel<>(filter, update, new UpdateOptions().upsert(true));
+    }
+
+    /**
+     * Write a record with the field names of {@link PersistentAuditEventBucket.Event}, leaving out empty fields.
+     */
+    private Document toDocument(PersistentAuditEventBucket.Event event) {
+        Document record = new Document("t", event.getOffset());
+        if (event.getTypeCode() != null) {
+            record.append("c", event.getTypeCode());
+        } else {
+            record.append("n", event.getTypeName());
+        }
+        if (event.getData() != null) {
+            record.append("d", new Document(new LinkedHashMap<>(event.getData())));
+        }
+        return record;
+    }
+
+    /**
+     * Get the events between two dates, newest first.
+     *
+     * @param fromDate the oldest date, inclusive, or {@code null} for no limit.
+     * @param toDate the newest date, inclusive, or {@code null} for no limit.
+     * @return the events.
+     */
+    public Flux<PersistentAuditEvent> findBetween(Instant fromDate, Instant toDate) {
+        return findBetween(fromDate, toDate, Sort.Direction.DESC);
+    }
+
+    /**
+     * Get the events between two dates, in an order.
+     *
+     * @param fromDate the oldest date, inclusive, or {@code null} for no limit.
+     * @param toDate the newest date, inclusive, or {@code null} for no limit.
+     * @param direction {@link Sort.Direction#DESC} for the newest first, {@link Sort.Direction#ASC} for the oldest first.
+     * @return the events.
+     */
+    public Flux<PersistentAuditEvent> findBetween(Instant fromDate, Instant toDate, Sort.Direction direction) {
+        Comparator<PersistentAuditEvent> order = direction.isDescending() ? NEWEST_FIRST : NEWEST_FIRST.reversed();
+        // The buckets of an hour are expanded together, as their events interleave
+        return mongoTemplate.find(bucketsBetween(fromDate, toDate).with(Sort.by(direction, "bucketDate", "id")), PersistentAuditEventBucket.class)
+            .bufferUntilChanged(PersistentAuditEventBucket::getBucketDate)
+            .concatMapIterable(buckets -> buckets.stream()
+                .flatMap(bucket -> auditEventConverter.convertToPersistentAuditEvents(bucket).stream())
+                .filter(event -> fromDate == null || !event.getAuditEventDate().isBefore(fromDate))
+                .filter(event -> toDate == null || !event.getAuditEventDate().isAfter(toDate))
+                .sorted(order)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Get a page of the events between two dates, in an order.
+     * <p>
+     * The hours before the page are skipped from the number of events of their buckets, so only the buckets of the
+     * page are expanded, however deep it is.
+     *
+     * @param fromDate the oldest date, inclusive, or {@code null} for no limit.
+     * @param toDate the newest date, inclusive, or {@code null} for no limit.
+     * @param direction {@link Sort.Direction#DESC} for the newest first, {@link Sort.Direction#ASC} for the oldest first.
+     * @param offset the number of events before the page.
+     * @param size the size of the page.
+     * @return the events of the page.
+     */
+    public Flux<PersistentAuditEvent> findPage(Instant fromDate, Instant toDate, Sort.Direction direction, long offset, int size) {
+        return countByHour(fromDate, toDate, direction)
+            .scan((previous, hour) -> new HourCount(hour.hour, hour.count, previous.before + previous.count))
+            .filter(hour -> hour.before + hour.count > offset)
+            .next()
+            .flatMapMany(first -> {
+                Flux<PersistentAuditEvent> events = direction.isDescending()
+                    ? findBetween(fromDate, min(toDate, lastInstantOf(first.hour)), direction)
+                    : findBetween(max(fromDate, first.hour), toDate, direction);
+                return events.skip(offset - first.before).take(size);
+            });
+    }
+
+    /**
+     * Get the number of events of each hour between two dates, from the counts of their buckets, except for the
+     * hours partly between the dates, whose events are counted one by one.
+     */
+    private Flux<HourCount> countByHour(Instant fromDate, Instant toDate, Sort.Direction direction) {
+        Query query = bucketsBetween(fromDate, toDate).with(Sort.by(direction, "bucketDate"));
+        query.fields().include("bucketDate").include("count");
+        return mongoTemplate.find(query, PersistentAuditEventBucket.class)
+            .bufferUntilChanged(PersistentAuditEventBucket::getBucketDate)
+            .concatMap(buckets -> {
+                Instant hour = buckets.get(0).getBucketDate();
+                if ((fromDate == null || !hour.isBefore(fromDate)) && (toDate == null || !lastInstantOf(hour).isAfter(toDate))) {
+                    return Mono.just(new HourCount(hour, buckets.stream().mapToLong(PersistentAuditEventBucket::getCount).sum(), 0));
+                }
+                return findBetween(max(fromDate, hour), min(toDate, lastInstantOf(hour)))
+                    .count()
+                    .map(count -> new HourCount(hour, count, 0));
+            });
+    }
+
+    /**
+     * Get the number of events between two dates.
+     * <p>
+     * The counts of the buckets of the hours fully between the dates are summed by an aggregation, and only the
+     * events of the first and last hours, partly between the dates, are counted one by one.
+     *
+     * @param fromDate the oldest date, inclusive, or {@code null} for no limit.
+     * @param toDate the newest date, inclusive, or {@code null} for no limit.
+     * @return the number of events.
+     */
+    public Mono<Long> countBetween(Instant fromDate, Instant toDate) {
+        Instant firstFullHour = fromDate == null || PersistentAuditEventBucket.bucketDateOf(fromDate).equals(fromDate)
+            ? fromDate : PersistentAuditEventBucket.bucketDateOf(fromDate).plus(BUCKET_DURATION);
+        Instant afterLastFullHour = toDate == null ? null : PersistentAuditEventBucket.bucketDateOf(toDate.plusMillis(1));
+        if (firstFullHour != null && afterLastFullHour != null && !firstFullHour.isBefore(afterLastFullHour)) {
+            return findBetween(fromDate, toDate).count();
+        }
+        Criteria fullHours = new Criteria();
+        if (firstFullHour != null || afterLastFullHour != null) {
+            fullHours = Criteria.where("bucketDate");
+            if (firstFullHour != null) {
+                fullHours.gte(firstFullHour);
+            }
+            if (afterLastFullHour != null) {
+                fullHours.lt(afterLastFullHour);
+            }
+        }
+        Mono<Long> first = firstFullHour == null || firstFullHour.equals(fromDate)
+            ? Mono.just(0L) : findBetween(fromDate, firstFullHour.minusMillis(1)).count();
+        Mono<Long> last = afterLastFullHour == null || afterLastFullHour.equals(toDate.plusMillis(1))
+            ? Mono.just(0L) : findBetween(afterLastFullHour, toDate).count();
+        return Mono.zip(first, sumCounts(fullHours), last)
+            .map(counts -> counts.getT1() + counts.getT2() + counts.getT3());
+    }
+
+    /**
+     * Get an event by the id given to it by {@link AuditEventConverter#convertToPersistentAuditEvents(PersistentAuditEventBucket)}.
+     *
+     * @param id the id of the event.
+     * @return the event, or an empty {@link Mono} if there is none.
+     */
+    public Mono<PersistentAuditEvent> findById(String id) {
+        int separator = id.lastIndexOf('-');
+        if (separator <= 0) {
+            return Mono.empty();
+        }
+        return mongoTemplate.findById(id.substring(0, separator), PersistentAuditEventBucket.class)
+            .flatMapIterable(auditEventConverter::convertToPersistentAuditEvents)
+            .filter(event -> Objects.equals(event.getId(), id))
+            .next();
+    }
+
+    /**
+     * Get the number of events, summed from the counts of the buckets.
+     *
+     * @return the number of events.
+     */
+    public Mono<Long> count() {
+        return sumCounts(new Criteria());
+    }
+
+    private Mono<Long> sumCounts(Criteria criteria) {
+        TypedAggregation<PersistentAuditEventBucket> aggregation = Aggregation.newAggregation(PersistentAuditEventBucket.class,
+            Aggregation.match(criteria), Aggregation.group().sum("count").as("total"));
+        return mongoTemplate.aggregate(aggregation, Document.class)
+            .next()
+            .map(result -> ((Number) result.get("total")).longValue())
+            .defaultIfEmpty(0L);
+    }
+
+    private Query bucketsBetween(Instant fromDate, Instant toDate) {
+        Query query = new Query();
+        if (fromDate != null || toDate != null) {
+            Criteria criteria = Criteria.where("bucketDate");
+            if (fromDate != null) {
+                criteria.gte(PersistentAuditEventBucket.bucketDateOf(fromDate));
+            }
+            if (toDate != null) {
+                criteria.lte(toDate);
+            }
+            query.addCriteria(criteria);
+        }
+        return query;
+    }
+
+    private static Instant lastInstantOf(Instant hour) {
+        return hour.plus(BUCKET_DURATION).minusMillis(1);
+    }
+
+    private static Instant min(Instant date, Instant other) {
+        return date == null || other.isBefore(date) ? other : date;
+    }
+
+    private static Instant max(Instant date, Instant other) {
+        return date == null || other.isAfter(date) ? other : date;
+    }
+
+    /**
+     * Delete the buckets holding only events older than a date.
+     *
+     * @param before the date.
+     * @return the number of deleted buckets.
+     */
+    public Mono<Long> removeBefore(Instant before) {
+        Query query = Query.query(Criteria.where("bucketDate").lte(before.minus(BUCKET_DURATION)));
+        return mongoTemplate.remove(query, PersistentAuditEventBucket.class)
+            .map(result -> result.getDeletedCount());
+    }
+
+    /**
+     * Delete the buckets of the hours between two dates.
+     *
+     * @param fromDate the start of an hour.
+     * @param toDate the start of a later hour, exclusive.
+     * @return the number of deleted buckets.
+     */
+    public Mono<Long> removeBetween(Instant fromDate, Instant toDate) {
+        Query query = Query.query(Criteria.where("bucketDate").gte(fromDate).lt(toDate));
+        return mongoTemplate.remove(query, PersistentAuditEventBucket.class)
+            .map(result -> result.getDeletedCount());
+    }
+
+    /**
+     * Number of events of an hour, with the number of events of the hours read before it.
+     */
+    private static final class HourCount {
+
+        private final Instant hour;
+
+        private final long count;
+
+        private final long before;
+
+        private HourCount(Instant hour, long count, long before) {
+            this.hour = hour;
+            this.count = count;
+            this.before = before;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.ft.service;
+
+import com.ft.domain.PersistentAuditEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of audit events on local disk, made of memory-mapped segment files of a fixed size.
+ * <p>
+ * Each record is its length, a CRC32 of its content and the encoded event. Records are read back in the order they
+ * were appended, from the checkpoint of the last {@link #commit(Batch) committed} batch, and segments are deleted
+ * once all their records are committed. On startup, records after the checkpoint are read again, so an event may be
+ * replayed twice if the application stopped between writing a batch and committing it.
+ */
+public class AuditEventJournal implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventJournal.class);
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final NavigableMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+
+    private final FileChannel checkpointChannel;
+
+    private long writeSegment;
+
+    private int writeOffset;
+
+    private long readSegment;
+
+    private int readOffset;
+
+    private long pendingEvents;
+
+    /**
+     * Open a journal, creating its directory if needed, and recover the events that were not committed.
+     *
+     * @param directory the directory of the segment files.
+     * @param segmentSize the size of a segment file in bytes.
+     * @param maxSegments the number of segment files beyond which events are refused.
+     * @throws IOException if the journal cannot be opened.
+     */
+    public AuditEventJournal(Path directory, int segmentSize, int maxSegments) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /**
+     * Append an event.
+     *
+     * @param event the event.
+     * @return {@code true} if the event was appended, {@code false} if the journal is full or cannot be written.
+     */
+    public synchronized boolean append(PersistentAuditEvent event) {
+        if (segments.isEmpty()) {
+            return false;
+        }
+        byte[] payload = encode(event);
+        if (HEADER_SIZE + payload.length > segmentSize) {
+            log.warn("Audit event {} is too large for the journal", event.getAuditEventType());
+            return false;
+        }
+        if (writeOffset + HEADER_SIZE + payload.length > segmentSize) {
+            if (writeSegment - readSegment + 1 >= maxSegments) {
+                return false;
+            }
+            try {
+                rotate();
+            } catch (IOException e) {
+                log.warn("Could not create an audit journal segment: {}", e.getMessage());
+                return false;
+            }
+        }
+        MappedByteBuffer buffer = segments.get(writeSegment);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.position(writeOffset + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        if (buffer.position() + 4 <= segmentSize) {
+            buffer.putInt(buffer.position(), 0);
+        }
+        buffer.putInt(writeOffset, payload.length);
+        writeOffset += HEADER_SIZE + payload.length;
+        pendingEvents++;
+        return true;
+    }
+
+    /**
+     * Read the events appended after the last committed batch.
+     *
+     * @param maxEvents the maximum number of events to read.
+     * @return the events, with the position to commit once they are stored.
+     */
+    public synchronized Batch read(int maxEvents) {
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        long segment = readSegment;
+        int offset = readOffset;
+        while (!segments.isEmpty() && events.size() < maxEvents && (segment < writeSegment || offset < writeOffset)) {
+            MappedByteBuffer buffer = segments.get(segment);
+            int length = offset + 4 <= segmentSize ? buffer.getInt(offset) : END_OF_SEGMENT;
+            if (length <= 0) {
+                segment++;
+                offset = 0;
+                continue;
+            }
+            byte[] payload = new byte[length];
+            buffer.position(offset + HEADER_SIZE);
+            buffer.get(payload);
+            events.add(decode(payload));
+            offset += HEADER_SIZE + length;
+        }
+        return new Batch(events, segment, offset);
+    }
+
+    /**
+     * Commit a batch once its events are stored, so that they are not read again, and delete the segments it completed.
+     *
+     * @param batch the batch returned by {@link #read(int)}.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public synchronized void commit(Batch batch) throws IOException {
+        ByteBuffer checkpoint = ByteBuffer.allocate(12);
+        checkpoint.putLong(batch.segment).putInt(batch.offset).flip();
+        checkpointChannel.write(checkpoint, 0);
+        checkpointChannel.force(false);
+        readSegment = batch.segment;
+        readOffset = batch.offset;
+        pendingEvents -= batch.events.size();
+        while (segments.firstKey() < readSegment) {
+            long segment = segments.pollFirstEntry().getKey();
+            Files.deleteIfExists(segmentPath(segment));
+        }
+    }
+
+    /**
+     * Get the number of events appended but not committed yet.
+     *
+     * @return the number of events.
+     */
+    public synchronized long getPendingEvents() {
+        return pendingEvents;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer buffer : segments.values()) {
+            buffer.force();
+        }
+        segments.clear();
+        checkpointChannel.close();
+    }
+
+    private void recover() throws IOException {
+        ByteBuffer checkpoint = ByteBuffer.allocate(12);
+        if (checkpointChannel.read(checkpoint, 0) == 12) {
+            checkpoint.flip();
+            readSegment = checkpoint.getLong();
+            readOffset = checkpoint.getInt();
+        }
+        List<Long> existingSegments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                .forEach(name -> existingSegments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        Collections.sort(existingSegments);
+        for (Long segment : existingSegments) {
+            if (segment < readSegment) {
+                Files.deleteIfExists(segmentPath(segment));
+            } else {
+                segments.put(segment, map(segment));
+            }
+        }
+        if (segments.isEmpty() || segments.firstKey() > readSegment) {
+            readOffset = 0;
+            readSegment = segments.isEmpty() ? readSegment : segments.firstKey();
+        }
+        if (segments.isEmpty()) {
+            segments.put(readSegment, map(readSegment));
+        }
+        writeSegment = readSegment;
+        writeOffset = readOffset;
+        while (true) {
+            MappedByteBuffer buffer = segments.get(writeSegment);
+            int length = writeOffset + 4 <= segmentSize ? buffer.getInt(writeOffset) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT && segments.containsKey(writeSegment + 1)) {
+                writeSegment++;
+                writeOffset = 0;
+            } else if (length > 0 && isValid(buffer, writeOffset, length)) {
+                writeOffset += HEADER_SIZE + length;
+                pendingEvents++;
+            } else {
+                break;
+            }
+        }
+        for (Long segment : new ArrayList<>(segments.tailMap(writeSegment, false).keySet())) {
+            log.warn("Discarding audit journal segment {} after a corrupted record", segment);
+            segments.remove(segment);
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        if (pendingEvents > 0) {
+            log.info("Recovered {} audit events from the journal", pendingEvents);
+        }
+    }
+
+    private boolean isValid(MappedByteBuffer buffer, int offset, int length) {
+        if (offset + HEADER_SIZE + length > segmentSize) {
+            return false;
+        }
+        byte[] payload = new byte[length];
+        buffer.position(offset + HEADER_SIZE);
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return buffer.getInt(offset + 4) == (int) crc.getValue();
+    }
+
+    private void rotate() throws IOException {
+        MappedByteBuffer buffer = segments.get(writeSegment);
+        if (writeOffset + 4 <= segmentSize) {
+            buffer.putInt(writeOffset, END_OF_SEGMENT);
+        }
+        writeSegment++;
+        writeOffset = 0;
+        segments.put(writeSegment, map(writeSegment));
+    }
+
+    private MappedByteBuffer map(long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(PersistentAuditEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, event.getPrincipal());
+            writeString(out, event.getAuditEventType());
+            Instant date = event.getAuditEventDate();
+            out.writeBoolean(date != null);
+            if (date != null) {
+                out.writeLong(date.getEpochSecond());
+                out.writeInt(date.getNano());
+            }
+            Map<String, String> data = event.getData() == null ? Collections.emptyMap() : event.getData();
+            out.writeInt(data.size());
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PersistentAuditEvent decode(byte[] payload) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            event.setPrincipal(readString(in));
+            event.setAuditEventType(readString(in));
+            if (in.readBoolean()) {
+                event.setAuditEventDate(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+            }
+            int size = in.readInt();
+            Map<String, String> data = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                data.put(readString(in), readString(in));
+            }
+            event.setData(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return event;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Events read from the journal, with the position that follows them.
+     */
+    public static final class Batch {
+
+        private final List<PersistentAuditEvent> events;
+
+        private final long segment;
+
+        private final int offset;
+
+        private Batch(List<PersistentAuditEvent> events, long segment, int offset) {
+            this.events = events;
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public List<PersistentAuditEvent> getEvents() {
+            return events;
+        }
+    }
+}
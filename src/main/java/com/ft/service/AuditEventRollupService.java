@@ -0,0 +1,119 @@
+package com.ft.service;
+
+import com.ft.domain.AuditEventRollup;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.PersistentAuditEventBucket;
+import com.ft.service.dto.AuditEventStatsDTO;
+
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Service for the {@link AuditEventRollup}s, which count audit events per hour, type and principal.
+ * <p>
+ * Rollups are incremented with each batch of written events, so that statistics are read without scanning events.
+ */
+@Service
+public class AuditEventRollupService {
+
+    private static final Comparator<AuditEventStatsDTO> BY_TYPE_AND_PRINCIPAL = Comparator
+        .comparing(AuditEventStatsDTO::getEventType)
+        .thenComparing(AuditEventStatsDTO::getPrincipal);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public AuditEventRollupService(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Count written events in their rollups.
+     *
+     * @param events the events.
+     * @return a {@link Mono} completing once the rollups are updated.
+     */
+    public Mono<Void> increment(List<PersistentAuditEvent> events) {
+        Map<List<Object>, Long> counts = events.stream().collect(Collectors.groupingBy(
+            event -> Arrays.asList(PersistentAuditEventBucket.bucketDateOf(event.getAuditEventDate()), event.getAuditEventType(), event.getPrincipal()),
+            LinkedHashMap::new, Collectors.counting()));
+        if (counts.isEmpty()) {
+            return Mono.empty();
+        }
+        List<WriteModel<Document>> updates = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> updates.add(new UpdateOneModel<>(
+            new Document("bucket_date", Date.from((Instant) key.get(0))).append("event_type", key.get(1)).append("principal", key.get(2)),
+            new Document("$inc", new Document("count", count)),
+            new UpdateOptions().upsert(true))));
+        return Mono.from(mongoTemplate.getCollection(mongoTemplate.getCollectionName(AuditEventRollup.class)).bulkWrite(updates))
+            .then();
+    }
+
+    /**
+     * Get the number of events per time bucket, type and principal, oldest first.
+     *
+     * @param fromDate the start of the time period, rounded down to the hour.
+     * @param toDate the end of the time period, exclusive.
+     * @param granularity the length of the time buckets.
+     * @param eventType the type of the events, or {@code null} for all types.
+     * @param principal the principal of the events, or {@code null} for all principals.
+     * @return the number of events.
+     */
+    public Flux<AuditEventStatsDTO> findStats(Instant fromDate, Instant toDate, AuditEventStatsDTO.Granularity granularity,
+                                              String eventType, String principal) {
+        Query query = Query.query(Criteria.where("bucketDate").gte(PersistentAuditEventBucket.bucketDateOf(fromDate)).lt(toDate))
+            .with(Sort.by("bucketDate", "eventType", "principal"));
+        if (eventType != null) {
+            query.addCriteria(Criteria.where("eventType").is(eventType));
+        }
+        if (principal != null) {
+            query.addCriteria(Criteria.where("principal").is(principal));
+        }
+        ChronoUnit unit = granularity == AuditEventStatsDTO.Granularity.DAY ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+        return mongoTemplate.find(query, AuditEventRollup.class)
+            .bufferUntilChanged(rollup -> rollup.getBucketDate().truncatedTo(unit))
+            .concatMapIterable(rollups -> sum(rollups, unit));
+    }
+
+    private List<AuditEventStatsDTO> sum(List<AuditEventRollup> rollups, ChronoUnit unit) {
+        Map<List<String>, AuditEventStatsDTO> stats = new LinkedHashMap<>();
+        for (AuditEventRollup rollup : rollups) {
+            AuditEventStatsDTO stat = stats.computeIfAbsent(Arrays.asList(rollup.getEventType(), rollup.getPrincipal()),
+                key -> new AuditEventStatsDTO(rollup.getBucketDate().truncatedTo(unit), rollup.getEventType(), rollup.getPrincipal(), 0));
+            stat.setCount(stat.getCount() + rollup.getCount());
+        }
+        return stats.values().stream()
+            .sorted(BY_TYPE_AND_PRINCIPAL)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Delete the rollups of hours older than a date.
+     *
+     * @param before the date.
+     * @return the number of deleted rollups.
+     */
+    public Mono<Long> removeBefore(Instant before) {
+        return mongoTemplate.remove(Query.query(Criteria.where("bucketDate").lt(PersistentAuditEventBucket.bucketDateOf(before))), AuditEventRollup.class)
+            .map(result -> result.getDeletedCount());
+    }
+}
@@ -1,13 +1,21 @@
 package com.ft.service;
 
 import io.github.jhipster.config.JHipsterProperties;
+import com.ft.config.ApplicationProperties;
 import com.ft.config.audit.AuditEventConverter;
 import com.ft.domain.PersistentAuditEvent;
 import com.ft.repository.PersistenceAuditEventRepository;
+import com.ft.service.dto.AuditEventStatsDTO;
+import com.ft.service.dto.CursorPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -15,8 +23,11 @@ import reactor.core.publisher.Mono;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.springframework.boot.actuate.security.AuthenticationAuditListener.AUTHENTICATION_FAILURE;
 import static org.springframework.boot.actuate.security.AuthenticationAuditListener.AUTHENTICATION_SUCCESS;
@@ -25,15 +36,27 @@ import static org.springframework.boot.actuate.security.AuthenticationAuditListe
  * Service for managing audit events.
  * <p>
  * This is the default implementation to support SpringBoot Actuator {@code AuditEventRepository}.
+ * Authentication events are written in batches by the {@link AuditEventWriter}. With the
+ * {@link ApplicationProperties.AuditEvents.Storage#BUCKET bucket storage}, events are read from the
+ * {@link AuditEventBucketService} instead, which only orders them by date, see {@link #isSortSupported(Sort)}.
  */
 @Service
 public class AuditEventService {
 
+    /**
+     * Type of the event recorded when repeated authentication failures lock a login out.
+     */
+    public static final String AUTHENTICATION_LOCKOUT = "AUTHENTICATION_LOCKOUT";
+
     /**
      * Should be the same as in Liquibase migration.
      */
     private static final int EVENT_DATA_COLUMN_MAX_LENGTH = 255;
 
+    private static final String REMOVE_OLD_AUDIT_EVENTS_JOB = "remove-old-audit-events";
+
+    private static final List<String> BUCKET_SORT_PROPERTIES = Arrays.asList("auditEventDate", "id");
+
     private final Logger log = LoggerFactory.getLogger(AuditEventService.class);
 
     private final JHipsterProperties jHipsterProperties;
@@ -42,64 +65,210 @@ public class AuditEventService {
 
     private final AuditEventConverter auditEventConverter;
 
+    private final AuditEventWriter auditEventWriter;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final JobLeaseService jobLeaseService;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final AuditEventBucketService auditEventBucketService;
+
+    private final AuditEventRollupService auditEventRollupService;
+
     public AuditEventService(
         PersistenceAuditEventRepository persistenceAuditEventRepository,
-        AuditEventConverter auditEventConverter, JHipsterProperties jhipsterProperties) {
+        AuditEventConverter auditEventConverter, JHipsterProperties jhipsterProperties,
+        AuditEventWriter auditEventWriter, ApplicationProperties applicationProperties,
+        JobLeaseService jobLeaseService, ReactiveMongoTemplate mongoTemplate,
+        AuditEventBucketService auditEventBucketService, AuditEventRollupService auditEventRollupService) {
 
         this.persistenceAuditEventRepository = persistenceAuditEventRepository;
         this.auditEventConverter = auditEventConverter;
         this.jHipsterProperties = jhipsterProperties;
+        this.auditEventWriter = auditEventWriter;
+        this.applicationProperties = applicationProperties;
+        this.jobLeaseService = jobLeaseService;
+        this.mongoTemplate = mongoTemplate;
+        this.auditEventBucketService = auditEventBucketService;
+        this.auditEventRollupService = auditEventRollupService;
+    }
+
+    private boolean isBucketStorage() {
+        return applicationProperties.getAuditEvents().getStorage() == ApplicationProperties.AuditEvents.Storage.BUCKET;
     }
 
     /**
      * Old audit events should be automatically deleted after 30 days.
-     *
-     * This is scheduled to get fired at 12:00 (am).
+     * <p>
+     * They are deleted by a TTL index, see {@link com.ft.config.dbmigrations.RetentionMigration}, so this only runs
+     * when TTL indexes are disabled, on a single instance. This is scheduled to get fired at 12:00 (am).
      */
     @Scheduled(cron = "0 0 12 * * ?")
     public void removeOldAuditEvents() {
-        removeOldAuditEventsReactively().block();
+        if (applicationProperties.getRetention().isTtlIndexes()) {
+            return;
+        }
+        jobLeaseService.runExclusively(REMOVE_OLD_AUDIT_EVENTS_JOB, lease -> removeOldAuditEventsReactively()).block();
     }
 
+    /**
+     * Delete old audit events in chunks, without reading more than their id.
+     *
+     * @return a {@link Mono} completing once all old audit events are deleted.
+     */
     public Mono<Void> removeOldAuditEventsReactively() {
-        return persistenceAuditEventRepository
-            .findByAuditEventDateBefore(Instant.now().minus(jHipsterProperties.getAuditEvents().getRetentionPeriod(), ChronoUnit.DAYS))
-            .flatMap(auditEvent -> {
-                log.debug("Deleting audit data {}", auditEvent);
-                return persistenceAuditEventRepository.delete(auditEvent);
-            })
+        Instant before = Instant.now().minus(jHipsterProperties.getAuditEvents().getRetentionPeriod(), ChronoUnit.DAYS);
+        Mono<Void> rollups = auditEventRollupService.removeBefore(before)
+            .doOnNext(deleted -> log.debug("Deleted {} old audit event rollups", deleted))
             .then();
+        if (isBucketStorage()) {
+            return auditEventBucketService.removeBefore(before)
+                .doOnNext(deleted -> log.debug("Deleted {} old audit event buckets", deleted))
+                .then(rollups);
+        }
+        int chunkSize = applicationProperties.getRetention().getDeleteChunkSize();
+        return removeOldAuditEventChunk(before, chunkSize)
+            .expand(deleted -> deleted < chunkSize ? Mono.empty() : removeOldAuditEventChunk(before, chunkSize))
+            .reduce(0, Integer::sum)
+            .doOnNext(deleted -> log.debug("Deleted {} old audit events", deleted))
+            .then(rollups);
+    }
+
+    private Mono<Integer> removeOldAuditEventChunk(Instant before, int chunkSize) {
+        return persistenceAuditEventRepository.findIdsByAuditEventDateBefore(before, PageRequest.of(0, chunkSize))
+            .map(PersistentAuditEvent::getId)
+            .collectList()
+            .flatMap(ids -> ids.isEmpty() ? Mono.just(0) : persistenceAuditEventRepository.deleteByIdIn(ids).thenReturn(ids.size()));
+    }
+
+    /**
+     * Check whether audit events can be read in an order.
+     * <p>
+     * With the bucket storage, events can only be ordered by date, then by id in the same direction.
+     *
+     * @param sort the order.
+     * @return whether the order is supported by the storage of audit events.
+     */
+    public boolean isSortSupported(Sort sort) {
+        return !isBucketStorage() || sort.stream().allMatch(order -> BUCKET_SORT_PROPERTIES.contains(order.getProperty()));
+    }
+
+    private Flux<AuditEvent> findBucketPage(Instant fromDate, Instant toDate, Pageable pageable) {
+        if (!isSortSupported(pageable.getSort())) {
+            return Flux.error(new IllegalArgumentException("Audit events cannot be sorted by " + pageable.getSort()));
+        }
+        Sort.Direction direction = pageable.getSort().stream().findFirst().map(Sort.Order::getDirection).orElse(Sort.Direction.DESC);
+        return auditEventBucketService.findPage(fromDate, toDate, direction, pageable.getOffset(), pageable.getPageSize())
+            .map(auditEventConverter::convertToAuditEvent);
     }
 
     public Flux<AuditEvent> findAll(Pageable pageable) {
+        if (isBucketStorage()) {
+            return findBucketPage(null, null, pageable);
+        }
         return persistenceAuditEventRepository.findAllBy(pageable)
             .map(auditEventConverter::convertToAuditEvent);
     }
 
+    /**
+     * Get a page of audit events, newest first, after the last event of the previous page.
+     * <p>
+     * The events are read from the ({@code event_date}, {@code _id}) index, so a page costs the same however deep it is.
+     *
+     * @param afterDate the date of the last event of the previous page, or {@code null} for the first page.
+     * @param afterId the id of the last event of the previous page.
+     * @param size the size of the page.
+     * @return the page, with the date in milliseconds and the id of its last event as next keys.
+     */
+    public Mono<CursorPage<AuditEvent>> findAllAfter(Instant afterDate, String afterId, int size) {
+        Flux<PersistentAuditEvent> after;
+        if (isBucketStorage()) {
+            after = auditEventBucketService.findBetween(null, afterDate)
+                .filter(event -> afterDate == null || event.getAuditEventDate().isBefore(afterDate)
+                    || event.getId().compareTo(afterId) < 0)
+                .take(size + 1);
+        } else {
+            Query query = new Query().with(Sort.by(Sort.Direction.DESC, "auditEventDate", "id")).limit(size + 1);
+            if (afterDate != null) {
+                query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("auditEventDate").lt(afterDate),
+                    Criteria.where("auditEventDate").is(afterDate).and("id").lt(afterId)));
+            }
+            after = mongoTemplate.find(query, PersistentAuditEvent.class);
+        }
+        return after
+            .collectList()
+            .map(events -> {
+                if (events.size() <= size) {
+                    return new CursorPage<>(convert(events), null);
+                }
+                List<PersistentAuditEvent> page = events.subList(0, size);
+                PersistentAuditEvent last = page.get(size - 1);
+                return new CursorPage<>(convert(page), Arrays.asList(Long.toString(last.getAuditEventDate().toEpochMilli()), last.getId()));
+            });
+    }
+
+    private List<AuditEvent> convert(List<PersistentAuditEvent> events) {
+        return events.stream().map(auditEventConverter::convertToAuditEvent).collect(Collectors.toList());
+    }
+
     public Flux<AuditEvent> findByDates(Instant fromDate, Instant toDate, Pageable pageable) {
+        if (isBucketStorage()) {
+            return findBucketPage(fromDate, toDate, pageable);
+        }
         return persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable)
             .map(auditEventConverter::convertToAuditEvent);
     }
 
     public Mono<AuditEvent> find(String id) {
-        return persistenceAuditEventRepository.findById(id)
+        return (isBucketStorage() ? auditEventBucketService.findById(id) : persistenceAuditEventRepository.findById(id))
             .map(auditEventConverter::convertToAuditEvent);
     }
 
+    /**
+     * Get the number of audit events, estimated from the collection metadata instead of counted.
+     * <p>
+     * With the bucket storage, this is the sum of the counts of the buckets.
+     *
+     * @return the number of audit events.
+     */
     public Mono<Long> count() {
-        return persistenceAuditEventRepository.count();
+        if (isBucketStorage()) {
+            return auditEventBucketService.count();
+        }
+        return Mono.from(mongoTemplate.getCollection(mongoTemplate.getCollectionName(PersistentAuditEvent.class)).estimatedDocumentCount());
     }
 
     public Mono<Long> countByDates(Instant fromDate, Instant toDate) {
+        if (isBucketStorage()) {
+            return auditEventBucketService.countBetween(fromDate, toDate);
+        }
         return persistenceAuditEventRepository.countByAuditEventDateBetween(fromDate, toDate);
     }
 
+    /**
+     * Get the number of audit events per time bucket, type and principal, from their rollups.
+     *
+     * @param fromDate the start of the time period.
+     * @param toDate the end of the time period, exclusive.
+     * @param granularity the length of the time buckets.
+     * @param eventType the type of the events, or {@code null} for all types.
+     * @param principal the principal of the events, or {@code null} for all principals.
+     * @return the number of audit events, oldest first.
+     */
+    public Flux<AuditEventStatsDTO> findStats(Instant fromDate, Instant toDate, AuditEventStatsDTO.Granularity granularity,
+                                              String eventType, String principal) {
+        return auditEventRollupService.findStats(fromDate, toDate, granularity, eventType, principal);
+    }
+
     public Mono<PersistentAuditEvent> saveAuthenticationSuccess(String login) {
         PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
         persistentAuditEvent.setPrincipal(login);
         persistentAuditEvent.setAuditEventType(AUTHENTICATION_SUCCESS);
         persistentAuditEvent.setAuditEventDate(Instant.now());
-        return persistenceAuditEventRepository.save(persistentAuditEvent);
+        return auditEventWriter.write(persistentAuditEvent);
     }
 
     public Mono<PersistentAuditEvent> saveAuthenticationError(String login, Throwable e) {
@@ -111,7 +280,18 @@ public class AuditEventService {
         eventData.put("type", e.getClass().getName());
         eventData.put("message", e.getMessage());
         persistentAuditEvent.setData(truncate(eventData));
-        return persistenceAuditEventRepository.save(persistentAuditEvent);
+        return auditEventWriter.write(persistentAuditEvent);
+    }
+
+    public Mono<PersistentAuditEvent> saveAuthenticationLockout(String login, Instant lockedUntil) {
+        PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
+        persistentAuditEvent.setPrincipal(login);
+        persistentAuditEvent.setAuditEventType(AUTHENTICATION_LOCKOUT);
+        persistentAuditEvent.setAuditEventDate(Instant.now());
+        Map<String, String> eventData = new HashMap<>();
+        eventData.put("lockedUntil", lockedUntil.toString());
+        persistentAuditEvent.setData(eventData);
+        return auditEventWriter.write(persistentAuditEvent);
     }
 
     /**
@@ -0,0 +1,177 @@
+package com.ft.service;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.config.audit.AuditEventConverter;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.PersistentAuditEventBucket;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Service streaming new audit events to any number of clients.
+ * <p>
+ * All clients share a single MongoDB change stream on the audit events, opened with the first client and closed with
+ * the last one, and resumed after the last seen change when it fails. Each client has its own bounded buffer, so that
+ * a slow client drops its oldest events instead of slowing down the others.
+ * <p>
+ * The resume token is only used to resume after a failure: it is forgotten when the last client leaves, so that the
+ * next client does not get the events written in between, and when it is no longer in the oplog.
+ */
+@Service
+public class AuditEventStreamService {
+
+    static final String CLIENTS_METER_NAME = "audit.events.stream.clients";
+
+    static final String DROPPED_METER_NAME = "audit.events.stream.dropped";
+
+    private static final Pattern APPENDED_EVENT_FIELD = Pattern.compile("events\\.(\\d+)");
+
+    /**
+     * Error codes of a change stream which cannot resume, as its resume token is no longer in the oplog.
+     */
+    private static final List<Integer> HISTORY_LOST_CODES = Arrays.asList(286, 280);
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventStreamService.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final ApplicationProperties.AuditEvents properties;
+
+    private final AtomicReference<BsonValue> resumeToken = new AtomicReference<>();
+
+    private final AtomicInteger clients = new AtomicInteger();
+
+    private final Counter droppedCounter;
+
+    private final Flux<AuditEvent> events;
+
+    public AuditEventStreamService(ReactiveMongoTemplate mongoTemplate, AuditEventConverter auditEventConverter,
+                                   ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.auditEventConverter = auditEventConverter;
+        this.properties = applicationProperties.getAuditEvents();
+        Gauge.builder(CLIENTS_METER_NAME, clients, AtomicInteger::get)
+            .description("Clients of the audit event stream")
+            .register(meterRegistry);
+        this.droppedCounter = Counter.builder(DROPPED_METER_NAME)
+            .description("Audit events not sent to a client because its buffer was full")
+            .register(meterRegistry);
+        this.events = Flux.defer(this::changes)
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofMinutes(1))
+                .doBeforeRetry(signal -> log.warn("Audit event change stream failed, resuming it: {}", signal.failure().getMessage())))
+            .doFinally(signal -> {
+                if (signal == SignalType.CANCEL) {
+                    resumeToken.set(null);
+                }
+            })
+            .map(auditEventConverter::convertToAuditEvent)
+            .share();
+    }
+
+    /**
+     * Get the audit events written from now on, by any instance.
+     *
+     * @return the events, until the subscription is cancelled.
+     */
+    public Flux<AuditEvent> stream() {
+        return events
+            .onBackpressureBuffer(properties.getStream().getClientBufferSize(), dropped -> droppedCounter.increment(),
+                BufferOverflowStrategy.DROP_OLDEST)
+            .doOnSubscribe(subscription -> clients.incrementAndGet())
+            .doFinally(signal -> clients.decrementAndGet());
+    }
+
+    private boolean isBucketStorage() {
+        return properties.getStorage() == ApplicationProperties.AuditEvents.Storage.BUCKET;
+    }
+
+    private Flux<PersistentAuditEvent> changes() {
+        Class<?> entityClass = isBucketStorage() ? PersistentAuditEventBucket.class : PersistentAuditEvent.class;
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+            .filter(new Document("$match", new Document("operationType", new Document("$in", Arrays.asList("insert", "update")))))
+            .returnFullDocumentOnUpdate();
+        BsonValue token = resumeToken.get();
+        if (token != null) {
+            options.resumeAfter(token);
+        }
+        return mongoTemplate.changeStream(null, mongoTemplate.getCollectionName(entityClass), options.build(), Document.class)
+            .doOnNext(change -> resumeToken.set(change.getResumeToken()))
+            .doOnError(this::forgetLostResumeToken)
+            .concatMapIterable(this::toPersistentAuditEvents);
+    }
+
+    /**
+     * Forget the resume token once it is no longer in the oplog, so that the change stream restarts from now instead
+     * of failing again with it.
+     */
+    private void forgetLostResumeToken(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException && HISTORY_LOST_CODES.contains(((MongoException) cause).getCode())) {
+                log.warn("Audit event change stream cannot resume, restarting it: events written meanwhile are not streamed");
+                resumeToken.set(null);
+                return;
+            }
+        }
+    }
+
+    private List<PersistentAuditEvent> toPersistentAuditEvents(ChangeStreamEvent<Document> change) {
+        Document document = change.getBody();
+        if (document == null) {
+            return Collections.emptyList();
+        }
+        if (!isBucketStorage()) {
+            return change.getOperationType() == OperationType.INSERT
+                ? Collections.singletonList(mongoTemplate.getConverter().read(PersistentAuditEvent.class, document))
+                : Collections.emptyList();
+        }
+        List<PersistentAuditEvent> bucketEvents = auditEventConverter.convertToPersistentAuditEvents(
+            mongoTemplate.getConverter().read(PersistentAuditEventBucket.class, document));
+        if (change.getOperationType() == OperationType.INSERT) {
+            return bucketEvents;
+        }
+        // Appended events are reported as updated fields "events.<index>"
+        UpdateDescription update = change.getRaw() != null ? change.getRaw().getUpdateDescription() : null;
+        if (update == null || update.getUpdatedFields() == null) {
+            return Collections.emptyList();
+        }
+        return update.getUpdatedFields().keySet().stream()
+            .map(APPENDED_EVENT_FIELD::matcher)
+            .filter(Matcher::matches)
+            .map(matcher -> Integer.valueOf(matcher.group(1)))
+            .filter(index -> index < bucketEvents.size())
+            .sorted()
+            .map(bucketEvents::get)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,224 @@
+package com.ft.service;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.repository.PersistenceAuditEventRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes audit events in batches, so that requests do not wait for a MongoDB write per event.
+ * <p>
+ * Events wait in a bounded buffer, which is flushed with a single {@code insertMany} as soon as it holds a full
+ * batch, and at a fixed interval otherwise. When the buffer is full, the
+ * {@link ApplicationProperties.AuditEvents.OverflowPolicy} either drops the event or writes it on its own.
+ * <p>
+ * When the {@link AuditEventJournal journal} is enabled, it replaces the in-memory buffer: events are appended to it,
+ * and a batch is only removed from it once it is written, so that a MongoDB outage delays events instead of losing them.
+ * <p>
+ * With the {@link ApplicationProperties.AuditEvents.Storage#BUCKET bucket storage}, batches are appended to buckets by
+ * the {@link AuditEventBucketService} instead of inserted. Written events are then counted by the
+ * {@link AuditEventRollupService}.
+ */
+@Service
+public class AuditEventWriter implements DisposableBean {
+
+    static final String QUEUED_METER_NAME = "audit.events.queued";
+
+    static final String DROPPED_METER_NAME = "audit.events.dropped";
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventWriter.class);
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final AuditEventBucketService auditEventBucketService;
+
+    private final AuditEventRollupService auditEventRollupService;
+
+    private final ApplicationProperties.AuditEvents properties;
+
+    private final BlockingQueue<PersistentAuditEvent> queue;
+
+    private final AuditEventJournal journal;
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final Counter overflowCounter;
+
+    private final Counter errorCounter;
+
+    private final Disposable flushTask;
+
+    public AuditEventWriter(PersistenceAuditEventRepository persistenceAuditEventRepository, AuditEventBucketService auditEventBucketService,
+                            AuditEventRollupService auditEventRollupService, ApplicationProperties applicationProperties,
+                            MeterRegistry meterRegistry) {
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.auditEventBucketService = auditEventBucketService;
+        this.auditEventRollupService = auditEventRollupService;
+        this.properties = applicationProperties.getAuditEvents();
+        this.queue = new ArrayBlockingQueue<>(properties.getBufferSize());
+        this.journal = properties.getJournal().isEnabled() ? openJournal(properties.getJournal()) : null;
+        Gauge.builder(QUEUED_METER_NAME, this, AuditEventWriter::pending)
+            .description("Audit events waiting to be written")
+            .register(meterRegistry);
+        this.overflowCounter = Counter.builder(DROPPED_METER_NAME)
+            .tag("reason", "overflow")
+            .description("Audit events dropped because the buffer was full")
+            .register(meterRegistry);
+        this.errorCounter = Counter.builder(DROPPED_METER_NAME)
+            .tag("reason", "error")
+            .description("Audit events lost because their batch could not be written")
+            .register(meterRegistry);
+        this.flushTask = Flux.interval(Duration.ofMillis(properties.getFlushIntervalInMilliseconds()))
+            .subscribe(tick -> flush());
+    }
+
+    /**
+     * Write an audit event.
+     *
+     * @param event the event.
+     * @return the event once it is buffered or written, or an empty {@link Mono} if it was dropped.
+     */
+    public Mono<PersistentAuditEvent> write(PersistentAuditEvent event) {
+        return Mono.defer(() -> {
+            if (journal != null ? journal.append(event) : queue.offer(event)) {
+                if (pending() >= properties.getBatchSize()) {
+                    flush();
+                }
+                return Mono.just(event);
+            }
+            if (properties.getOverflowPolicy() == ApplicationProperties.AuditEvents.OverflowPolicy.BLOCK) {
+                return properties.getStorage() == ApplicationProperties.AuditEvents.Storage.BUCKET
+                    ? auditEventBucketService.insert(Collections.singletonList(event)).then(rollUp(Collections.singletonList(event))).thenReturn(event)
+                    : persistenceAuditEventRepository.save(event).flatMap(saved -> rollUp(Collections.singletonList(saved)).thenReturn(saved));
+            }
+            overflowCounter.increment();
+            log.debug("Dropped audit event {}, the buffer is full", event.getAuditEventType());
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * Write a batch of buffered events, unless a batch is already being written.
+     */
+    void flush() {
+        if (pending() == 0 || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+        if (journal != null) {
+            replayJournal();
+            return;
+        }
+        List<PersistentAuditEvent> batch = new ArrayList<>(properties.getBatchSize());
+        queue.drainTo(batch, properties.getBatchSize());
+        if (batch.isEmpty()) {
+            flushing.set(false);
+            return;
+        }
+        insert(batch)
+            .onErrorResume(e -> {
+                log.warn("Could not write {} audit events: {}", batch.size(), e.getMessage());
+                errorCounter.increment(batch.size());
+                return Mono.empty();
+            })
+            .doFinally(signal -> afterFlush())
+            .subscribe();
+    }
+
+    private void replayJournal() {
+        AuditEventJournal.Batch batch = journal.read(properties.getBatchSize());
+        if (batch.getEvents().isEmpty()) {
+            flushing.set(false);
+            return;
+        }
+        insert(batch.getEvents())
+            .then(Mono.fromCallable(() -> {
+                journal.commit(batch);
+                return batch;
+            }))
+            .subscribe(committed -> afterFlush(), e -> {
+                log.warn("Could not write {} audit events from the journal, they will be retried: {}", batch.getEvents().size(), e.getMessage());
+                flushing.set(false);
+            });
+    }
+
+    private Mono<Void> insert(List<PersistentAuditEvent> batch) {
+        Mono<Void> inserted = properties.getStorage() == ApplicationProperties.AuditEvents.Storage.BUCKET
+            ? auditEventBucketService.insert(batch)
+            : persistenceAuditEventRepository.insert(batch).then();
+        return inserted.then(rollUp(batch));
+    }
+
+    /**
+     * Count written events in their rollups. Failures are only logged, so that the events are not written again.
+     */
+    private Mono<Void> rollUp(List<PersistentAuditEvent> events) {
+        return auditEventRollupService.increment(events)
+            .onErrorResume(e -> {
+                log.warn("Could not count {} audit events in their rollups: {}", events.size(), e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    private void afterFlush() {
+        flushing.set(false);
+        if (pending() >= properties.getBatchSize()) {
+            flush();
+        }
+    }
+
+    private long pending() {
+        return journal != null ? journal.getPendingEvents() : queue.size();
+    }
+
+    private static AuditEventJournal openJournal(ApplicationProperties.AuditEvents.Journal properties) {
+        try {
+            return new AuditEventJournal(Paths.get(properties.getDirectory()), properties.getSegmentSizeInBytes(), properties.getMaxSegments());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the audit event journal in " + properties.getDirectory(), e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flushTask.dispose();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Could not close the audit event journal: {}", e.getMessage());
+            }
+            return;
+        }
+        List<PersistentAuditEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            log.debug("Writing {} audit events before shutdown", remaining.size());
+            try {
+                insert(remaining).block(Duration.ofSeconds(10));
+            } catch (RuntimeException e) {
+                log.warn("Could not write {} audit events before shutdown: {}", remaining.size(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ft.service;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.JobLease;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Service for running a scheduled job on a single gateway instance at a time.
+ * <p>
+ * Each job has a {@link JobLease} in MongoDB, acquired with a single {@code findAndModify}: it matches the lease only
+ * when it has expired, and otherwise inserts it, which fails on the duplicate id while another instance holds it.
+ * The lease is renewed while the job runs, so that a job longer than the lease is not started again elsewhere.
+ * Jobs that only touch the state of their own instance, like refreshing a local cache, should not use it.
+ */
+@Service
+public class JobLeaseService {
+
+    static final String DURATION_METER_NAME = "scheduled.job";
+
+    static final String CONTENTION_METER_NAME = "scheduled.job.lease.contention";
+
+    private final Logger log = LoggerFactory.getLogger(JobLeaseService.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final ApplicationProperties.Scheduling properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    public JobLeaseService(ReactiveMongoTemplate mongoTemplate, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = applicationProperties.getScheduling();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run a job, unless another instance holds its lease.
+     *
+     * @param job the name of the job.
+     * @param task the job, given the lease it runs under.
+     * @return an empty {@link Mono} completing when the job is done, or at once if it runs on another instance.
+     */
+    public Mono<Void> runExclusively(String job, Function<JobLease, Mono<?>> task) {
+        return Mono.usingWhen(acquire(job),
+            lease -> timed(job, Mono.defer(() -> task.apply(lease)).then().takeUntilOther(renewals(lease))),
+            this::release,
+            (lease, e) -> release(lease),
+            this::release);
+    }
+
+    /**
+     * Acquire the lease of a job.
+     *
+     * @param job the name of the job.
+     * @return the lease, or an empty {@link Mono} if another instance holds it.
+     */
+    Mono<JobLease> acquire(String job) {
+        Instant now = Instant.now();
+        Query query = Query.query(Criteria.where("id").is(job).and("lockedUntil").lte(now));
+        Update update = new Update()
+            .set("owner", owner)
+            .set("lockedAt", now)
+            .set("lockedUntil", now.plusSeconds(properties.getLockAtMostInSeconds()))
+            .inc("fencingToken", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), JobLease.class)
+            .doOnNext(lease -> log.debug("Acquired {}", lease))
+            .onErrorResume(DuplicateKeyException.class, e -> {
+                log.debug("Not running job {}, it is running on another instance", job);
+                Counter.builder(CONTENTION_METER_NAME)
+                    .tag("job", job)
+                    .description("Runs of a scheduled job skipped because another instance held its lease")
+                    .register(meterRegistry)
+                    .increment();
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * Extend a lease by the configured maximum time.
+     * <p>
+     * Like {@link #release(JobLease)}, it only matches the lease with the same fencing token.
+     *
+     * @param lease the lease.
+     * @return an empty {@link Mono} when the lease is extended, or an {@link IllegalStateException} if it was acquired
+     * again by another instance.
+     */
+    Mono<Void> renew(JobLease lease) {
+        Query query = Query.query(Criteria.where("id").is(lease.getId()).and("fencingToken").is(lease.getFencingToken()));
+        Update update = Update.update("lockedUntil", Instant.now().plusSeconds(properties.getLockAtMostInSeconds()));
+        return mongoTemplate.updateFirst(query, update, JobLease.class)
+            .onErrorResume(e -> {
+                log.warn("Could not renew {}, trying again before it expires: {}", lease, e.getMessage());
+                return Mono.empty();
+            })
+            .flatMap(result -> result.getMatchedCount() == 0 ?
+                Mono.error(new IllegalStateException("Lost " + lease + ", it was acquired by another instance")) : Mono.empty())
+            .then();
+    }
+
+    /**
+     * Renew a lease three times per maximum lease time, until it is lost.
+     */
+    private Flux<Void> renewals(JobLease lease) {
+        return Flux.interval(Duration.ofSeconds(properties.getLockAtMostInSeconds()).dividedBy(3))
+            .concatMap(tick -> renew(lease));
+    }
+
+    /**
+     * Release a lease, keeping it at least for the configured minimum time after it was acquired.
+     * <p>
+     * The fencing token makes sure that a lease acquired again by another instance after it expired is left alone.
+     *
+     * @param lease the lease.
+     * @return an empty {@link Mono} when the lease is released.
+     */
+    Mono<Void> release(JobLease lease) {
+        Instant lockedUntil = lease.getLockedAt().plusSeconds(properties.getLockAtLeastInSeconds());
+        Instant now = Instant.now();
+        Query query = Query.query(Criteria.where("id").is(lease.getId()).and("fencingToken").is(lease.getFencingToken()));
+        return mongoTemplate.updateFirst(query, Update.update("lockedUntil", lockedUntil.isAfter(now) ? lockedUntil : now), JobLease.class)
+            .then()
+            .onErrorResume(e -> {
+                log.warn("Could not release {}, it will expire: {}", lease, e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    private Mono<Void> timed(String job, Mono<Void> task) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return task
+                .doOnSuccess(ignored -> sample.stop(timer(job, "success")))
+                .doOnError(e -> sample.stop(timer(job, "error")));
+        });
+    }
+
+    private Timer timer(String job, String outcome) {
+        return Timer.builder(DURATION_METER_NAME)
+            .tag("job", job)
+            .tag("outcome", outcome)
+            .description("Duration of the scheduled jobs run under a lease")
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,133 @@
+package com.ft.service;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.RefreshToken;
+import com.ft.domain.User;
+import com.ft.repository.RefreshTokenRepository;
+import com.ft.repository.UserRepository;
+import com.ft.security.KeyDigests;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service for the refresh tokens, which get a new JWT without checking the user's password again.
+ * <p>
+ * Refresh tokens are random values given to the client once, only their SHA-256 digest is stored. Each refresh
+ * token can be used once, and is replaced by a new one when it is used.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_LENGTH = 32;
+
+    private final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    private final UserRepository userRepository;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final ApplicationProperties.Security.RefreshToken properties;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository,
+                               ReactiveMongoTemplate mongoTemplate, ApplicationProperties applicationProperties) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.properties = applicationProperties.getSecurity().getRefreshToken();
+    }
+
+    /**
+     * Create a refresh token for a user.
+     *
+     * @param login the user login.
+     * @param rememberMe whether the JWTs obtained with the token are remember-me tokens.
+     * @return the refresh token to give to the client.
+     */
+    public Mono<String> createRefreshToken(String login, boolean rememberMe) {
+        byte[] bytes = new byte[TOKEN_LENGTH];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setTokenHash(KeyDigests.digest(token));
+        refreshToken.setLogin(login);
+        refreshToken.setRememberMe(rememberMe);
+        refreshToken.setExpiryDate(refreshToken.getCreatedDate().plusSeconds(properties.getValidityInSeconds()));
+        return refreshTokenRepository.save(refreshToken).thenReturn(token);
+    }
+
+    /**
+     * Use a refresh token, which removes it.
+     * <p>
+     * The token is found and removed in a single atomic operation, so that concurrent uses of the same token get it
+     * only once.
+     *
+     * @param token the refresh token given to the client.
+     * @return the used refresh token, or a {@link BadCredentialsException} if it is unknown or expired.
+     */
+    public Mono<RefreshToken> useRefreshToken(String token) {
+        return mongoTemplate.findAndRemove(Query.query(Criteria.where("tokenHash").is(KeyDigests.digest(token))), RefreshToken.class)
+            .filter(refreshToken -> refreshToken.getExpiryDate().isAfter(Instant.now()))
+            .switchIfEmpty(Mono.error(() -> new BadCredentialsException("Invalid refresh token")));
+    }
+
+    /**
+     * Get the current authentication of the user of a refresh token, without checking the password.
+     *
+     * @param refreshToken a used refresh token.
+     * @return the authentication, or a {@link BadCredentialsException} if the user no longer exists or is not activated.
+     */
+    public Mono<Authentication> getAuthentication(RefreshToken refreshToken) {
+        return userRepository.findOneByLogin(refreshToken.getLogin())
+            .filter(User::getActivated)
+            .switchIfEmpty(Mono.error(() -> new BadCredentialsException("Invalid refresh token")))
+            .map(user -> {
+                List<GrantedAuthority> authorities = user.getAuthorities().stream()
+                    .map(authority -> new SimpleGrantedAuthority(authority.getName()))
+                    .collect(Collectors.toList());
+                return new UsernamePasswordAuthenticationToken(user.getLogin(), null, authorities);
+            });
+    }
+
+    /**
+     * Remove a refresh token, for example on logout.
+     *
+     * @param token the refresh token given to the client.
+     * @return an empty {@link Mono} when the token is removed.
+     */
+    public Mono<Void> deleteRefreshToken(String token) {
+        return refreshTokenRepository.deleteByTokenHash(KeyDigests.digest(token)).then();
+    }
+
+    /**
+     * Remove every refresh token of a user.
+     *
+     * @param login the user login.
+     * @return an empty {@link Mono} when the tokens are removed.
+     */
+    public Mono<Void> deleteRefreshTokens(String login) {
+        return refreshTokenRepository.deleteByLogin(login)
+            .doOnNext(count -> log.debug("Deleted {} refresh tokens of user {}", count, login))
+            .then();
+    }
+}
@@ -0,0 +1,132 @@
+package com.ft.service;
+
+import com.ft.domain.RevokedToken;
+import com.ft.repository.RevokedTokenRepository;
+import com.ft.security.jwt.TokenDetails;
+import com.ft.security.jwt.TokenProvider;
+import com.ft.security.jwt.TokenRevocationList;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Service for revoking JWTs before they expire.
+ * <p>
+ * Revocations are stored in MongoDB and read by every gateway instance into its {@link TokenRevocationList}.
+ */
+@Service
+public class TokenRevocationService {
+
+    /**
+     * How far back each refresh reads again, to catch the revocations of instances whose clock is behind ours.
+     */
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private static final Duration REBUILD_INTERVAL = Duration.ofHours(1);
+
+    private final Logger log = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final TokenRevocationList revocationList;
+
+    private final JHipsterProperties jHipsterProperties;
+
+    private final RefreshTokenService refreshTokenService;
+
+    private Instant lastRefresh;
+
+    private Instant lastRebuild;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, TokenProvider tokenProvider,
+                                  JHipsterProperties jHipsterProperties, RefreshTokenService refreshTokenService) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.revocationList = tokenProvider.getRevocationList();
+        this.jHipsterProperties = jHipsterProperties;
+        this.refreshTokenService = refreshTokenService;
+    }
+
+    /**
+     * Revoke the token of an authentication, for example on logout.
+     *
+     * @param authentication an authentication built from a JWT.
+     * @return an empty {@link Mono} when the revocation is stored.
+     */
+    public Mono<Void> revokeToken(Authentication authentication) {
+        if (!(authentication.getDetails() instanceof TokenDetails)) {
+            return Mono.empty();
+        }
+        TokenDetails details = (TokenDetails) authentication.getDetails();
+        if (details.getTokenId() == null || details.getExpiresAt() == null) {
+            log.debug("Not revoking a token without id or expiry for user {}", authentication.getName());
+            return Mono.empty();
+        }
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setTokenId(details.getTokenId());
+        revokedToken.setLogin(authentication.getName());
+        revokedToken.setRevokedDate(Instant.now());
+        revokedToken.setExpiryDate(Instant.ofEpochMilli(details.getExpiresAt()));
+        return save(revokedToken);
+    }
+
+    /**
+     * Revoke every token issued to a user until now, and remove the user's refresh tokens.
+     *
+     * @param login the user login.
+     * @return an empty {@link Mono} when the revocation is stored.
+     */
+    public Mono<Void> revokeUserTokens(String login) {
+        JHipsterProperties.Security.Authentication.Jwt jwt = jHipsterProperties.getSecurity().getAuthentication().getJwt();
+        Instant now = Instant.now();
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setLogin(login);
+        revokedToken.setRevokedDate(now);
+        revokedToken.setExpiryDate(now.plusSeconds(Math.max(jwt.getTokenValidityInSeconds(), jwt.getTokenValidityInSecondsForRememberMe())));
+        return refreshTokenService.deleteRefreshTokens(login)
+            .then(save(revokedToken));
+    }
+
+    private Mono<Void> save(RevokedToken revokedToken) {
+        log.debug("Revoking {}", revokedToken);
+        return revokedTokenRepository.save(revokedToken)
+            .doOnNext(revocationList::add)
+            .then();
+    }
+
+    /**
+     * Read the revocations of every instance into the local revocation list.
+     * <p>
+     * This is scheduled every 5 seconds, and rebuilds the whole list every hour to drop the expired revocations.
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void refreshRevocationList() {
+        refreshRevocationListReactively().block();
+    }
+
+    public Mono<Void> refreshRevocationListReactively() {
+        Instant now = Instant.now();
+        if (lastRebuild == null || lastRebuild.plus(REBUILD_INTERVAL).isBefore(now)) {
+            return revokedTokenRepository.findAllByExpiryDateAfter(now)
+                .collectList()
+                .doOnNext(revokedTokens -> {
+                    revocationList.rebuild(revokedTokens);
+                    log.debug("Rebuilt the token revocation list with {} revocations", revokedTokens.size());
+                    lastRebuild = now;
+                    lastRefresh = now;
+                })
+                .then();
+        }
+        return revokedTokenRepository.findAllByRevokedDateAfter(lastRefresh.minus(REFRESH_OVERLAP))
+            .doOnNext(revocationList::add)
+            .then()
+            .doOnSuccess(ignored -> lastRefresh = now);
+    }
+}
@@ -1,19 +1,31 @@
 package com.ft.service;
 
+import com.ft.config.ApplicationProperties;
 import com.ft.config.Constants;
+import com.ft.config.dbmigrations.UserUniqueIndexMigration;
 import com.ft.domain.Authority;
 import com.ft.domain.User;
 import com.ft.repository.AuthorityRepository;
 import com.ft.repository.UserRepository;
 import com.ft.security.AuthoritiesConstants;
+import com.ft.security.KeyDigests;
+import com.ft.security.PasswordEncoderScheduler;
 import com.ft.security.SecurityUtils;
+import com.ft.security.UserCredentialsCache;
+import com.ft.service.dto.CursorPage;
 import com.ft.service.dto.UserDTO;
 
 import io.github.jhipster.security.RandomUtil;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -23,16 +35,27 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 /**
  * Service class for managing users.
+ * <p>
+ * Activation and reset keys are stored as digests: the users returned when a key is generated hold the key itself,
+ * so that it can be mailed, while the database only holds its digest.
+ * <p>
+ * Logins and emails are kept unique by unique indexes rather than by looking for existing users before saving: a
+ * duplicate fails the save with a {@link UsernameAlreadyUsedException} or an {@link EmailAlreadyUsedException}.
  */
 @Service
 public class UserService {
 
+    private static final String REMOVE_NOT_ACTIVATED_USERS_JOB = "remove-not-activated-users";
+
+    private static final Duration MANAGED_USER_COUNT_TIME_TO_LIVE = Duration.ofSeconds(30);
+
     private final Logger log = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
@@ -41,15 +64,36 @@ public class UserService {
 
     private final AuthorityRepository authorityRepository;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository) {
+    private final PasswordEncoderScheduler passwordEncoderScheduler;
+
+    private final UserCredentialsCache userCredentialsCache;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final JobLeaseService jobLeaseService;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final Mono<Long> managedUserCount;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository,
+                       PasswordEncoderScheduler passwordEncoderScheduler, UserCredentialsCache userCredentialsCache,
+                       ApplicationProperties applicationProperties, JobLeaseService jobLeaseService,
+                       ReactiveMongoTemplate mongoTemplate) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
+        this.passwordEncoderScheduler = passwordEncoderScheduler;
+        this.userCredentialsCache = userCredentialsCache;
+        this.applicationProperties = applicationProperties;
+        this.jobLeaseService = jobLeaseService;
+        this.mongoTemplate = mongoTemplate;
+        this.managedUserCount = countManagedUsers().cache(count -> MANAGED_USER_COUNT_TIME_TO_LIVE, e -> Duration.ZERO, () -> Duration.ZERO);
     }
 
     public Mono<User> activateRegistration(String key) {
         log.debug("Activating user for activation key {}", key);
-        return userRepository.findOneByActivationKey(key)
+        return userRepository.findOneByActivationKey(KeyDigests.digest(key))
             .flatMap(user -> {
                 // activate given user for the registration key.
                 user.setActivated(true);
@@ -61,9 +105,9 @@ public class UserService {
 
     public Mono<User> completePasswordReset(String newPassword, String key) {
         log.debug("Reset user password for reset key {}", key);
-        return userRepository.findOneByResetKey(key)
+        return userRepository.findOneByResetKey(KeyDigests.digest(key))
             .filter(user -> user.getResetDate().isAfter(Instant.now().minusSeconds(86400)))
-            .publishOn(Schedulers.boundedElastic())
+            .publishOn(passwordEncoderScheduler.getScheduler())
             .map(user -> {
                 user.setPassword(passwordEncoder.encode(newPassword));
                 user.setResetKey(null);
@@ -74,54 +118,43 @@ public class UserService {
     }
 
     public Mono<User> requestPasswordReset(String mail) {
-        return userRepository.findOneByEmailIgnoreCase(mail)
+        return userRepository.findOneByEmail(mail.toLowerCase())
             .filter(User::getActivated)
             .publishOn(Schedulers.boundedElastic())
-            .map(user -> {
-                user.setResetKey(RandomUtil.generateResetKey());
+            .flatMap(user -> {
+                String resetKey = RandomUtil.generateResetKey();
+                user.setResetKey(KeyDigests.digest(resetKey));
                 user.setResetDate(Instant.now());
-                return user;
-            })
-            .flatMap(this::saveUser);
+                return saveUser(user).doOnNext(savedUser -> savedUser.setResetKey(resetKey));
+            });
     }
 
     public Mono<User> registerUser(UserDTO userDTO, String password) {
-        return userRepository.findOneByLogin(userDTO.getLogin().toLowerCase())
-            .flatMap(existingUser -> {
-                if (!existingUser.getActivated()) {
-                    return userRepository.delete(existingUser);
-                } else {
-                    return Mono.error(new UsernameAlreadyUsedException());
-                }
-            })
-            .then(userRepository.findOneByEmailIgnoreCase(userDTO.getEmail()))
-            .flatMap(existingUser -> {
-                if (!existingUser.getActivated()) {
-                    return userRepository.delete(existingUser);
-                } else {
-                    return Mono.error(new EmailAlreadyUsedException());
-                }
-            })
-            .publishOn(Schedulers.boundedElastic())
-            .then(Mono.fromCallable(() -> {
+        String login = userDTO.getLogin().toLowerCase();
+        String email = userDTO.getEmail() != null ? userDTO.getEmail().toLowerCase() : null;
+        String activationKey = RandomUtil.generateActivationKey();
+        // The password is encoded while the login and email are released, as both are needed to save the user
+        Mono<String> encryptedPassword = Mono.fromCallable(() -> passwordEncoder.encode(password))
+            .subscribeOn(passwordEncoderScheduler.getScheduler())
+            .cache();
+        return Mono.when(encryptedPassword, releaseLoginAndEmail(login, email))
+            .then(encryptedPassword)
+            .map(encrypted -> {
                 User newUser = new User();
-                String encryptedPassword = passwordEncoder.encode(password);
-                newUser.setLogin(userDTO.getLogin().toLowerCase());
+                newUser.setLogin(login);
                 // new user gets initially a generated password
-                newUser.setPassword(encryptedPassword);
+                newUser.setPassword(encrypted);
                 newUser.setFirstName(userDTO.getFirstName());
                 newUser.setLastName(userDTO.getLastName());
-                if (userDTO.getEmail() != null) {
-                    newUser.setEmail(userDTO.getEmail().toLowerCase());
-                }
+                newUser.setEmail(email);
                 newUser.setImageUrl(userDTO.getImageUrl());
                 newUser.setLangKey(userDTO.getLangKey());
                 // new user is not active
                 newUser.setActivated(false);
                 // new user gets registration key
-                newUser.setActivationKey(RandomUtil.generateActivationKey());
+                newUser.setActivationKey(KeyDigests.digest(activationKey));
                 return newUser;
-            }))
+            })
             .flatMap(newUser -> {
                 Set<Authority> authorities = new HashSet<>();
                 return authorityRepository.findById(AuthoritiesConstants.USER)
@@ -129,11 +162,34 @@ public class UserService {
                     .thenReturn(newUser)
                     .doOnNext(user -> user.setAuthorities(authorities))
                     .flatMap(this::saveUser)
-                    .doOnNext(user -> log.debug("Created Information for User: {}", user));
+                    .doOnNext(user -> log.debug("Created Information for User: {}", user))
+                    .doOnNext(user -> user.setActivationKey(activationKey));
             });
     }
 
+    /**
+     * Remove the users who registered with a login or an email but did not activate their account, with a single
+     * lookup, so that they can be registered again.
+     *
+     * @param login the lower-cased login.
+     * @param email the lower-cased email, or {@code null}.
+     * @return a {@link Mono} failing if an activated user has the login or the email.
+     */
+    private Mono<Void> releaseLoginAndEmail(String login, String email) {
+        Flux<User> existingUsers = email == null ? userRepository.findOneByLogin(login).flux()
+            : userRepository.findAllByLoginOrEmail(login, email);
+        return existingUsers
+            .concatMap(existingUser -> {
+                if (existingUser.getActivated()) {
+                    return Mono.error(login.equals(existingUser.getLogin()) ? new UsernameAlreadyUsedException() : new EmailAlreadyUsedException());
+                }
+                return removeUser(existingUser);
+            })
+            .then();
+    }
+
     public Mono<User> createUser(UserDTO userDTO) {
+        String resetKey = RandomUtil.generateResetKey();
         User user = new User();
         user.setLogin(userDTO.getLogin().toLowerCase());
         user.setFirstName(userDTO.getFirstName());
@@ -151,17 +207,18 @@ public class UserService {
             .flatMap(authorityRepository::findById)
             .doOnNext(authority -> user.getAuthorities().add(authority))
             .then(Mono.just(user))
-            .publishOn(Schedulers.boundedElastic())
+            .publishOn(passwordEncoderScheduler.getScheduler())
             .map(newUser -> {
                 String encryptedPassword = passwordEncoder.encode(userDTO.getPassword() != null ? userDTO.getPassword() :  RandomUtil.generatePassword());
                 newUser.setPassword(encryptedPassword);
-                newUser.setResetKey(RandomUtil.generateResetKey());
+                newUser.setResetKey(KeyDigests.digest(resetKey));
                 newUser.setResetDate(Instant.now());
                 newUser.setActivated(true);
                 return newUser;
             })
             .flatMap(this::saveUser)
-            .doOnNext(user1 -> log.debug("Created Information for User: {}", user1));
+            .doOnNext(user1 -> log.debug("Created Information for User: {}", user1))
+            .doOnNext(user1 -> user1.setResetKey(resetKey));
     }
 
     /**
@@ -172,6 +229,7 @@ public class UserService {
      */
     public Mono<UserDTO> updateUser(UserDTO userDTO) {
         return userRepository.findById(userDTO.getId())
+            .publishOn(StringUtils.isEmpty(userDTO.getPassword()) ? Schedulers.immediate() : passwordEncoderScheduler.getScheduler())
             .flatMap(user -> {
                 user.setLogin(userDTO.getLogin().toLowerCase());
                 user.setFirstName(userDTO.getFirstName());
@@ -198,7 +256,7 @@ public class UserService {
 
     public Mono<Void> deleteUser(String login) {
         return userRepository.findOneByLogin(login)
-            .flatMap(user -> userRepository.delete(user).thenReturn(user))
+            .flatMap(user -> removeUser(user).thenReturn(user))
             .doOnNext(user -> log.debug("Deleted User: {}", user))
             .then();
     }
@@ -211,8 +269,9 @@ public class UserService {
      * @param email     email id of user.
      * @param langKey   language key.
      * @param imageUrl  image URL of user.
+     * @return the updated user, or an empty {@link Mono} if the current user was not found.
      */
-    public Mono<Void> updateUser(String firstName, String lastName, String email, String langKey, String imageUrl) {
+    public Mono<User> updateUser(String firstName, String lastName, String email, String langKey, String imageUrl) {
         return SecurityUtils.getCurrentUserLogin()
             .flatMap(userRepository::findOneByLogin)
             .flatMap(user -> {
@@ -225,8 +284,7 @@ public class UserService {
                 user.setImageUrl(imageUrl);
                 return saveUser(user);
             })
-            .doOnNext(user -> log.debug("Changed Information for User: {}", user))
-            .then();
+            .doOnNext(user -> log.debug("Changed Information for User: {}", user));
     }
 
     private Mono<User> saveUser(User user) {
@@ -238,13 +296,51 @@ public class UserService {
                 }
                 user.setLastModifiedBy(login);
                 return userRepository.save(user);
-            });
+            })
+            .onErrorMap(DuplicateKeyException.class, this::translateDuplicateKey)
+            .doOnNext(savedUser -> userCredentialsCache.evict(savedUser.getId()));
+    }
+
+    /**
+     * Translate a duplicate key on the unique login or email index into the exception of the used field.
+     */
+    private Throwable translateDuplicateKey(DuplicateKeyException e) {
+        String message = String.valueOf(e.getMessage());
+        if (message.contains(UserUniqueIndexMigration.LOGIN_INDEX)) {
+            return new UsernameAlreadyUsedException();
+        }
+        if (message.contains(UserUniqueIndexMigration.EMAIL_INDEX)) {
+            return new EmailAlreadyUsedException();
+        }
+        return e;
+    }
+
+    private Mono<Void> removeUser(User user) {
+        return userRepository.delete(user)
+            .doOnSuccess(v -> userCredentialsCache.evict(user.getId()));
+    }
+
+    /**
+     * Replace the password hash of a user, without changing the password itself.
+     *
+     * @param login the login of the user.
+     * @param encryptedPassword the password hashed again, for instance with another bcrypt strength.
+     * @return the updated user.
+     */
+    public Mono<User> upgradePasswordHash(String login, String encryptedPassword) {
+        return userRepository.findOneByLogin(login)
+            .flatMap(user -> {
+                user.setPassword(encryptedPassword);
+                return userRepository.save(user);
+            })
+            .doOnNext(user -> userCredentialsCache.evict(user.getId()))
+            .doOnNext(user -> log.debug("Upgraded password hash for User: {}", user.getLogin()));
     }
 
     public Mono<Void> changePassword(String currentClearTextPassword, String newPassword) {
         return SecurityUtils.getCurrentUserLogin()
             .flatMap(userRepository::findOneByLogin)
-            .publishOn(Schedulers.boundedElastic())
+            .publishOn(passwordEncoderScheduler.getScheduler())
             .map(user -> {
                 String currentEncryptedPassword = user.getPassword();
                 if (!passwordEncoder.matches(currentClearTextPassword, currentEncryptedPassword)) {
@@ -263,10 +359,56 @@ public class UserService {
         return userRepository.findAllByLoginNot(pageable, Constants.ANONYMOUS_USER).map(UserDTO::new);
     }
 
+    /**
+     * Get a page of managed users, by login, after the last user of the previous page.
+     * <p>
+     * The users are read from the ({@code login}, {@code _id}) index, so a page costs the same however deep it is.
+     *
+     * @param afterLogin the login of the last user of the previous page, or {@code null} for the first page.
+     * @param afterId the id of the last user of the previous page.
+     * @param size the size of the page.
+     * @return the page, with the login and the id of its last user as next keys.
+     */
+    public Mono<CursorPage<UserDTO>> getAllManagedUsersAfter(String afterLogin, String afterId, int size) {
+        Query query = new Query(Criteria.where("login").ne(Constants.ANONYMOUS_USER))
+            .with(Sort.by(Sort.Direction.ASC, "login", "id"))
+            .limit(size + 1);
+        if (afterLogin != null) {
+            query.addCriteria(new Criteria().orOperator(
+                Criteria.where("login").gt(afterLogin),
+                Criteria.where("login").is(afterLogin).and("id").gt(afterId)));
+        }
+        return mongoTemplate.find(query, User.class)
+            .collectList()
+            .map(users -> {
+                if (users.size() <= size) {
+                    return new CursorPage<>(toDTOs(users), null);
+                }
+                List<User> page = users.subList(0, size);
+                User last = page.get(size - 1);
+                return new CursorPage<>(toDTOs(page), Arrays.asList(last.getLogin(), last.getId()));
+            });
+    }
+
+    private List<UserDTO> toDTOs(List<User> users) {
+        List<UserDTO> dtos = new ArrayList<>(users.size());
+        users.forEach(user -> dtos.add(new UserDTO(user)));
+        return dtos;
+    }
+
     public Mono<Long> countManagedUsers() {
         return userRepository.countAllByLoginNot(Constants.ANONYMOUS_USER);
     }
 
+    /**
+     * Get the number of managed users, counted at most once per {@link #MANAGED_USER_COUNT_TIME_TO_LIVE}.
+     *
+     * @return the number of managed users.
+     */
+    public Mono<Long> countManagedUsersCached() {
+        return managedUserCount;
+    }
+
     public Mono<User> getUserWithAuthoritiesByLogin(String login) {
         return userRepository.findOneByLogin(login);
     }
@@ -278,18 +420,39 @@ public class UserService {
     /**
      * Not activated users should be automatically deleted after 3 days.
      * <p>
-     * This is scheduled to get fired everyday, at 01:00 (am).
+     * They are deleted by a TTL index, see {@link com.ft.config.dbmigrations.RetentionMigration}, so this only runs
+     * when TTL indexes are disabled, on a single instance. This is scheduled to get fired everyday, at 01:00 (am).
      */
     @Scheduled(cron = "0 0 1 * * ?")
     public void removeNotActivatedUsers() {
-        removeNotActivatedUsersReactively().blockLast();
+        if (applicationProperties.getRetention().isTtlIndexes()) {
+            return;
+        }
+        jobLeaseService.runExclusively(REMOVE_NOT_ACTIVATED_USERS_JOB, lease -> removeNotActivatedUsersReactively().then()).block();
+    }
+
+    /**
+     * Delete not activated users in chunks, without reading more than their id.
+     *
+     * @return the ids of the deleted users.
+     */
+    public Flux<String> removeNotActivatedUsersReactively() {
+        Instant before = Instant.now().minus(applicationProperties.getRetention().getNotActivatedUsersInDays(), ChronoUnit.DAYS);
+        int chunkSize = applicationProperties.getRetention().getDeleteChunkSize();
+        return removeNotActivatedUserChunk(before, chunkSize)
+            .expand(ids -> ids.size() < chunkSize ? Mono.empty() : removeNotActivatedUserChunk(before, chunkSize))
+            .flatMapIterable(ids -> ids)
+            .doOnNext(id -> {
+                userCredentialsCache.evict(id);
+                log.debug("Deleted User: {}", id);
+            });
     }
 
-    public Flux<User> removeNotActivatedUsersReactively() {
-        return userRepository
-            .findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(Instant.now().minus(3, ChronoUnit.DAYS))
-            .flatMap(user -> userRepository.delete(user).thenReturn(user))
-            .doOnNext(user -> log.debug("Deleted User: {}", user));
+    private Mono<List<String>> removeNotActivatedUserChunk(Instant before, int chunkSize) {
+        return userRepository.findIdsOfNotActivatedUsersCreatedBefore(before, PageRequest.of(0, chunkSize))
+            .map(User::getId)
+            .collectList()
+            .flatMap(ids -> ids.isEmpty() ? Mono.just(ids) : userRepository.deleteByIdIn(ids).thenReturn(ids));
     }
 
     /**
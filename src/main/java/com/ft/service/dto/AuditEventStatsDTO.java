@@ -0,0 +1,87 @@
+package com.ft.service.dto;
+
+import java.time.Instant;
+
+/**
+ * A DTO representing the number of audit events of a type and principal during a time bucket.
+ */
+public class AuditEventStatsDTO {
+
+    /**
+     * Length of the time buckets.
+     */
+    public enum Granularity {
+        HOUR,
+        /**
+         * Days in UTC.
+         */
+        DAY
+    }
+
+    private Instant date;
+
+    private String eventType;
+
+    private String principal;
+
+    private long count;
+
+    public AuditEventStatsDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public AuditEventStatsDTO(Instant date, String eventType, String principal, long count) {
+        this.date = date;
+        this.eventType = eventType;
+        this.principal = principal;
+        this.count = count;
+    }
+
+    /**
+     * Get the start of the time bucket.
+     *
+     * @return the start of the time bucket.
+     */
+    public Instant getDate() {
+        return date;
+    }
+
+    public void setDate(Instant date) {
+        this.date = date;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(String principal) {
+        this.principal = principal;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "AuditEventStatsDTO{" +
+            "date=" + date +
+            ", eventType='" + eventType + '\'' +
+            ", principal='" + principal + '\'' +
+            ", count=" + count +
+            '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.ft.service.dto;
+
+import java.util.List;
+
+/**
+ * A page of results read after a cursor, with the sort keys of its last result to read the next page from.
+ *
+ * @param <T> the type of the results.
+ */
+public class CursorPage<T> {
+
+    private final List<T> content;
+
+    private final List<String> nextKeys;
+
+    public CursorPage(List<T> content, List<String> nextKeys) {
+        this.content = content;
+        this.nextKeys = nextKeys;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * Get the keys to read the next page after.
+     *
+     * @return the keys, or {@code null} if this is the last page.
+     */
+    public List<String> getNextKeys() {
+        return nextKeys;
+    }
+
+    public boolean hasNext() {
+        return nextKeys != null;
+    }
+}
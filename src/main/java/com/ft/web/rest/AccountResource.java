@@ -1,6 +1,5 @@
 package com.ft.web.rest;
 
-import com.ft.repository.UserRepository;
 import com.ft.security.SecurityUtils;
 import com.ft.service.MailService;
 import com.ft.service.UserService;
@@ -37,15 +36,12 @@ public class AccountResource {
 
     private final Logger log = LoggerFactory.getLogger(AccountResource.class);
 
-    private final UserRepository userRepository;
-
     private final UserService userService;
 
     private final MailService mailService;
 
-    public AccountResource(UserRepository userRepository, UserService userService, MailService mailService) {
+    public AccountResource(UserService userService, MailService mailService) {
 
-        this.userRepository = userRepository;
         this.userService = userService;
         this.mailService = mailService;
     }
@@ -118,18 +114,11 @@ public class AccountResource {
     public Mono<Void> saveAccount(@Valid @RequestBody UserDTO userDTO) {
         return SecurityUtils.getCurrentUserLogin()
             .switchIfEmpty(Mono.error(new AccountResourceException("Current user login not found")))
-            .flatMap(userLogin -> userRepository.findOneByEmailIgnoreCase(userDTO.getEmail())
-                .filter(existingUser -> !existingUser.getLogin().equalsIgnoreCase(userLogin))
-                .hasElement()
-                .flatMap(emailExists -> {
-                    if (emailExists) {
-                        throw new EmailAlreadyUsedException();
-                    }
-                    return userRepository.findOneByLogin(userLogin);
-                }))
-                .switchIfEmpty(Mono.error(new AccountResourceException("User could not be found")))
-                .flatMap(user -> userService.updateUser(userDTO.getFirstName(), userDTO.getLastName(), userDTO.getEmail(),
-                    userDTO.getLangKey(), userDTO.getImageUrl()));
+            // The unique index on the email rejects an email used by another user
+            .flatMap(userLogin -> userService.updateUser(userDTO.getFirstName(), userDTO.getLastName(), userDTO.getEmail(),
+                userDTO.getLangKey(), userDTO.getImageUrl()))
+            .switchIfEmpty(Mono.error(new AccountResourceException("User could not be found")))
+            .then();
     }
 
     /**
@@ -0,0 +1,50 @@
+package com.ft.web.rest;
+
+import com.ft.service.AuditEventArchiveService;
+import com.ft.web.rest.errors.BadRequestAlertException;
+
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+
+/**
+ * REST controller for reading back the {@link AuditEvent}s archived to MinIO.
+ */
+@RestController
+@RequestMapping("/management/audits/archive")
+@ConditionalOnProperty(prefix = "minio", name = { "endpoint", "bucket-name" })
+public class AuditArchiveResource {
+
+    private static final String ENTITY_NAME = "audit";
+
+    private final AuditEventArchiveService auditEventArchiveService;
+
+    public AuditArchiveResource(AuditEventArchiveService auditEventArchiveService) {
+        this.auditEventArchiveService = auditEventArchiveService;
+    }
+
+    /**
+     * {@code GET  /audits/archive} : stream the archived {@link AuditEvent}s between the {@code fromDate} and {@code toDate}.
+     *
+     * @param fromDate the first day of archived events, in UTC.
+     * @param toDate the last day of archived events, in UTC.
+     * @return the archived {@link AuditEvent}s, day by day.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the {@code toDate} is before the {@code fromDate}.
+     */
+    @GetMapping
+    public Flux<AuditEvent> getArchived(
+        @RequestParam(value = "fromDate") LocalDate fromDate,
+        @RequestParam(value = "toDate") LocalDate toDate) {
+
+        if (toDate.isBefore(fromDate)) {
+            throw new BadRequestAlertException("Invalid date range", ENTITY_NAME, "invaliddaterange");
+        }
+        return auditEventArchiveService.findArchived(fromDate, toDate);
+    }
+}
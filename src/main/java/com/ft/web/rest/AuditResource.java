@@ -1,13 +1,19 @@
 package com.ft.web.rest;
 
 import com.ft.service.AuditEventService;
+import com.ft.service.AuditEventStreamService;
+import com.ft.service.dto.AuditEventStatsDTO;
+import com.ft.web.rest.errors.BadRequestAlertException;
+import com.ft.web.rest.util.CursorPaginationUtil;
 
 import io.github.jhipster.web.util.PaginationUtil;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
@@ -15,10 +21,14 @@ import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * REST controller for getting the {@link AuditEvent}s.
@@ -27,10 +37,20 @@ import java.util.ArrayList;
 @RequestMapping("/management/audits")
 public class AuditResource {
 
+    private static final String ENTITY_NAME = "audit";
+
+    /**
+     * Interval of the comments sent on idle event streams, so that proxies do not close them.
+     */
+    private static final Duration STREAM_HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
     private final AuditEventService auditEventService;
 
-    public AuditResource(AuditEventService auditEventService) {
+    private final AuditEventStreamService auditEventStreamService;
+
+    public AuditResource(AuditEventService auditEventService, AuditEventStreamService auditEventStreamService) {
         this.auditEventService = auditEventService;
+        this.auditEventStreamService = auditEventStreamService;
     }
 
     /**
@@ -38,16 +58,63 @@ public class AuditResource {
      *
      * @param request a {@link ServerHttpRequest} request.
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of {@link AuditEvent}s in body.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of {@link AuditEvent}s in body,
+     * or with status {@code 400 (Bad Request)} if the events cannot be sorted as requested.
      */
     @GetMapping
     public Mono<ResponseEntity<Flux<AuditEvent>>> getAll(ServerHttpRequest request, Pageable pageable) {
+        checkSort(pageable);
         return auditEventService.count()
             .map(total -> new PageImpl<>(new ArrayList<>(), pageable, total))
             .map(page -> PaginationUtil.generatePaginationHttpHeaders(UriComponentsBuilder.fromHttpRequest(request), page))
             .map(headers -> ResponseEntity.ok().headers(headers).body(auditEventService.findAll(pageable)));
     }
 
+    /**
+     * {@code GET /audits?cursor=} : get a page of {@link AuditEvent}s, newest first, after a cursor.
+     * <p>
+     * The first page is read with an empty cursor, and each page links to the next one in the {@code Link} header.
+     *
+     * @param cursor the cursor of the page, empty for the first page.
+     * @param count whether to send the estimated total count in the {@code X-Total-Count} header.
+     * @param request a {@link ServerHttpRequest} request.
+     * @param pageable the size of the page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of {@link AuditEvent}s in body,
+     * or with status {@code 400 (Bad Request)} if the cursor is invalid.
+     */
+    @GetMapping(params = CursorPaginationUtil.CURSOR_PARAMETER)
+    public Mono<ResponseEntity<List<AuditEvent>>> getAllAfterCursor(
+        @RequestParam(value = CursorPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestParam(value = "count", defaultValue = "false") boolean count,
+        ServerHttpRequest request,
+        Pageable pageable) {
+
+        List<String> after = CursorPaginationUtil.decodeCursor(cursor, ENTITY_NAME, 2);
+        Instant afterDate = after.isEmpty() ? null : parseDate(after.get(0));
+        String afterId = after.isEmpty() ? null : after.get(1);
+        Mono<Optional<Long>> total = count ? auditEventService.count().map(Optional::of) : Mono.just(Optional.empty());
+        return auditEventService.findAllAfter(afterDate, afterId, pageable.getPageSize())
+            .zipWith(total)
+            .map(pageAndTotal -> ResponseEntity.ok()
+                .headers(CursorPaginationUtil.generateCursorHttpHeaders(UriComponentsBuilder.fromHttpRequest(request),
+                    pageAndTotal.getT1(), pageAndTotal.getT2().orElse(null)))
+                .body(pageAndTotal.getT1().getContent()));
+    }
+
+    private void checkSort(Pageable pageable) {
+        if (!auditEventService.isSortSupported(pageable.getSort())) {
+            throw new BadRequestAlertException("Unsupported sort", ENTITY_NAME, "unsupportedsort");
+        }
+    }
+
+    private Instant parseDate(String key) {
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(key));
+        } catch (NumberFormatException e) {
+            throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "invalidcursor");
+        }
+    }
+
     /**
      * {@code GET  /audits} : get a page of {@link AuditEvent} between the {@code fromDate} and {@code toDate}.
      *
@@ -55,7 +122,8 @@ public class AuditResource {
      * @param toDate the end of the time period of {@link AuditEvent} to get.
      * @param request a {@link ServerHttpRequest} request.
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of {@link AuditEvent} in body.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of {@link AuditEvent} in body,
+     * or with status {@code 400 (Bad Request)} if the events cannot be sorted as requested.
      */
     @GetMapping(params = {"fromDate", "toDate"})
     public Mono<ResponseEntity<Flux<AuditEvent>>> getByDates(
@@ -64,6 +132,7 @@ public class AuditResource {
         ServerHttpRequest request,
         Pageable pageable) {
 
+        checkSort(pageable);
         Instant from = fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant();
         Instant to = toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant();
 
@@ -74,6 +143,49 @@ public class AuditResource {
             .map(headers -> ResponseEntity.ok().headers(headers).body(events));
     }
 
+    /**
+     * {@code GET  /audits/stats} : get the number of {@link AuditEvent}s per time bucket, type and principal between the
+     * {@code fromDate} and {@code toDate}.
+     * <p>
+     * The numbers are read from rollups updated as events are written, never from the events themselves. Days are
+     * UTC days, like the time buckets, whatever the time zone of the server.
+     *
+     * @param fromDate the start of the time period, as a UTC day.
+     * @param toDate the end of the time period, as a UTC day.
+     * @param granularity the length of the time buckets, {@code HOUR} by default.
+     * @param eventType the type of the events to count, all types if not set.
+     * @param principal the principal of the events to count, all principals if not set.
+     * @return the list of {@link AuditEventStatsDTO}s, oldest first.
+     */
+    @GetMapping("/stats")
+    public Flux<AuditEventStatsDTO> getStats(
+        @RequestParam(value = "fromDate") LocalDate fromDate,
+        @RequestParam(value = "toDate") LocalDate toDate,
+        @RequestParam(value = "granularity", defaultValue = "HOUR") AuditEventStatsDTO.Granularity granularity,
+        @RequestParam(value = "eventType", required = false) String eventType,
+        @RequestParam(value = "principal", required = false) String principal) {
+
+        Instant from = fromDate.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant to = toDate.atStartOfDay(ZoneOffset.UTC).plusDays(1).toInstant();
+
+        return auditEventService.findStats(from, to, granularity, eventType, principal);
+    }
+
+    /**
+     * {@code GET  /audits/stream} : stream the new {@link AuditEvent}s as server-sent events, instead of polling them.
+     * <p>
+     * Events are sent as {@code audit} events, and a comment is sent every 15 seconds to keep the connection open.
+     *
+     * @return the stream of {@link AuditEvent}s, until the client disconnects.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AuditEvent>> stream() {
+        Flux<ServerSentEvent<AuditEvent>> heartbeats = Flux.interval(STREAM_HEARTBEAT_INTERVAL)
+            .onBackpressureDrop()
+            .map(tick -> ServerSentEvent.<AuditEvent>builder().comment("heartbeat").build());
+        return Flux.merge(auditEventStreamService.stream().map(event -> ServerSentEvent.builder(event).event("audit").build()), heartbeats);
+    }
+
     /**
      * {@code GET  /audits/:id} : get an {@link AuditEvent} by id.
      *
@@ -0,0 +1,43 @@
+package com.ft.web.rest;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.security.jwt.TokenProvider;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller to publish the public keys that verify our JWTs, so that backends can verify them without calling the gateway.
+ */
+@RestController
+public class JwksResource {
+
+    private final TokenProvider tokenProvider;
+
+    private final CacheControl cacheControl;
+
+    public JwksResource(TokenProvider tokenProvider, ApplicationProperties applicationProperties) {
+        this.tokenProvider = tokenProvider;
+        this.cacheControl = CacheControl
+            .maxAge(applicationProperties.getSecurity().getSigning().getJwksMaxAgeInSeconds(), TimeUnit.SECONDS)
+            .cachePublic();
+    }
+
+    /**
+     * {@code GET  /.well-known/jwks.json} : get the JSON Web Key Set of the token signing keys.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the key set in body, which has no keys when
+     * tokens are signed with a shared secret.
+     */
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> getJsonWebKeySet() {
+        return ResponseEntity.ok()
+            .cacheControl(cacheControl)
+            .body(tokenProvider.getJsonWebKeySet());
+    }
+}
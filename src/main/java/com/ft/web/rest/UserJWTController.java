@@ -1,24 +1,34 @@
 package com.ft.web.rest;
 
 import com.ft.config.Constants;
+import com.ft.security.LoginThrottle;
 import com.ft.security.jwt.JWTFilter;
 import com.ft.security.jwt.TokenProvider;
 import com.ft.service.AuditEventService;
+import com.ft.service.RefreshTokenService;
+import com.ft.service.TokenRevocationService;
 import com.ft.web.rest.vm.LoginVM;
+import com.ft.web.rest.vm.RefreshTokenVM;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 import javax.validation.Valid;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller to authenticate users.
@@ -27,35 +37,112 @@ import javax.validation.Valid;
 @RequestMapping("/api")
 public class UserJWTController {
 
+    static final String AUTHENTICATION_METER_NAME = "security.authentication";
+
     private final TokenProvider tokenProvider;
 
     private final ReactiveAuthenticationManager authenticationManager;
 
     private final AuditEventService auditEventService;
 
-    public UserJWTController(TokenProvider tokenProvider, ReactiveAuthenticationManager authenticationManager, AuditEventService auditEventService) {
+    private final TokenRevocationService tokenRevocationService;
+
+    private final RefreshTokenService refreshTokenService;
+
+    private final MeterRegistry meterRegistry;
+
+    private final LoginThrottle loginThrottle;
+
+    public UserJWTController(TokenProvider tokenProvider, ReactiveAuthenticationManager authenticationManager, AuditEventService auditEventService,
+                             TokenRevocationService tokenRevocationService, RefreshTokenService refreshTokenService, MeterRegistry meterRegistry,
+                             LoginThrottle loginThrottle) {
         this.tokenProvider = tokenProvider;
         this.authenticationManager = authenticationManager;
         this.auditEventService = auditEventService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.refreshTokenService = refreshTokenService;
+        this.meterRegistry = meterRegistry;
+        this.loginThrottle = loginThrottle;
     }
 
+    /**
+     * {@code POST  /authenticate} : authenticate with a login and a password.
+     *
+     * @param loginVM the login and password.
+     * @param request the request, whose remote address is throttled.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the tokens in body,
+     * or with status {@code 401 (Unauthorized)} if the credentials are invalid,
+     * or with status {@code 429 (Too Many Requests)} if the client or the login made too many attempts.
+     */
     @PostMapping("/authenticate")
-    public Mono<ResponseEntity<JWTToken>> authorize(@Valid @RequestBody Mono<LoginVM> loginVM) {
+    public Mono<ResponseEntity<JWTToken>> authorize(@Valid @RequestBody Mono<LoginVM> loginVM, ServerHttpRequest request) {
         return loginVM
-            .flatMap(login -> authenticationManager
-                .authenticate(new UsernamePasswordAuthenticationToken(login.getUsername(), login.getPassword()))
-                .onErrorResume(throwable -> onAuthenticationError(login, throwable))
-                .flatMap(auth -> onAuthenticationSuccess(login, auth))
-                .flatMap(auth -> Mono.fromCallable(() -> tokenProvider.createToken(auth, Boolean.TRUE.equals(login.isRememberMe()))))
-            )
-            .map(jwt -> {
-                HttpHeaders httpHeaders = new HttpHeaders();
-                httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
-                return new ResponseEntity<>(new JWTToken(jwt), httpHeaders, HttpStatus.OK);
-            });
+            .flatMap(login -> {
+                loginThrottle.acquire(loginThrottle.clientIp(request), login.getUsername());
+                return authenticationManager
+                    .authenticate(new UsernamePasswordAuthenticationToken(login.getUsername(), login.getPassword()))
+                    .onErrorResume(throwable -> onAuthenticationError(login, throwable))
+                    .flatMap(auth -> onAuthenticationSuccess(login, auth))
+                    .flatMap(auth -> createTokens(auth, Boolean.TRUE.equals(login.isRememberMe())));
+            })
+            .doOnEach(signal -> countAuthentication("password", signal.isOnNext(), signal.isOnError()))
+            .map(this::toResponse);
+    }
+
+    /**
+     * {@code POST  /authenticate/refresh} : exchange a refresh token for a new JWT and a new refresh token,
+     * without checking the password again.
+     *
+     * @param refreshTokenVM the refresh token returned with the previous JWT.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the tokens in body,
+     * or with status {@code 401 (Unauthorized)} if the refresh token is invalid, expired or already used.
+     */
+    @PostMapping("/authenticate/refresh")
+    public Mono<ResponseEntity<JWTToken>> refresh(@Valid @RequestBody Mono<RefreshTokenVM> refreshTokenVM) {
+        return refreshTokenVM
+            .flatMap(vm -> refreshTokenService.useRefreshToken(vm.getRefreshToken()))
+            .flatMap(refreshToken -> refreshTokenService.getAuthentication(refreshToken)
+                .flatMap(auth -> createTokens(auth, refreshToken.isRememberMe())))
+            .doOnEach(signal -> countAuthentication("refresh_token", signal.isOnNext(), signal.isOnError()))
+            .map(this::toResponse);
+    }
+
+    /**
+     * {@code POST  /logout} : revoke the token of the current request, and the refresh token if one is given.
+     *
+     * @param refreshTokenVM the refresh token returned with the current JWT, if any.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<Void>> logout(@RequestBody(required = false) RefreshTokenVM refreshTokenVM) {
+        Mono<Void> deleteRefreshToken = refreshTokenVM == null || refreshTokenVM.getRefreshToken() == null ? Mono.empty() :
+            refreshTokenService.deleteRefreshToken(refreshTokenVM.getRefreshToken());
+        return ReactiveSecurityContextHolder.getContext()
+            .map(SecurityContext::getAuthentication)
+            .flatMap(tokenRevocationService::revokeToken)
+            .then(deleteRefreshToken)
+            .thenReturn(ResponseEntity.noContent().build());
+    }
+
+    private Mono<JWTToken> createTokens(Authentication auth, boolean rememberMe) {
+        return Mono.fromCallable(() -> tokenProvider.createToken(auth, rememberMe))
+            .zipWith(refreshTokenService.createRefreshToken(auth.getName(), rememberMe), JWTToken::new);
+    }
+
+    private ResponseEntity<JWTToken> toResponse(JWTToken jwtToken) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwtToken.getIdToken());
+        return new ResponseEntity<>(jwtToken, httpHeaders, HttpStatus.OK);
+    }
+
+    private void countAuthentication(String method, boolean success, boolean failure) {
+        if (success || failure) {
+            meterRegistry.counter(AUTHENTICATION_METER_NAME, "method", method, "result", success ? "success" : "failure").increment();
+        }
     }
 
     private Mono<? extends Authentication> onAuthenticationSuccess(LoginVM login, Authentication auth) {
+        loginThrottle.onSuccess(login.getUsername());
         return Mono.just(login)
             .map(LoginVM::getUsername)
             .filter(username -> !Constants.ANONYMOUS_USER.equals(username))
@@ -64,13 +151,24 @@ public class UserJWTController {
     }
 
     private Mono<? extends Authentication> onAuthenticationError(LoginVM login, Throwable throwable) {
+        if (throwable instanceof RejectedExecutionException) {
+            // The password was not checked, so this is not an authentication failure
+            return Mono.error(throwable);
+        }
         return Mono.just(login)
             .map(LoginVM::getUsername)
             .filter(username -> !Constants.ANONYMOUS_USER.equals(username))
-            .flatMap(username -> auditEventService.saveAuthenticationError(username, throwable))
+            .flatMap(username -> auditEventService.saveAuthenticationError(username, throwable)
+                .then(throwable instanceof AuthenticationException ? lockOutOnFailure(username) : Mono.empty()))
             .then(Mono.error(throwable));
     }
 
+    private Mono<Void> lockOutOnFailure(String username) {
+        return Mono.justOrEmpty(loginThrottle.onFailure(username))
+            .flatMap(lockedUntil -> auditEventService.saveAuthenticationLockout(username, lockedUntil))
+            .then();
+    }
+
     /**
      * Object to return as body in JWT Authentication.
      */
@@ -78,8 +176,11 @@ public class UserJWTController {
 
         private String idToken;
 
-        JWTToken(String idToken) {
+        private String refreshToken;
+
+        JWTToken(String idToken, String refreshToken) {
             this.idToken = idToken;
+            this.refreshToken = refreshToken;
         }
 
         @JsonProperty("id_token")
@@ -90,5 +191,14 @@ public class UserJWTController {
         void setIdToken(String idToken) {
             this.idToken = idToken;
         }
+
+        @JsonProperty("refresh_token")
+        String getRefreshToken() {
+            return refreshToken;
+        }
+
+        void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
     }
 }
@@ -2,14 +2,15 @@ package com.ft.web.rest;
 
 import com.ft.config.Constants;
 import com.ft.domain.User;
-import com.ft.repository.UserRepository;
 import com.ft.security.AuthoritiesConstants;
 import com.ft.service.MailService;
+import com.ft.service.TokenRevocationService;
 import com.ft.service.UserService;
 import com.ft.service.dto.UserDTO;
 import com.ft.web.rest.errors.BadRequestAlertException;
 import com.ft.web.rest.errors.EmailAlreadyUsedException;
 import com.ft.web.rest.errors.LoginAlreadyUsedException;
+import com.ft.web.rest.util.CursorPaginationUtil;
 
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
@@ -34,6 +35,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * REST controller for managing users.
@@ -70,14 +72,14 @@ public class UserResource {
 
     private final UserService userService;
 
-    private final UserRepository userRepository;
-
     private final MailService mailService;
 
-    public UserResource(UserService userService, UserRepository userRepository, MailService mailService) {
+    private final TokenRevocationService tokenRevocationService;
+
+    public UserResource(UserService userService, MailService mailService, TokenRevocationService tokenRevocationService) {
         this.userService = userService;
-        this.userRepository = userRepository;
         this.mailService = mailService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     /**
@@ -98,23 +100,9 @@ public class UserResource {
 
         if (userDTO.getId() != null) {
             throw new BadRequestAlertException("A new user cannot already have an ID", "userManagement", "idexists");
-            // Lowercase the user login before comparing with database
         }
-        return userRepository.findOneByLogin(userDTO.getLogin().toLowerCase())
-            .hasElement()
-            .flatMap(loginExists -> {
-                if (Boolean.TRUE.equals(loginExists)) {
-                    return Mono.error(new LoginAlreadyUsedException());
-                }
-                return userRepository.findOneByEmailIgnoreCase(userDTO.getEmail());
-            })
-            .hasElement()
-            .flatMap(emailExists -> {
-                if (Boolean.TRUE.equals(emailExists)) {
-                    return Mono.error(new EmailAlreadyUsedException());
-                }
-                return userService.createUser(userDTO);
-            })
+        // The unique indexes on the login and email reject a user already in use
+        return userService.createUser(userDTO)
             .doOnSuccess(mailService::sendCreationEmail)
             .map(user -> {
                 try {
@@ -139,23 +127,7 @@ public class UserResource {
     @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
     public Mono<ResponseEntity<UserDTO>> updateUser(@Valid @RequestBody UserDTO userDTO) {
         log.debug("REST request to update User : {}", userDTO);
-        return userRepository.findOneByEmailIgnoreCase(userDTO.getEmail())
-            .filter(user -> !user.getId().equals(userDTO.getId()))
-            .hasElement()
-            .flatMap(emailExists -> {
-                if (Boolean.TRUE.equals(emailExists)) {
-                    return Mono.error(new EmailAlreadyUsedException());
-                }
-                return userRepository.findOneByLogin(userDTO.getLogin().toLowerCase());
-            })
-            .filter(user -> !user.getId().equals(userDTO.getId()))
-            .hasElement()
-            .flatMap(loginExists -> {
-                if (Boolean.TRUE.equals(loginExists)) {
-                    return Mono.error(new LoginAlreadyUsedException());
-                }
-                return userService.updateUser(userDTO);
-            })
+        return userService.updateUser(userDTO)
             .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
             .map(user -> ResponseEntity.ok()
                 .headers(HeaderUtil.createAlert(applicationName, "userManagement.updated", userDTO.getLogin()))
@@ -178,6 +150,35 @@ public class UserResource {
             .map(headers -> ResponseEntity.ok().headers(headers).body(userService.getAllManagedUsers(pageable)));
     }
 
+    /**
+     * {@code GET /users?cursor=} : get a page of users, by login, after a cursor.
+     * <p>
+     * The first page is read with an empty cursor, and each page links to the next one in the {@code Link} header.
+     *
+     * @param cursor the cursor of the page, empty for the first page.
+     * @param count whether to send the total count, cached for a few seconds, in the {@code X-Total-Count} header.
+     * @param request a {@link ServerHttpRequest} request.
+     * @param pageable the size of the page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the users,
+     * or with status {@code 400 (Bad Request)} if the cursor is invalid.
+     */
+    @GetMapping(value = "/users", params = CursorPaginationUtil.CURSOR_PARAMETER)
+    public Mono<ResponseEntity<List<UserDTO>>> getAllUsersAfterCursor(
+        @RequestParam(value = CursorPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestParam(value = "count", defaultValue = "false") boolean count,
+        ServerHttpRequest request,
+        Pageable pageable) {
+
+        List<String> after = CursorPaginationUtil.decodeCursor(cursor, "userManagement", 2);
+        Mono<Optional<Long>> total = count ? userService.countManagedUsersCached().map(Optional::of) : Mono.just(Optional.empty());
+        return userService.getAllManagedUsersAfter(after.isEmpty() ? null : after.get(0), after.isEmpty() ? null : after.get(1), pageable.getPageSize())
+            .zipWith(total)
+            .map(pageAndTotal -> ResponseEntity.ok()
+                .headers(CursorPaginationUtil.generateCursorHttpHeaders(UriComponentsBuilder.fromHttpRequest(request),
+                    pageAndTotal.getT1(), pageAndTotal.getT2().orElse(null)))
+                .body(pageAndTotal.getT1().getContent()));
+    }
+
     /**
      * Gets a list of all roles.
      * @return a string list of all roles.
@@ -216,4 +217,18 @@ public class UserResource {
         return userService.deleteUser(login)
             .map(it -> ResponseEntity.noContent().headers(HeaderUtil.createAlert( applicationName, "userManagement.deleted", login)).build());
     }
+
+    /**
+     * {@code DELETE /users/:login/tokens} : revoke every token issued to the "login" User.
+     *
+     * @param login the login of the user whose tokens are revoked.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @DeleteMapping("/users/{login:" + Constants.LOGIN_REGEX + "}/tokens")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public Mono<ResponseEntity<Void>> revokeUserTokens(@PathVariable String login) {
+        log.debug("REST request to revoke the tokens of User: {}", login);
+        return tokenRevocationService.revokeUserTokens(login)
+            .thenReturn(ResponseEntity.noContent().build());
+    }
 }
@@ -1,9 +1,11 @@
 package com.ft.web.rest.errors;
 
+import com.ft.security.LoginThrottledException;
 import io.github.jhipster.web.util.HeaderUtil;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -22,6 +24,7 @@ import reactor.core.publisher.Mono;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -121,4 +124,24 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
             .build();
         return create(ex, problem, request);
     }
+
+    @ExceptionHandler
+    public Mono<ResponseEntity<Problem>> handleRejectedExecution(RejectedExecutionException ex, ServerWebExchange request) {
+        Problem problem = Problem.builder()
+            .withStatus(Status.SERVICE_UNAVAILABLE)
+            .with(MESSAGE_KEY, ErrorConstants.ERR_SERVICE_UNAVAILABLE)
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public Mono<ResponseEntity<Problem>> handleLoginThrottled(LoginThrottledException ex, ServerWebExchange request) {
+        Problem problem = Problem.builder()
+            .withStatus(Status.TOO_MANY_REQUESTS)
+            .with(MESSAGE_KEY, ErrorConstants.ERR_TOO_MANY_REQUESTS)
+            .build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000)));
+        return create(ex, problem, request, headers);
+    }
 }
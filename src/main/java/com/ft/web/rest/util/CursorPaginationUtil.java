@@ -0,0 +1,79 @@
+package com.ft.web.rest.util;
+
+import com.ft.service.dto.CursorPage;
+import com.ft.web.rest.errors.BadRequestAlertException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Utility class for cursor-based pagination.
+ * <p>
+ * A cursor is an opaque token holding the sort keys of the last result of a page. The next page is linked from the
+ * {@code Link} header, and the total count is only sent when asked for, in the same {@code X-Total-Count} header as
+ * page-based pagination.
+ */
+public final class CursorPaginationUtil {
+
+    public static final String CURSOR_PARAMETER = "cursor";
+
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    private static final String KEY_SEPARATOR = "\n";
+
+    private CursorPaginationUtil() {
+    }
+
+    /**
+     * Decode a cursor into sort keys.
+     *
+     * @param cursor the cursor, empty for the first page.
+     * @param entityName the name of the paginated entity, for the error.
+     * @param keyCount the number of sort keys.
+     * @return the sort keys, or an empty list for the first page.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the cursor is invalid.
+     */
+    public static List<String> decodeCursor(String cursor, String entityName, int keyCount) {
+        if (StringUtils.isEmpty(cursor)) {
+            return Collections.emptyList();
+        }
+        try {
+            String[] keys = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(KEY_SEPARATOR, -1);
+            if (keys.length == keyCount) {
+                return Arrays.asList(keys);
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+        throw new BadRequestAlertException("Invalid cursor", entityName, "invalidcursor");
+    }
+
+    /**
+     * Generate the pagination headers of a page read after a cursor.
+     *
+     * @param uriBuilder the builder of the current request URI.
+     * @param page the page.
+     * @param total the total count of results, or {@code null} to leave it out.
+     * @return the {@link HttpHeaders}.
+     */
+    public static HttpHeaders generateCursorHttpHeaders(UriComponentsBuilder uriBuilder, CursorPage<?> page, Long total) {
+        HttpHeaders headers = new HttpHeaders();
+        if (total != null) {
+            headers.add(TOTAL_COUNT_HEADER, Long.toString(total));
+        }
+        if (page.hasNext()) {
+            String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.join(KEY_SEPARATOR, page.getNextKeys()).getBytes(StandardCharsets.UTF_8));
+            String next = uriBuilder.replaceQueryParam(CURSOR_PARAMETER, cursor).replaceQueryParam("page").toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+}
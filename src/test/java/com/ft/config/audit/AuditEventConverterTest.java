@@ -0,0 +1,64 @@
+package com.ft.config.audit;
+
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.PersistentAuditEventBucket;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.actuate.security.AuthenticationAuditListener.AUTHENTICATION_FAILURE;
+
+public class AuditEventConverterTest {
+
+    private final AuditEventConverter auditEventConverter = new AuditEventConverter();
+
+    @Test
+    public void testExpandBucket() {
+        Instant date = Instant.parse("2020-05-01T10:15:30.123Z");
+        Instant bucketDate = PersistentAuditEventBucket.bucketDateOf(date);
+        PersistentAuditEventBucket bucket = new PersistentAuditEventBucket();
+        bucket.setId("bucket");
+        bucket.setPrincipal("user");
+        bucket.setBucketDate(bucketDate);
+        bucket.setEvents(Arrays.asList(
+            auditEventConverter.convertToBucketEvent(createEvent(date, AUTHENTICATION_FAILURE), bucketDate),
+            auditEventConverter.convertToBucketEvent(createEvent(date.plusSeconds(60), "custom-type"), bucketDate)));
+
+        List<PersistentAuditEvent> events = auditEventConverter.convertToPersistentAuditEvents(bucket);
+
+        assertThat(bucketDate).isEqualTo(Instant.parse("2020-05-01T10:00:00Z"));
+        assertThat(events).extracting(PersistentAuditEvent::getId).containsExactly("bucket-0", "bucket-1");
+        assertThat(events).extracting(PersistentAuditEvent::getPrincipal).containsOnly("user");
+        assertThat(events).extracting(PersistentAuditEvent::getAuditEventDate).containsExactly(date, date.plusSeconds(60));
+        assertThat(events).extracting(PersistentAuditEvent::getAuditEventType).containsExactly(AUTHENTICATION_FAILURE, "custom-type");
+        assertThat(events.get(0).getData()).containsEntry("message", "test");
+    }
+
+    @Test
+    public void testEncodeEventTypes() {
+        PersistentAuditEventBucket.Event known = auditEventConverter.convertToBucketEvent(
+            createEvent(Instant.now(), AUTHENTICATION_FAILURE), PersistentAuditEventBucket.bucketDateOf(Instant.now()));
+        PersistentAuditEventBucket.Event unknown = auditEventConverter.convertToBucketEvent(
+            createEvent(Instant.now(), "custom-type"), PersistentAuditEventBucket.bucketDateOf(Instant.now()));
+
+        assertThat(known.getTypeCode()).isNotNull();
+        assertThat(known.getTypeName()).isNull();
+        assertThat(auditEventConverter.decodeEventType(known.getTypeCode())).isEqualTo(AUTHENTICATION_FAILURE);
+        assertThat(unknown.getTypeCode()).isNull();
+        assertThat(unknown.getTypeName()).isEqualTo("custom-type");
+    }
+
+    private PersistentAuditEvent createEvent(Instant date, String type) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal("user");
+        event.setAuditEventDate(date);
+        event.setAuditEventType(type);
+        event.setData(Collections.singletonMap("message", "test"));
+        return event;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ft.config.dbmigrations;
+
+import com.ft.ApiGatewayApp;
+import com.ft.domain.User;
+import com.ft.repository.UserRepository;
+import com.ft.security.KeyDigests;
+
+import io.github.jhipster.security.RandomUtil;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link UserKeyMigration}, checking that user keys are looked up with their indexes.
+ */
+@SpringBootTest(classes = ApiGatewayApp.class)
+public class UserKeyMigrationIT {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        userRepository.deleteAll().block();
+    }
+
+    @Test
+    public void assertThatActivationKeyLookupUsesIndex() {
+        String activationKey = RandomUtil.generateActivationKey();
+        User user = newUser("activation-key-index");
+        user.setActivationKey(KeyDigests.digest(activationKey));
+        userRepository.save(user).block();
+        userRepository.save(newUser("activation-key-index-2")).block();
+
+        assertThat(userRepository.findOneByActivationKey(KeyDigests.digest(activationKey)).block().getLogin())
+            .isEqualTo("activation-key-index");
+        assertThat(indexScanned("activation_key", KeyDigests.digest(activationKey))).isEqualTo(UserKeyMigration.ACTIVATION_KEY_INDEX);
+    }
+
+    @Test
+    public void assertThatResetKeyLookupUsesIndex() {
+        String resetKey = RandomUtil.generateResetKey();
+        User user = newUser("reset-key-index");
+        user.setResetKey(KeyDigests.digest(resetKey));
+        userRepository.save(user).block();
+        userRepository.save(newUser("reset-key-index-2")).block();
+
+        assertThat(userRepository.findOneByResetKey(KeyDigests.digest(resetKey)).block().getLogin())
+            .isEqualTo("reset-key-index");
+        assertThat(indexScanned("reset_key", KeyDigests.digest(resetKey))).isEqualTo(UserKeyMigration.RESET_KEY_INDEX);
+    }
+
+    @Test
+    public void assertThatKeyIndexesAreSparseAndUnique() {
+        List<Document> indexes = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class)).listIndexes().into(new ArrayList<>());
+        assertThat(indexes)
+            .filteredOn(index -> UserKeyMigration.ACTIVATION_KEY_INDEX.equals(index.get("name")) || UserKeyMigration.RESET_KEY_INDEX.equals(index.get("name")))
+            .hasSize(2)
+            .allSatisfy(index -> {
+                assertThat(index.getBoolean("sparse")).isTrue();
+                assertThat(index.getBoolean("unique")).isTrue();
+            });
+    }
+
+    private User newUser(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setEmail(login + "@example.com");
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(false);
+        return user;
+    }
+
+    /**
+     * Explain the lookup of a key, and get the name of the index scanned by the winning plan.
+     */
+    private String indexScanned(String field, String value) {
+        Document explain = mongoTemplate.executeCommand(new Document("explain",
+            new Document("find", mongoTemplate.getCollectionName(User.class)).append("filter", new Document(field, value)))
+            .append("verbosity", "queryPlanner"));
+        Document stage = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        while (stage != null && !"IXSCAN".equals(stage.getString("stage"))) {
+            assertThat(stage.getString("stage")).isNotEqualTo("COLLSCAN");
+            stage = stage.get("inputStage", Document.class);
+        }
+        assertThat(stage).as("index scan in the winning plan of %s", explain.toJson()).isNotNull();
+        return stage.getString("indexName");
+    }
+}
@@ -0,0 +1,384 @@
+package com.ft.repository;
+
+import com.ft.ApiGatewayApp;
+import com.ft.domain.Authority;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.User;
+import com.ft.security.AuthoritiesConstants;
+import com.ft.security.KeyDigests;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Integration tests explaining the queries of every repository method, so that a new query which scans a collection
+ * fails the build.
+ * <p>
+ * Each method is called on seeded collections while the commands sent to MongoDB are captured, and each captured
+ * command is then explained. A query fails when its winning plan scans the collection although it has a filter, or
+ * when it examines far more keys or documents than the method returns.
+ */
+@SpringBootTest(classes = {ApiGatewayApp.class, RepositoryQueryPlanIT.CommandCaptureConfiguration.class})
+public class RepositoryQueryPlanIT {
+
+    private static final int USER_COUNT = 500;
+
+    private static final int AUDIT_EVENT_COUNT = 500;
+
+    private static final int MAX_EXAMINED_PER_RETURNED = 10;
+
+    private static final int MAX_EXAMINED_SLACK = 20;
+
+    private static final Set<String> EXPLAINED_COMMANDS = new HashSet<>(Arrays.asList("find", "count", "aggregate", "delete"));
+
+    /**
+     * Queries known to scan, with the reason they are accepted: they are still run, but not checked.
+     */
+    private static final Map<String, String> ACCEPTED_SCANS = new HashMap<>();
+
+    static {
+        ACCEPTED_SCANS.put("PersistenceAuditEventRepository.findByPrincipal",
+            "only used by tests, an index on the principal would slow down writing audit events");
+    }
+
+    private final Logger log = LoggerFactory.getLogger(RepositoryQueryPlanIT.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private CommandCapture commandCapture;
+
+    private Instant now;
+
+    private List<User> users;
+
+    private List<PersistentAuditEvent> auditEvents;
+
+    @BeforeEach
+    public void init() {
+        now = Instant.now();
+        userRepository.deleteAll().block();
+        persistenceAuditEventRepository.deleteAll().block();
+
+        List<User> newUsers = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            User user = new User();
+            user.setLogin("query-plan-user-" + i);
+            user.setEmail("query-plan-user-" + i + "@example.com");
+            user.setPassword(RandomStringUtils.random(60));
+            user.setActivated(i % 10 != 0);
+            if (!user.getActivated()) {
+                user.setActivationKey(KeyDigests.digest("activation-" + i));
+            }
+            if (i % 25 == 1) {
+                user.setResetKey(KeyDigests.digest("reset-" + i));
+                user.setResetDate(now);
+            }
+            newUsers.add(user);
+        }
+        users = userRepository.saveAll(newUsers).collectList().block();
+        mongoTemplate.updateMulti(Query.query(Criteria.where("login").in("query-plan-user-0", "query-plan-user-100", "query-plan-user-200")),
+            Update.update("created_date", now.minus(10, ChronoUnit.DAYS)), User.class).block();
+
+        List<PersistentAuditEvent> newAuditEvents = new ArrayList<>();
+        for (int i = 0; i < AUDIT_EVENT_COUNT; i++) {
+            PersistentAuditEvent auditEvent = new PersistentAuditEvent();
+            auditEvent.setPrincipal("query-plan-user-" + (i % 50));
+            auditEvent.setAuditEventType("AUTHENTICATION_SUCCESS");
+            auditEvent.setAuditEventDate(now.minus(i, ChronoUnit.HOURS));
+            newAuditEvents.add(auditEvent);
+        }
+        auditEvents = persistenceAuditEventRepository.saveAll(newAuditEvents).collectList().block();
+    }
+
+    @Test
+    public void assertThatUserRepositoryQueriesAreIndexed() {
+        Map<String, Supplier<Object[]>> arguments = new HashMap<>();
+        arguments.put("findById", () -> args(users.get(7).getId()));
+        arguments.put("findOneByActivationKey", () -> args(KeyDigests.digest("activation-10")));
+        arguments.put("findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore", () -> args(now.minus(3, ChronoUnit.DAYS)));
+        arguments.put("findIdsOfNotActivatedUsersCreatedBefore", () -> args(now.minus(3, ChronoUnit.DAYS), PageRequest.of(0, 100)));
+        arguments.put("deleteByIdIn", () -> args(ids(users.subList(1, 4), User::getId)));
+        arguments.put("findOneByResetKey", () -> args(KeyDigests.digest("reset-26")));
+        arguments.put("findOneByEmail", () -> args("query-plan-user-7@example.com"));
+        arguments.put("findOneByLogin", () -> args("query-plan-user-7"));
+        arguments.put("findAllByLoginOrEmail", () -> args("query-plan-user-7", "query-plan-user-8@example.com"));
+        arguments.put("findCredentialsByLoginOrEmail", () -> args("query-plan-user-7"));
+        arguments.put("findAllByLoginNot", () -> args(PageRequest.of(0, 20, Sort.by("login", "id")), "anonymoususer"));
+        arguments.put("countAllByLoginNot", () -> args("anonymoususer"));
+        assertQueriesAreIndexed(UserRepository.class, userRepository, User.class, arguments);
+    }
+
+    @Test
+    public void assertThatAuthorityRepositoryQueriesAreIndexed() {
+        Map<String, Supplier<Object[]>> arguments = new HashMap<>();
+        arguments.put("findById", () -> args(AuthoritiesConstants.USER));
+        assertQueriesAreIndexed(AuthorityRepository.class, authorityRepository, Authority.class, arguments);
+    }
+
+    @Test
+    public void assertThatPersistenceAuditEventRepositoryQueriesAreIndexed() {
+        Sort newestFirst = Sort.by(Sort.Direction.DESC, "auditEventDate", "id");
+        Map<String, Supplier<Object[]>> arguments = new HashMap<>();
+        arguments.put("findById", () -> args(auditEvents.get(7).getId()));
+        arguments.put("findByPrincipal", () -> args("query-plan-user-7"));
+        arguments.put("findAllByAuditEventDateBetween", () -> args(now.minus(100, ChronoUnit.HOURS), now, PageRequest.of(0, 20, newestFirst)));
+        arguments.put("findByAuditEventDateBefore", () -> args(now.minus(490, ChronoUnit.HOURS)));
+        arguments.put("findIdsByAuditEventDateBefore", () -> args(now.minus(400, ChronoUnit.HOURS), PageRequest.of(0, 50)));
+        arguments.put("deleteByIdIn", () -> args(ids(auditEvents.subList(1, 4), PersistentAuditEvent::getId)));
+        arguments.put("findAllBy", () -> args(PageRequest.of(0, 20, newestFirst)));
+        arguments.put("countByAuditEventDateBetween", () -> args(now.minus(100, ChronoUnit.HOURS), now));
+        assertQueriesAreIndexed(PersistenceAuditEventRepository.class, persistenceAuditEventRepository, PersistentAuditEvent.class, arguments);
+    }
+
+    /**
+     * Call the methods declared by a repository, and {@code findById}, and check the plans of their queries.
+     *
+     * @param arguments the arguments of each method, by name: a method without arguments fails the test.
+     */
+    private void assertQueriesAreIndexed(Class<?> repositoryInterface, Object repository, Class<?> entityClass,
+                                         Map<String, Supplier<Object[]>> arguments) {
+        List<Method> methods = new ArrayList<>(Arrays.asList(repositoryInterface.getDeclaredMethods()));
+        try {
+            methods.add(ReactiveCrudRepository.class.getMethod("findById", Object.class));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        String collectionName = mongoTemplate.getCollectionName(entityClass);
+        List<String> failures = new ArrayList<>();
+        for (Method method : methods) {
+            String name = repositoryInterface.getSimpleName() + "." + method.getName();
+            Supplier<Object[]> methodArguments = arguments.get(method.getName());
+            if (methodArguments == null) {
+                failures.add(name + " has no arguments in " + RepositoryQueryPlanIT.class.getSimpleName() + ", its queries are not explained");
+                continue;
+            }
+            commandCapture.start(collectionName);
+            long returned;
+            try {
+                returned = returned(invoke(repository, method, methodArguments.get()));
+            } finally {
+                commandCapture.stop();
+            }
+            List<BsonDocument> commands = commandCapture.getCommands();
+            assertThat(commands).as("queries of %s", name).isNotEmpty();
+            for (BsonDocument command : commands) {
+                String failure = check(command, returned);
+                if (failure == null) {
+                    continue;
+                }
+                if (ACCEPTED_SCANS.containsKey(name)) {
+                    log.info("{} {}, accepted since {}", name, failure, ACCEPTED_SCANS.get(name));
+                } else {
+                    failures.add(name + " " + failure + ": " + command.toJson());
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            fail("Unindexed repository queries:\n" + String.join("\n", failures));
+        }
+    }
+
+    private List<Object> invoke(Object repository, Method method, Object[] arguments) {
+        try {
+            return Flux.<Object>from((Publisher<?>) method.invoke(repository, arguments)).collectList().block();
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not call " + method, e);
+        }
+    }
+
+    /**
+     * Get the number of results of a method: the value of a count or delete, or the number of returned entities.
+     */
+    private long returned(List<Object> results) {
+        if (results.size() == 1 && results.get(0) instanceof Number) {
+            return ((Number) results.get(0)).longValue();
+        }
+        return results.size();
+    }
+
+    /**
+     * Explain a command and check its plan.
+     *
+     * @return the reason the command fails, or {@code null} if it is indexed.
+     */
+    private String check(BsonDocument command, long returned) {
+        Document explain = mongoTemplate.executeCommand(new Document("explain", command).append("verbosity", "executionStats")).block();
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        Document executionStats = explain.get("executionStats", Document.class);
+        if (queryPlanner == null) {
+            // Aggregations not pushed down to the query layer report the plan of their first stage
+            Document cursor = ((List<?>) explain.get("stages")).stream()
+                .map(Document.class::cast)
+                .map(stage -> stage.get("$cursor", Document.class))
+                .filter(stage -> stage != null)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No query plan in " + explain.toJson()));
+            queryPlanner = cursor.get("queryPlanner", Document.class);
+            executionStats = cursor.get("executionStats", Document.class);
+        }
+        List<String> stages = new ArrayList<>();
+        collectStages(queryPlanner.get("winningPlan", Document.class), stages);
+        if (stages.contains("COLLSCAN") && hasFilter(command)) {
+            return "scans the collection";
+        }
+        long examined = Math.max(((Number) executionStats.get("totalKeysExamined")).longValue(),
+            ((Number) executionStats.get("totalDocsExamined")).longValue());
+        if (examined > returned * MAX_EXAMINED_PER_RETURNED + MAX_EXAMINED_SLACK) {
+            return "examines " + examined + " keys or documents for " + returned + " results";
+        }
+        return null;
+    }
+
+    private void collectStages(Document stage, List<String> stages) {
+        if (stage == null) {
+            return;
+        }
+        stages.add(stage.getString("stage"));
+        collectStages(stage.get("inputStage", Document.class), stages);
+        List<?> inputStages = (List<?>) stage.get("inputStages");
+        if (inputStages != null) {
+            inputStages.forEach(inputStage -> collectStages((Document) inputStage, stages));
+        }
+    }
+
+    private boolean hasFilter(BsonDocument command) {
+        BsonValue filter;
+        if (command.containsKey("filter")) {
+            filter = command.get("filter");
+        } else if (command.containsKey("query")) {
+            filter = command.get("query");
+        } else if (command.containsKey("deletes")) {
+            filter = command.getArray("deletes").get(0).asDocument().get("q");
+        } else if (command.containsKey("pipeline") && !command.getArray("pipeline").isEmpty()) {
+            filter = command.getArray("pipeline").get(0).asDocument().get("$match");
+        } else {
+            filter = null;
+        }
+        return filter != null && filter.isDocument() && !filter.asDocument().isEmpty();
+    }
+
+    private static Object[] args(Object... arguments) {
+        return arguments;
+    }
+
+    private static <T> List<String> ids(List<T> entities, Function<T, String> id) {
+        return entities.stream().map(id).collect(Collectors.toList());
+    }
+
+    @TestConfiguration
+    static class CommandCaptureConfiguration {
+
+        @Bean
+        public CommandCapture commandCapture() {
+            return new CommandCapture();
+        }
+
+        @Bean
+        public MongoClientSettingsBuilderCustomizer commandCaptureCustomizer(CommandCapture commandCapture) {
+            return builder -> builder.addCommandListener(commandCapture);
+        }
+    }
+
+    /**
+     * Listener keeping the queries sent on a collection while a repository method runs.
+     */
+    static class CommandCapture implements CommandListener {
+
+        private final List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+
+        private volatile String collectionName;
+
+        void start(String collectionName) {
+            commands.clear();
+            this.collectionName = collectionName;
+        }
+
+        void stop() {
+            this.collectionName = null;
+        }
+
+        List<BsonDocument> getCommands() {
+            return new ArrayList<>(commands);
+        }
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            String name = event.getCommandName();
+            BsonValue target = event.getCommand().get(name);
+            if (collectionName == null || !EXPLAINED_COMMANDS.contains(name) || target == null || !target.isString()
+                || !collectionName.equals(target.asString().getValue())) {
+                return;
+            }
+            // Keep the command itself, without the session and routing fields added by the driver
+            BsonDocument command = new BsonDocument();
+            event.getCommand().forEach((key, value) -> {
+                if (!key.startsWith("$") && !"lsid".equals(key) && !"txnNumber".equals(key)) {
+                    command.put(key, value);
+                }
+            });
+            commands.add(command.clone());
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+        }
+    }
+}
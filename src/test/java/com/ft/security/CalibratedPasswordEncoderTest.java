@@ -0,0 +1,44 @@
+package com.ft.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CalibratedPasswordEncoderTest {
+
+    @Test
+    public void testCalibrateWithinBounds() {
+        assertThat(CalibratedPasswordEncoder.calibrate(4, 6, 0).getStrength()).isEqualTo(4);
+        assertThat(CalibratedPasswordEncoder.calibrate(4, 6, 60000).getStrength()).isEqualTo(6);
+    }
+
+    @Test
+    public void testEncodeWithStrength() {
+        CalibratedPasswordEncoder passwordEncoder = new CalibratedPasswordEncoder(5);
+
+        String encodedPassword = passwordEncoder.encode("password");
+
+        assertThat(CalibratedPasswordEncoder.strengthOf(encodedPassword)).isEqualTo(5);
+        assertThat(passwordEncoder.matches("password", encodedPassword)).isTrue();
+    }
+
+    @Test
+    public void testUpgradeEncodingWithOtherStrength() {
+        CalibratedPasswordEncoder passwordEncoder = new CalibratedPasswordEncoder(5);
+
+        assertThat(passwordEncoder.upgradeEncoding(BCrypt.hashpw("password", BCrypt.gensalt(4)))).isTrue();
+        assertThat(passwordEncoder.upgradeEncoding(BCrypt.hashpw("password", BCrypt.gensalt(6)))).isTrue();
+        assertThat(passwordEncoder.upgradeEncoding(BCrypt.hashpw("password", BCrypt.gensalt(5)))).isFalse();
+    }
+
+    @Test
+    public void testUpgradeEncodingIgnoresOtherHashes() {
+        CalibratedPasswordEncoder passwordEncoder = new CalibratedPasswordEncoder(5);
+
+        assertThat(passwordEncoder.upgradeEncoding(null)).isFalse();
+        assertThat(passwordEncoder.upgradeEncoding("")).isFalse();
+        assertThat(passwordEncoder.upgradeEncoding("not-a-bcrypt-hash")).isFalse();
+        assertThat(CalibratedPasswordEncoder.strengthOf("not-a-bcrypt-hash")).isEqualTo(-1);
+    }
+}
@@ -3,14 +3,20 @@ package com.ft.security;
 import com.ft.ApiGatewayApp;
 import com.ft.domain.User;
 import com.ft.repository.UserRepository;
+import com.ft.service.UserService;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.util.Locale;
 
@@ -36,9 +42,22 @@ public class DomainUserDetailsServiceIT {
     @Autowired
     private ReactiveUserDetailsService domainUserDetailsService;
 
+    @Autowired
+    private ReactiveAuthenticationManager authenticationManager;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserCredentialsCache userCredentialsCache;
+
+    @Autowired
+    private UserService userService;
+
     @BeforeEach
     public void init() {
         userRepository.deleteAll().block();
+        userCredentialsCache.invalidateAll();
 
         User userOne = new User();
         userOne.setLogin(USER_ONE_LOGIN);
@@ -106,10 +125,66 @@ public class DomainUserDetailsServiceIT {
         assertThat(userDetails.getUsername()).isEqualTo(USER_ONE_LOGIN);
     }
 
+    @Test
+    public void assertThatEmailIsPrioritizedOverLoginOfAnotherUser() {
+        User user = new User();
+        user.setLogin(USER_TWO_EMAIL);
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail("test-user-four@localhost");
+        user.setLangKey("en");
+        userRepository.save(user).block();
+
+        UserDetails userDetails = domainUserDetailsService.findByUsername(USER_TWO_EMAIL).block();
+        assertThat(userDetails).isNotNull();
+        assertThat(userDetails.getUsername()).isEqualTo(USER_TWO_LOGIN);
+    }
+
+    @Test
+    public void assertThatOnlyCredentialsAreRead() {
+        User user = userRepository.findCredentialsByLoginOrEmail(USER_ONE_LOGIN).blockFirst();
+        assertThat(user).isNotNull();
+        assertThat(user.getId()).isNotNull();
+        assertThat(user.getLogin()).isEqualTo(USER_ONE_LOGIN);
+        assertThat(user.getPassword()).isNotNull();
+        assertThat(user.getActivated()).isTrue();
+        assertThat(user.getEmail()).isNull();
+        assertThat(user.getFirstName()).isNull();
+        assertThat(user.getLangKey()).isNull();
+    }
+
     @Test
     public void assertThatUserNotActivatedExceptionIsThrownForNotActivatedUsers() {
         assertThatExceptionOfType(UserNotActivatedException.class).isThrownBy(
             () -> domainUserDetailsService.findByUsername(USER_THREE_LOGIN).block());
     }
 
+    @Test
+    public void assertThatCachedUserIsEvictedOnDelete() {
+        assertThat(domainUserDetailsService.findByUsername(USER_ONE_LOGIN).block()).isNotNull();
+        assertThat(domainUserDetailsService.findByUsername(USER_ONE_EMAIL).block()).isNotNull();
+        assertThat(userCredentialsCache.get(USER_ONE_EMAIL)).isNotNull();
+
+        userService.deleteUser(USER_ONE_LOGIN).block();
+
+        assertThat(userCredentialsCache.get(USER_ONE_LOGIN)).isNull();
+        assertThat(userCredentialsCache.get(USER_ONE_EMAIL)).isNull();
+        assertThatExceptionOfType(UsernameNotFoundException.class).isThrownBy(
+            () -> domainUserDetailsService.findByUsername(USER_ONE_LOGIN).block());
+    }
+
+    @Test
+    public void assertThatPasswordHashIsUpgradedOnLogin() {
+        int strength = ((CalibratedPasswordEncoder) passwordEncoder).getStrength();
+        User user = userRepository.findOneByLogin(USER_ONE_LOGIN).block();
+        user.setPassword(BCrypt.hashpw("password", BCrypt.gensalt(strength == 4 ? 5 : 4)));
+        userRepository.save(user).block();
+
+        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(USER_ONE_LOGIN, "password")).block();
+
+        String upgradedPassword = userRepository.findOneByLogin(USER_ONE_LOGIN).block().getPassword();
+        assertThat(CalibratedPasswordEncoder.strengthOf(upgradedPassword)).isEqualTo(strength);
+        assertThat(passwordEncoder.matches("password", upgradedPassword)).isTrue();
+    }
+
 }
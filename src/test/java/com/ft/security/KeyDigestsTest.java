@@ -0,0 +1,38 @@
+package com.ft.security;
+
+import io.github.jhipster.security.RandomUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link KeyDigests} utility class.
+ */
+public class KeyDigestsTest {
+
+    @Test
+    public void testDigest() {
+        assertThat(KeyDigests.digest("abc")).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    public void testDigestOfGeneratedKey() {
+        String key = RandomUtil.generateActivationKey();
+        String digest = KeyDigests.digest(key);
+        assertThat(digest).hasSize(KeyDigests.DIGEST_LENGTH).matches("[0-9a-f]+").isNotEqualTo(key);
+        assertThat(KeyDigests.digest(key)).isEqualTo(digest);
+    }
+
+    @Test
+    public void testSha256() {
+        assertThat(KeyDigests.sha256("abc".getBytes(StandardCharsets.US_ASCII))).hasSize(32)
+            .startsWith((byte) 0xba, (byte) 0x78);
+    }
+
+    @Test
+    public void testDigestOfNull() {
+        assertThat(KeyDigests.digest(null)).isNull();
+    }
+}
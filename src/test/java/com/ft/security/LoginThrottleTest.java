@@ -0,0 +1,135 @@
+package com.ft.security;
+
+import com.ft.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LoginThrottleTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ApplicationProperties applicationProperties;
+
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Security.LoginThrottling properties = applicationProperties.getSecurity().getLoginThrottling();
+        properties.setIpLimit(3);
+        properties.setLoginLimit(2);
+        properties.setLockoutThreshold(2);
+        properties.setLockoutDurationInSeconds(60);
+        properties.setMaximumLockoutDurationInSeconds(150);
+        loginThrottle = new LoginThrottle(applicationProperties, meterRegistry);
+    }
+
+    @Test
+    public void testThrottleByLogin() {
+        loginThrottle.acquire("10.0.0.1", "user");
+        loginThrottle.acquire("10.0.0.2", "USER");
+
+        assertThatThrownBy(() -> loginThrottle.acquire("10.0.0.3", "user"))
+            .isInstanceOf(LoginThrottledException.class)
+            .satisfies(e -> assertThat(((LoginThrottledException) e).getRetryAfter()).isGreaterThan(Duration.ZERO));
+        assertThat(throttledCount("login")).isEqualTo(1);
+        loginThrottle.acquire("10.0.0.3", "other-user");
+    }
+
+    @Test
+    public void testClientIpOfDirectRequest() {
+        applicationProperties.getSecurity().getLoginThrottling().setTrustedProxies(Arrays.asList("10.0.0.0/8"));
+        loginThrottle = new LoginThrottle(applicationProperties, meterRegistry);
+
+        assertThat(loginThrottle.clientIp(request("198.51.100.7", "203.0.113.9"))).isEqualTo("198.51.100.7");
+    }
+
+    @Test
+    public void testClientIpBehindTrustedProxies() {
+        applicationProperties.getSecurity().getLoginThrottling().setTrustedProxies(Arrays.asList("10.0.0.0/8", "192.168.1.1"));
+        loginThrottle = new LoginThrottle(applicationProperties, meterRegistry);
+
+        assertThat(loginThrottle.clientIp(request("10.0.0.1", "203.0.113.9, 198.51.100.7, 192.168.1.1"))).isEqualTo("198.51.100.7");
+        assertThat(loginThrottle.clientIp(request("10.0.0.1", "10.0.0.2"))).isEqualTo("10.0.0.2");
+        assertThat(loginThrottle.clientIp(request("10.0.0.1", "unknown"))).isEqualTo("unknown");
+        assertThat(loginThrottle.clientIp(request("10.0.0.1", null))).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    public void testClientIpWithoutTrustedProxies() {
+        assertThat(loginThrottle.clientIp(request("10.0.0.1", "198.51.100.7"))).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    public void testThrottleByClientIp() {
+        loginThrottle.acquire("10.0.0.1", "user-1");
+        loginThrottle.acquire("10.0.0.1", "user-2");
+        loginThrottle.acquire("10.0.0.1", "user-3");
+
+        assertThatThrownBy(() -> loginThrottle.acquire("10.0.0.1", "user-4"))
+            .isInstanceOf(LoginThrottledException.class);
+        assertThat(throttledCount("ip")).isEqualTo(1);
+        loginThrottle.acquire("10.0.0.2", "user-4");
+    }
+
+    @Test
+    public void testProgressiveLockout() {
+        assertThat(loginThrottle.onFailure("user")).isNull();
+
+        Instant firstLockout = loginThrottle.onFailure("user");
+        assertThat(firstLockout).isBetween(Instant.now().plusSeconds(55), Instant.now().plusSeconds(60));
+        assertThatThrownBy(() -> loginThrottle.acquire("10.0.0.1", "user"))
+            .isInstanceOf(LoginThrottledException.class);
+        assertThat(throttledCount("lockout")).isEqualTo(1);
+
+        Instant secondLockout = loginThrottle.onFailure("user");
+        assertThat(secondLockout).isBetween(Instant.now().plusSeconds(115), Instant.now().plusSeconds(120));
+        Instant thirdLockout = loginThrottle.onFailure("user");
+        assertThat(thirdLockout).isBetween(Instant.now().plusSeconds(145), Instant.now().plusSeconds(150));
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        loginThrottle.onFailure("user");
+        loginThrottle.onSuccess("user");
+
+        assertThat(loginThrottle.onFailure("user")).isNull();
+        loginThrottle.acquire("10.0.0.1", "user");
+    }
+
+    @Test
+    public void testDisabled() {
+        applicationProperties.getSecurity().getLoginThrottling().setEnabled(false);
+        loginThrottle = new LoginThrottle(applicationProperties, meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            loginThrottle.acquire("10.0.0.1", "user");
+            assertThat(loginThrottle.onFailure("user")).isNull();
+        }
+    }
+
+    private double throttledCount(String reason) {
+        return meterRegistry.get(LoginThrottle.THROTTLED_METER_NAME).tag("reason", reason).counter().count();
+    }
+
+    private MockServerHttpRequest request(String remoteAddress, String forwardedFor) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.post("/api/authenticate")
+            .remoteAddress(new InetSocketAddress(remoteAddress, 443));
+        if (forwardedFor != null) {
+            request.header("X-Forwarded-For", forwardedFor);
+        }
+        return request.build();
+    }
+}
@@ -0,0 +1,75 @@
+package com.ft.security;
+
+import com.ft.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PasswordEncoderSchedulerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PasswordEncoderScheduler passwordEncoderScheduler;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getPasswordEncoder().setThreads(1);
+        applicationProperties.getSecurity().getPasswordEncoder().setQueueCapacity(1);
+        passwordEncoderScheduler = new PasswordEncoderScheduler(applicationProperties, meterRegistry);
+    }
+
+    @AfterEach
+    public void teardown() {
+        release.countDown();
+        passwordEncoderScheduler.destroy();
+    }
+
+    @Test
+    public void testRunOnDedicatedThread() {
+        String threadName = Mono.fromCallable(() -> Thread.currentThread().getName())
+            .subscribeOn(passwordEncoderScheduler.getScheduler())
+            .block();
+
+        assertThat(threadName).startsWith(PasswordEncoderScheduler.NAME + "-");
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        passwordEncoderScheduler.getScheduler().schedule(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        passwordEncoderScheduler.getScheduler().schedule(this::awaitRelease);
+
+        assertThat(meterRegistry.get("executor.queued").tag("name", PasswordEncoderScheduler.NAME).gauge().value()).isEqualTo(1);
+        assertThatThrownBy(() -> Mono.just("password")
+            .publishOn(passwordEncoderScheduler.getScheduler())
+            .block())
+            .isInstanceOf(RejectedExecutionException.class);
+        assertThat(meterRegistry.get("executor.rejected").tag("name", PasswordEncoderScheduler.NAME).counter().count()).isEqualTo(1);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.ft.security;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.Authority;
+import com.ft.domain.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserCredentialsCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private UserCredentialsCache userCredentialsCache;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCredentialsCache = new UserCredentialsCache(new ApplicationProperties(), meterRegistry);
+    }
+
+    @Test
+    public void testCredentialsFromUser() {
+        UserCredentials credentials = new UserCredentials(createUser("1", "user"));
+
+        assertThat(credentials.getLogin()).isEqualTo("user");
+        assertThat(credentials.getPassword()).isEqualTo("hash");
+        assertThat(credentials.isActivated()).isTrue();
+        assertThat(credentials.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly(AuthoritiesConstants.USER);
+    }
+
+    @Test
+    public void testGetCachedCredentials() {
+        UserCredentials credentials = new UserCredentials(createUser("1", "user"));
+
+        assertThat(userCredentialsCache.get("user")).isNull();
+        userCredentialsCache.put("user", credentials, userCredentialsCache.version());
+
+        assertThat(userCredentialsCache.get("user")).isSameAs(credentials);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", UserCredentialsCache.CACHE_NAME).tag("result", "hit")
+            .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", UserCredentialsCache.CACHE_NAME).tag("result", "miss")
+            .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEvictUnderAllUsernames() {
+        UserCredentials credentials = new UserCredentials(createUser("1", "user"));
+        UserCredentials otherCredentials = new UserCredentials(createUser("2", "other"));
+        userCredentialsCache.put("user", credentials, userCredentialsCache.version());
+        userCredentialsCache.put("user@localhost", credentials, userCredentialsCache.version());
+        userCredentialsCache.put("other", otherCredentials, userCredentialsCache.version());
+
+        userCredentialsCache.evict("1");
+
+        assertThat(userCredentialsCache.get("user")).isNull();
+        assertThat(userCredentialsCache.get("user@localhost")).isNull();
+        assertThat(userCredentialsCache.get("other")).isSameAs(otherCredentials);
+    }
+
+    @Test
+    public void testEvictKeepsUsernameCachedForAnotherUser() {
+        UserCredentials credentials = new UserCredentials(createUser("1", "user"));
+        UserCredentials renamedCredentials = new UserCredentials(createUser("2", "user"));
+        userCredentialsCache.put("user", credentials, userCredentialsCache.version());
+        userCredentialsCache.put("user", renamedCredentials, userCredentialsCache.version());
+
+        userCredentialsCache.evict("1");
+
+        assertThat(userCredentialsCache.get("user")).isSameAs(renamedCredentials);
+        userCredentialsCache.evict("2");
+        assertThat(userCredentialsCache.get("user")).isNull();
+    }
+
+    @Test
+    public void testSkipCredentialsLoadedBeforeEviction() {
+        long version = userCredentialsCache.version();
+        UserCredentials staleCredentials = new UserCredentials(createUser("1", "user"));
+
+        userCredentialsCache.evict("1");
+        userCredentialsCache.put("user", staleCredentials, version);
+
+        assertThat(userCredentialsCache.get("user")).isNull();
+    }
+
+    @Test
+    public void testDisabled() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getUserCache().setEnabled(false);
+        userCredentialsCache = new UserCredentialsCache(applicationProperties, meterRegistry);
+
+        userCredentialsCache.put("user", new UserCredentials(createUser("1", "user")), userCredentialsCache.version());
+
+        assertThat(userCredentialsCache.get("user")).isNull();
+    }
+
+    private User createUser(String id, String login) {
+        Authority authority = new Authority();
+        authority.setName(AuthoritiesConstants.USER);
+        User user = new User();
+        user.setId(id);
+        user.setLogin(login);
+        user.setPassword("hash");
+        user.setActivated(true);
+        user.getAuthorities().add(authority);
+        return user;
+    }
+}
@@ -1,15 +1,16 @@
 package com.ft.security.jwt;
 
+import com.ft.config.ApplicationProperties;
 import com.ft.security.AuthoritiesConstants;
 import io.github.jhipster.config.JHipsterProperties;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
 import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.core.context.SecurityContext;
@@ -29,10 +30,10 @@ public class JWTFilterTest {
     @BeforeEach
     public void setup() {
         JHipsterProperties jHipsterProperties = new JHipsterProperties();
-        tokenProvider = new TokenProvider(jHipsterProperties);
-        ReflectionTestUtils.setField(tokenProvider, "key",
-            Keys.hmacShaKeyFor(Decoders.BASE64
-                .decode("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8")));
+        jHipsterProperties.getSecurity().getAuthentication().getJwt()
+            .setBase64Secret("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8");
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), new SimpleMeterRegistry());
+        tokenProvider.init();
 
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", 60000);
         jwtFilter = new JWTFilter(tokenProvider);
@@ -61,6 +62,26 @@ public class JWTFilterTest {
         ).block();
     }
 
+    @Test
+    public void testJWTFilterStoresParsedAuthentication() {
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+            "test-user",
+            "test-password",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER))
+        );
+        String jwt = tokenProvider.createToken(authentication, false);
+        MockServerHttpRequest.BaseBuilder request = MockServerHttpRequest
+            .get("/services/test")
+            .header(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        jwtFilter.filter(exchange, it -> Mono.empty()).block();
+
+        Authentication parsed = exchange.getAttribute(JWTFilter.AUTHENTICATION_ATTRIBUTE);
+        assertThat(parsed).isNotNull();
+        assertThat(parsed.getName()).isEqualTo("test-user");
+        assertThat(parsed.getCredentials()).isEqualTo(jwt);
+    }
+
     @Test
     public void testJWTFilterInvalidToken() {
         String jwt = "wrong_jwt";
@@ -76,6 +97,7 @@ public class JWTFilterTest {
                 .doOnSuccess(auth -> assertThat(auth).isNull())
                 .then()
         ).block();
+        assertThat(exchange.getAttributes()).doesNotContainKey(JWTFilter.AUTHENTICATION_ATTRIBUTE);
     }
 
     @Test
@@ -0,0 +1,141 @@
+package com.ft.security.jwt;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.security.AuthoritiesConstants;
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JWTRelayGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TokenProvider tokenProvider;
+
+    private GatewayFilter relayFilter;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt()
+            .setBase64Secret("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8");
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), meterRegistry);
+        tokenProvider.init();
+        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", 60000);
+        relayFilter = new JWTRelayGatewayFilterFactory(tokenProvider, meterRegistry).apply(new JWTRelayGatewayFilterFactory.Config());
+    }
+
+    @Test
+    public void testRelayValidToken() {
+        String jwt = createToken();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+            .get("/services/test")
+            .header(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt));
+
+        assertThat(relayedAuthorization(exchange)).isEqualTo("Bearer " + jwt);
+        assertThat(relayCount("relayed")).isEqualTo(1);
+    }
+
+    @Test
+    public void testRelayReusesParsedAuthentication() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+            .get("/services/test")
+            .header(JWTFilter.AUTHORIZATION_HEADER, "Bearer not-verified-again"));
+        exchange.getAttributes().put(JWTFilter.AUTHENTICATION_ATTRIBUTE,
+            new UsernamePasswordAuthenticationToken("test-user", "not-verified-again", Collections.emptyList()));
+
+        assertThat(relayedAuthorization(exchange)).isEqualTo("Bearer not-verified-again");
+        assertThat(relayCount("relayed")).isEqualTo(1);
+    }
+
+    @Test
+    public void testSkipRequestWithoutAuthorization() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/services/test"));
+
+        assertThat(relayedAuthorization(exchange)).isNull();
+        assertThat(relayCount("skipped")).isEqualTo(1);
+    }
+
+    @Test
+    public void testSkipRequestWithOtherScheme() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+            .get("/services/test")
+            .header(JWTFilter.AUTHORIZATION_HEADER, "Basic dXNlcjp1c2Vy"));
+
+        assertThat(relayedAuthorization(exchange)).isEqualTo("Basic dXNlcjp1c2Vy");
+        assertThat(relayCount("skipped")).isEqualTo(1);
+    }
+
+    @Test
+    public void testSkipRequestWithEmptyToken() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+            .get("/services/test")
+            .header(JWTFilter.AUTHORIZATION_HEADER, "Bearer "));
+
+        relayedAuthorization(exchange);
+        assertThat(relayCount("skipped")).isEqualTo(1);
+        assertThat(relayCount("rejected")).isZero();
+    }
+
+    @Test
+    public void testRejectInvalidToken() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+            .get("/services/test")
+            .header(JWTFilter.AUTHORIZATION_HEADER, "Bearer wrong_jwt"));
+
+        assertThat(relayedAuthorization(exchange)).isEqualTo("Bearer wrong_jwt");
+        assertThat(relayCount("rejected")).isEqualTo(1);
+        assertThat(relayCount("relayed")).isZero();
+    }
+
+    @Test
+    public void testRelayWithoutVerification() {
+        JWTRelayGatewayFilterFactory.Config config = new JWTRelayGatewayFilterFactory.Config();
+        config.setVerify(false);
+        relayFilter = new JWTRelayGatewayFilterFactory(tokenProvider, meterRegistry).apply(config);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+            .get("/services/test")
+            .header(JWTFilter.AUTHORIZATION_HEADER, "Bearer verified_by_backend"));
+
+        assertThat(relayedAuthorization(exchange)).isEqualTo("Bearer verified_by_backend");
+        assertThat(relayCount("relayed")).isEqualTo(1);
+        assertThat(relayCount("rejected")).isZero();
+    }
+
+    private double relayCount(String result) {
+        return meterRegistry.get(JWTRelayGatewayFilterFactory.RELAY_METER_NAME).tag("result", result).counter().count();
+    }
+
+    private String relayedAuthorization(ServerWebExchange exchange) {
+        AtomicReference<String> authorization = new AtomicReference<>();
+        relayFilter.filter(exchange, relayed -> {
+            authorization.set(relayed.getRequest().getHeaders().getFirst(JWTFilter.AUTHORIZATION_HEADER));
+            return Mono.empty();
+        }).block();
+        return authorization.get();
+    }
+
+    private String createToken() {
+        return tokenProvider.createToken(new UsernamePasswordAuthenticationToken(
+            "test-user",
+            "test-password",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER))
+        ), false);
+    }
+}
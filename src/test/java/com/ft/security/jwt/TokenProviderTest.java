@@ -1,12 +1,21 @@
 package com.ft.security.jwt;
 
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.RevokedToken;
 import com.ft.security.AuthoritiesConstants;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.security.Key;
+import java.time.Instant;
 import java.util.*;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -14,10 +23,12 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import io.github.jhipster.config.JHipsterProperties;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -25,16 +36,27 @@ public class TokenProviderTest {
 
     private static final long ONE_MINUTE = 60000;
 
+    private static final String BASE64_SECRET =
+        "fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8";
+
+    private static final String ROTATED_BASE64_SECRET =
+        "Yjk5YjI2N2YzMzQxMzI3NDcyMGRkYmI3ZjZjNWU2NGU5ZjE0MDc1ZjJkN2VkMDQxNTkyZjBiNzY1N2JhZjg5OQ==";
+
     private Key key;
+    private SimpleMeterRegistry meterRegistry;
+    private JHipsterProperties jHipsterProperties;
+    private ApplicationProperties applicationProperties;
     private TokenProvider tokenProvider;
 
     @BeforeEach
     public void setup() {
-        tokenProvider = new TokenProvider( new JHipsterProperties());
-        key = Keys.hmacShaKeyFor(Decoders.BASE64
-            .decode("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8"));
+        meterRegistry = new SimpleMeterRegistry();
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(BASE64_SECRET);
+        applicationProperties = new ApplicationProperties();
+        tokenProvider = createTokenProvider(jHipsterProperties, applicationProperties);
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(BASE64_SECRET));
 
-        ReflectionTestUtils.setField(tokenProvider, "key", key);
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
     }
 
@@ -83,6 +105,265 @@ public class TokenProviderTest {
         assertThat(isTokenValid).isEqualTo(false);
     }
 
+    @Test
+    public void testReturnCachedAuthenticationForValidatedToken() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+        Authentication authentication = tokenProvider.getAuthentication(token);
+
+        assertThat(authentication.getName()).isEqualTo("anonymous");
+        assertThat(authentication.getCredentials()).isEqualTo(token);
+        assertThat(tokenProvider.getAuthentication(token)).isSameAs(authentication);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testShareGrantedAuthoritiesBetweenTokens() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        String otherToken = tokenProvider.createToken(new UsernamePasswordAuthenticationToken("other", "other",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS))), false);
+
+        GrantedAuthority authority = tokenProvider.getAuthentication(token).getAuthorities().iterator().next();
+        GrantedAuthority otherAuthority = tokenProvider.getAuthentication(otherToken).getAuthorities().iterator().next();
+
+        assertThat(authority.getAuthority()).isEqualTo(AuthoritiesConstants.ANONYMOUS);
+        assertThat(otherAuthority).isSameAs(authority);
+    }
+
+    @Test
+    public void testDoNotCacheTokenWithInvalidSignature() {
+        String token = createTokenWithDifferentSignature();
+
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isZero();
+    }
+
+    @Test
+    public void testAddKeyIdHeader() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getSigning().setKeyId("test-key");
+        tokenProvider = createTokenProvider(applicationProperties);
+
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getHeader().getKeyId())
+            .isEqualTo("test-key");
+        assertThat(tokenProvider.getJsonWebKeySet().get("keys")).asList().isEmpty();
+    }
+
+    @Test
+    public void testReturnFalseWhenJWThasUnknownKeyId() {
+        String token = Jwts.builder()
+            .setHeaderParam(JwsHeader.KEY_ID, "unknown")
+            .setSubject("anonymous")
+            .signWith(key, SignatureAlgorithm.HS512)
+            .setExpiration(new Date(new Date().getTime() + ONE_MINUTE))
+            .compact();
+
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+    }
+
+    @Test
+    public void testSignWithRsaKey() {
+        TokenProvider rsaTokenProvider = createAsymmetricTokenProvider("RS256");
+        String token = rsaTokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(rsaTokenProvider.getAuthentication(token).getName()).isEqualTo("anonymous");
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+
+        Map<String, Object> jwk = publishedKey(rsaTokenProvider);
+        assertThat(jwk).containsEntry("kty", "RSA").containsEntry("alg", "RS256").containsEntry("use", "sig")
+            .containsKeys("n", "e", "kid");
+        assertThat(keyId(token)).isEqualTo(jwk.get("kid"));
+    }
+
+    @Test
+    public void testSignWithEcKey() {
+        TokenProvider ecTokenProvider = createAsymmetricTokenProvider("ES256");
+        String token = ecTokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(ecTokenProvider.getAuthentication(token).getName()).isEqualTo("anonymous");
+
+        Map<String, Object> jwk = publishedKey(ecTokenProvider);
+        assertThat(jwk).containsEntry("kty", "EC").containsEntry("crv", "P-256").containsEntry("alg", "ES256");
+        assertThat(Base64.getUrlDecoder().decode((String) jwk.get("x"))).hasSize(32);
+        assertThat(Base64.getUrlDecoder().decode((String) jwk.get("y"))).hasSize(32);
+    }
+
+    @Test
+    public void testReturnFalseWhenHmacTokenIsVerifiedWithRsaKey() {
+        TokenProvider rsaTokenProvider = createAsymmetricTokenProvider("RS256");
+        String keyId = (String) publishedKey(rsaTokenProvider).get("kid");
+        String token = Jwts.builder()
+            .setHeaderParam(JwsHeader.KEY_ID, keyId)
+            .setSubject("anonymous")
+            .signWith(key, SignatureAlgorithm.HS512)
+            .setExpiration(new Date(new Date().getTime() + ONE_MINUTE))
+            .compact();
+
+        assertThat(rsaTokenProvider.validateToken(token)).isFalse();
+    }
+
+    @Test
+    public void testVerifyTokenOfRetiredKeyAfterRotation() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+
+        rotateSecret(BASE64_SECRET);
+        String rotatedToken = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+        assertThat(tokenProvider.validateToken(rotatedToken)).isTrue();
+        assertThat(keyId(rotatedToken)).isNotEqualTo(keyId(token));
+    }
+
+    @Test
+    public void testReturnFalseWhenKeyIsRemoved() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+
+        rotateSecret(null);
+
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+    }
+
+    @Test
+    public void testKeepKeysWhenReloadFails() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        applicationProperties.getSecurity().getSigning().setAlgorithm("unknown");
+        tokenProvider.reloadKeys();
+
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+        assertThat(keyId(tokenProvider.createToken(createAuthentication(), false))).isEqualTo(keyId(token));
+    }
+
+    @Test
+    public void testReloadKeysWhenKeyStoreIsCreated(@TempDir Path directory) throws IOException {
+        Path keyStore = directory.resolve("jwt.p12");
+        applicationProperties.getSecurity().getSigning().setKeyStore(keyStore.toUri().toString());
+        tokenProvider = createTokenProvider(jHipsterProperties, applicationProperties);
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        tokenProvider.watchKeyStore();
+
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(ROTATED_BASE64_SECRET);
+        Files.write(keyStore, new byte[0]);
+        tokenProvider.watchKeyStore();
+
+        assertThat(keyId(tokenProvider.createToken(createAuthentication(), false))).isNotEqualTo(keyId(token));
+    }
+
+    @Test
+    public void testRetryKeyStoreAfterFailedReload(@TempDir Path directory) throws IOException {
+        Path keyStore = Files.write(directory.resolve("jwt.p12"), new byte[0]);
+        applicationProperties.getSecurity().getSigning().setKeyStore(keyStore.toUri().toString());
+        tokenProvider = createTokenProvider(jHipsterProperties, applicationProperties);
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        applicationProperties.getSecurity().getSigning().setAlgorithm("unknown");
+        touch(keyStore);
+        tokenProvider.watchKeyStore();
+        assertThat(keyId(tokenProvider.createToken(createAuthentication(), false))).isEqualTo(keyId(token));
+
+        applicationProperties.getSecurity().getSigning().setAlgorithm("HS512");
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(ROTATED_BASE64_SECRET);
+        tokenProvider.watchKeyStore();
+
+        assertThat(keyId(tokenProvider.createToken(createAuthentication(), false))).isNotEqualTo(keyId(token));
+    }
+
+    @Test
+    public void testKeepGeneratedKeyPairOnReload() {
+        TokenProvider rsaTokenProvider = createAsymmetricTokenProvider("RS256");
+        String token = rsaTokenProvider.createToken(createAuthentication(), false);
+
+        rsaTokenProvider.reloadKeys();
+
+        assertThat(rsaTokenProvider.validateToken(token)).isTrue();
+        assertThat(publishedKey(rsaTokenProvider)).containsEntry("kid", keyId(token));
+    }
+
+    @Test
+    public void testReturnFalseWhenJWTisRevoked() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        TokenDetails details = (TokenDetails) tokenProvider.getAuthentication(token).getDetails();
+        assertThat(details.getTokenId()).isNotNull();
+        assertThat(details.getIssuedAt()).isNotNull();
+
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setTokenId(details.getTokenId());
+        revokedToken.setLogin("anonymous");
+        revokedToken.setRevokedDate(Instant.now());
+        revokedToken.setExpiryDate(Instant.ofEpochMilli(details.getExpiresAt()));
+        tokenProvider.getRevocationList().add(revokedToken);
+
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(tokenProvider.validateToken(tokenProvider.createToken(createAuthentication(), false))).isTrue();
+    }
+
+    @Test
+    public void testKeepTokenIssuedJustAfterUserRevocation() throws InterruptedException {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        TokenDetails details = (TokenDetails) tokenProvider.getAuthentication(token).getDetails();
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setLogin("anonymous");
+        revokedToken.setRevokedDate(Instant.ofEpochMilli(details.getIssuedAt()));
+        revokedToken.setExpiryDate(Instant.ofEpochMilli(details.getExpiresAt()));
+        tokenProvider.getRevocationList().add(revokedToken);
+        Thread.sleep(5);
+
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(tokenProvider.validateToken(tokenProvider.createToken(createAuthentication(), false))).isTrue();
+    }
+
+    private void rotateSecret(String retiredSecret) {
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(ROTATED_BASE64_SECRET);
+        if (retiredSecret != null) {
+            ApplicationProperties.Security.Signing.VerificationKey retiredKey =
+                new ApplicationProperties.Security.Signing.VerificationKey();
+            retiredKey.setBase64Secret(retiredSecret);
+            applicationProperties.getSecurity().getSigning().getVerificationKeys().add(retiredKey);
+        }
+        tokenProvider.reloadKeys();
+    }
+
+    private void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+    }
+
+    private String keyId(String token) {
+        String header = new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))), StandardCharsets.UTF_8);
+        return header.replaceAll(".*\"kid\":\"([^\"]*)\".*", "$1");
+    }
+
+    private TokenProvider createTokenProvider(ApplicationProperties applicationProperties) {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(BASE64_SECRET);
+        return createTokenProvider(jHipsterProperties, applicationProperties);
+    }
+
+    private TokenProvider createTokenProvider(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        TokenProvider provider = new TokenProvider(jHipsterProperties, applicationProperties, meterRegistry);
+        provider.init();
+        ReflectionTestUtils.setField(provider, "tokenValidityInMilliseconds", ONE_MINUTE);
+        return provider;
+    }
+
+    private TokenProvider createAsymmetricTokenProvider(String algorithm) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getSigning().setAlgorithm(algorithm);
+        return createTokenProvider(applicationProperties);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> publishedKey(TokenProvider provider) {
+        List<Map<String, Object>> keys = (List<Map<String, Object>>) provider.getJsonWebKeySet().get("keys");
+        assertThat(keys).hasSize(1);
+        return keys.get(0);
+    }
+
     private Authentication createAuthentication() {
         Collection<GrantedAuthority> authorities = new ArrayList<>();
         authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
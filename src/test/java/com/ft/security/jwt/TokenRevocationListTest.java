@@ -0,0 +1,99 @@
+package com.ft.security.jwt;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.RevokedToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenRevocationListTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TokenRevocationList revocationList;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        revocationList = new TokenRevocationList(new ApplicationProperties().getSecurity().getRevocation(), meterRegistry);
+    }
+
+    @Test
+    public void testRevokeToken() {
+        revocationList.add(revokedToken("revoked-id", "test-user"));
+
+        assertThat(revocationList.isRevoked("test-user", details("revoked-id", 0))).isTrue();
+        assertThat(revocationList.isRevoked("test-user", details("other-id", 0))).isFalse();
+        assertThat(revocationList.isRevoked("test-user", details(null, 0))).isFalse();
+        assertThat(meterRegistry.get(TokenRevocationList.METER_NAME).tag("type", "token").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRevokeUserTokensIssuedBeforeRevocation() {
+        Instant revokedDate = Instant.now();
+        revocationList.add(revokedToken(null, "test-user", revokedDate, revokedDate.plusSeconds(60)));
+
+        assertThat(revocationList.isRevoked("test-user", details("id", revokedDate.toEpochMilli() - 1000))).isTrue();
+        assertThat(revocationList.isRevoked("test-user", details("id", revokedDate.toEpochMilli() + 1000))).isFalse();
+        assertThat(revocationList.isRevoked("test-user", new TokenDetails("id", null, null))).isTrue();
+        assertThat(revocationList.isRevoked("other-user", details("id", 0))).isFalse();
+    }
+
+    @Test
+    public void testRevokeUserTokensToTheMillisecond() {
+        Instant revokedDate = Instant.parse("2020-05-01T10:00:00.700Z");
+        revocationList.add(revokedToken(null, "test-user", revokedDate, Instant.now().plusSeconds(60)));
+
+        assertThat(revocationList.isRevoked("test-user", details("id", revokedDate.toEpochMilli() - 100))).isTrue();
+        assertThat(revocationList.isRevoked("test-user", details("id", revokedDate.toEpochMilli()))).isTrue();
+        assertThat(revocationList.isRevoked("test-user", details("id", revokedDate.toEpochMilli() + 1))).isFalse();
+    }
+
+    @Test
+    public void testIgnoreExpiredRevocation() {
+        Instant revokedDate = Instant.now().minusSeconds(120);
+        revocationList.add(revokedToken("expired-id", "test-user", revokedDate, revokedDate.plusSeconds(60)));
+
+        assertThat(revocationList.isRevoked("test-user", details("expired-id", 0))).isFalse();
+    }
+
+    @Test
+    public void testRebuildReplacesRevocations() {
+        revocationList.add(revokedToken("revoked-id", "test-user"));
+
+        revocationList.rebuild(Arrays.asList(revokedToken("other-id", "test-user"), revokedToken("third-id", "test-user")));
+
+        assertThat(revocationList.isRevoked("test-user", details("revoked-id", 0))).isFalse();
+        assertThat(revocationList.isRevoked("test-user", details("other-id", 0))).isTrue();
+        assertThat(revocationList.isRevoked("test-user", details("third-id", 0))).isTrue();
+
+        revocationList.rebuild(Collections.emptyList());
+
+        assertThat(revocationList.isRevoked("test-user", details("other-id", 0))).isFalse();
+    }
+
+    private TokenDetails details(String tokenId, long issuedAt) {
+        return new TokenDetails(tokenId, issuedAt, null);
+    }
+
+    private RevokedToken revokedToken(String tokenId, String login) {
+        Instant now = Instant.now();
+        return revokedToken(tokenId, login, now, now.plusSeconds(60));
+    }
+
+    private RevokedToken revokedToken(String tokenId, String login, Instant revokedDate, Instant expiryDate) {
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setTokenId(tokenId);
+        revokedToken.setLogin(login);
+        revokedToken.setRevokedDate(revokedDate);
+        revokedToken.setExpiryDate(expiryDate);
+        return revokedToken;
+    }
+}
@@ -0,0 +1,132 @@
+package com.ft.service;
+
+import io.github.jhipster.config.JHipsterProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ft.config.ApplicationProperties;
+import com.ft.config.MinioConfiguration;
+import com.ft.config.audit.AuditEventConverter;
+import com.ft.domain.PersistentAuditEvent;
+import com.mongodb.client.result.DeleteResult;
+import io.minio.MinioClient;
+import io.minio.ObjectStat;
+import io.minio.PutObjectOptions;
+import io.minio.Result;
+import io.minio.messages.Item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.StreamUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class AuditEventArchiveServiceTest {
+
+    private static final String BUCKET = "test-bucket";
+
+    private static final Instant DAY = Instant.parse("2020-05-01T00:00:00Z");
+
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private MinioClient minioClient;
+
+    private Map<String, byte[]> objects;
+
+    private AuditEventArchiveService auditEventArchiveService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.findOne(any(Query.class), eq(PersistentAuditEvent.class))).thenReturn(Mono.just(createEvent("user-1", DAY.plusSeconds(60))));
+        when(mongoTemplate.find(any(Query.class), eq(PersistentAuditEvent.class)))
+            .thenReturn(Flux.just(createEvent("user-1", DAY.plusSeconds(60)), createEvent("user-2", DAY.plusSeconds(120))));
+        when(mongoTemplate.count(any(Query.class), eq(PersistentAuditEvent.class))).thenReturn(Mono.just(2L));
+        when(mongoTemplate.remove(any(Query.class), eq(PersistentAuditEvent.class))).thenReturn(Mono.just(DeleteResult.acknowledged(2)));
+
+        objects = new LinkedHashMap<>();
+        minioClient = mock(MinioClient.class);
+        doAnswer(invocation -> {
+            objects.put(invocation.getArgument(1), StreamUtils.copyToByteArray(invocation.<InputStream>getArgument(2)));
+            return null;
+        }).when(minioClient).putObject(eq(BUCKET), anyString(), any(InputStream.class), any(PutObjectOptions.class));
+        when(minioClient.statObject(eq(BUCKET), anyString())).thenAnswer(invocation -> {
+            ObjectStat stat = mock(ObjectStat.class);
+            when(stat.length()).thenReturn((long) objects.get(invocation.<String>getArgument(1)).length);
+            return stat;
+        });
+        when(minioClient.listObjects(eq(BUCKET), anyString(), anyBoolean())).thenAnswer(invocation -> objects.keySet().stream()
+            .filter(name -> name.startsWith(invocation.getArgument(1)))
+            .map(name -> {
+                Item item = mock(Item.class);
+                when(item.objectName()).thenReturn(name);
+                return new Result<>(item);
+            })
+            .collect(Collectors.toList()));
+        when(minioClient.getObject(eq(BUCKET), anyString())).thenAnswer(invocation -> new ByteArrayInputStream(objects.get(invocation.<String>getArgument(1))));
+
+        MinioConfiguration minioConfiguration = new MinioConfiguration();
+        minioConfiguration.setBucketName(BUCKET);
+        auditEventArchiveService = new AuditEventArchiveService(mongoTemplate, mock(AuditEventBucketService.class), new AuditEventConverter(),
+            mock(JobLeaseService.class), minioClient, minioConfiguration, new ObjectMapper().registerModule(new JavaTimeModule()),
+            new ApplicationProperties(), new JHipsterProperties());
+    }
+
+    @Test
+    public void testArchiveAndReadBack() {
+        auditEventArchiveService.archive(DAY.plusSeconds(8 * 86400));
+
+        assertThat(objects).containsOnlyKeys("audit-events/2020-05-01.ndjson.gz");
+        verify(mongoTemplate).remove(any(Query.class), eq(PersistentAuditEvent.class));
+        List<AuditEvent> events = auditEventArchiveService.findArchived(LocalDate.of(2020, 4, 30), LocalDate.of(2020, 5, 1))
+            .collectList().block();
+        assertThat(events).extracting(AuditEvent::getPrincipal).containsExactly("user-1", "user-2");
+        assertThat(events).extracting(AuditEvent::getTimestamp).containsExactly(DAY.plusSeconds(60), DAY.plusSeconds(120));
+    }
+
+    @Test
+    public void testKeepEventsChangedWhileArchived() throws Exception {
+        when(mongoTemplate.count(any(Query.class), eq(PersistentAuditEvent.class))).thenReturn(Mono.just(3L));
+
+        auditEventArchiveService.archive(DAY.plusSeconds(8 * 86400));
+
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(PersistentAuditEvent.class));
+        verify(minioClient).removeObject(BUCKET, "audit-events/2020-05-01.ndjson.gz");
+    }
+
+    @Test
+    public void testSkipRecentEvents() {
+        auditEventArchiveService.archive(DAY.plusSeconds(7 * 86400));
+
+        assertThat(objects).isEmpty();
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(PersistentAuditEvent.class));
+    }
+
+    private PersistentAuditEvent createEvent(String principal, Instant date) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setId(principal);
+        event.setPrincipal(principal);
+        event.setAuditEventType("AUTHENTICATION_SUCCESS");
+        event.setAuditEventDate(date);
+        return event;
+    }
+}
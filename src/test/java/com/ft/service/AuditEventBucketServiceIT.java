@@ -0,0 +1,139 @@
+package com.ft.service;
+
+import com.ft.ApiGatewayApp;
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.domain.PersistentAuditEventBucket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link AuditEventBucketService}.
+ */
+@SpringBootTest(classes = ApiGatewayApp.class)
+public class AuditEventBucketServiceIT {
+
+    private static final Instant BUCKET_DATE = Instant.parse("2020-05-01T10:00:00Z");
+
+    @Autowired
+    private AuditEventBucketService auditEventBucketService;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    private int maxEventsPerBucket;
+
+    @BeforeEach
+    public void init() {
+        maxEventsPerBucket = applicationProperties.getAuditEvents().getMaxEventsPerBucket();
+        applicationProperties.getAuditEvents().setMaxEventsPerBucket(3);
+        mongoTemplate.dropCollection(PersistentAuditEventBucket.class).block();
+    }
+
+    @AfterEach
+    public void restore() {
+        applicationProperties.getAuditEvents().setMaxEventsPerBucket(maxEventsPerBucket);
+    }
+
+    @Test
+    public void assertThatEventsOfAPrincipalAndHourShareBuckets() {
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            events.add(createEvent("user", BUCKET_DATE.plusSeconds(i)));
+        }
+        events.add(createEvent("other-user", BUCKET_DATE));
+
+        auditEventBucketService.insert(events).block();
+
+        assertThat(mongoTemplate.count(new Query(), PersistentAuditEventBucket.class).block())
+            .isEqualTo(3);
+        assertThat(auditEventBucketService.count().block()).isEqualTo(6);
+        List<PersistentAuditEvent> read = auditEventBucketService.findBetween(BUCKET_DATE.plusSeconds(1), BUCKET_DATE.plusSeconds(3))
+            .collectList().block();
+        assertThat(read).extracting(PersistentAuditEvent::getAuditEventDate)
+            .containsExactly(BUCKET_DATE.plusSeconds(3), BUCKET_DATE.plusSeconds(2), BUCKET_DATE.plusSeconds(1));
+        assertThat(auditEventBucketService.findById(read.get(0).getId()).block().getAuditEventDate()).isEqualTo(BUCKET_DATE.plusSeconds(3));
+    }
+
+    @Test
+    public void assertThatOldBucketsAreRemoved() {
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        events.add(createEvent("user", BUCKET_DATE.plusSeconds(3599)));
+        events.add(createEvent("user", BUCKET_DATE.plusSeconds(3600)));
+        auditEventBucketService.insert(events).block();
+
+        assertThat(auditEventBucketService.removeBefore(BUCKET_DATE.plusSeconds(3600)).block()).isEqualTo(1);
+
+        assertThat(auditEventBucketService.findBetween(null, null).collectList().block())
+            .extracting(PersistentAuditEvent::getAuditEventDate).containsExactly(BUCKET_DATE.plusSeconds(3600));
+    }
+
+    @Test
+    public void assertThatCountOnlyExpandsPartlyCoveredHours() {
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            events.add(createEvent("user-" + (i % 2), BUCKET_DATE.plusSeconds(i * 1200L)));
+        }
+        auditEventBucketService.insert(events).block();
+
+        // From 10:20 to 12:40, with the 11:00 hour fully covered
+        assertThat(auditEventBucketService.countBetween(BUCKET_DATE.plusSeconds(1200), BUCKET_DATE.plusSeconds(9600)).block())
+            .isEqualTo(8);
+        assertThat(auditEventBucketService.countBetween(BUCKET_DATE, BUCKET_DATE.plusSeconds(3 * 3600 - 1)).block())
+            .isEqualTo(9);
+        assertThat(auditEventBucketService.countBetween(BUCKET_DATE.plusSeconds(1), BUCKET_DATE.plusSeconds(2400)).block())
+            .isEqualTo(2);
+        assertThat(auditEventBucketService.countBetween(null, null).block()).isEqualTo(12);
+    }
+
+    @Test
+    public void assertThatPagesSkipWholeHours() {
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(createEvent("user-" + (i % 3), BUCKET_DATE.plusSeconds(i * 700L)));
+        }
+        auditEventBucketService.insert(events).block();
+        Instant fromDate = BUCKET_DATE.plusSeconds(1000);
+        Instant toDate = BUCKET_DATE.plusSeconds(12000);
+        List<Instant> newestFirst = events.stream().map(PersistentAuditEvent::getAuditEventDate)
+            .filter(date -> !date.isBefore(fromDate) && !date.isAfter(toDate))
+            .sorted(Collections.reverseOrder())
+            .collect(Collectors.toList());
+
+        for (int offset = 0; offset < newestFirst.size(); offset += 4) {
+            assertThat(auditEventBucketService.findPage(fromDate, toDate, Sort.Direction.DESC, offset, 4).collectList().block())
+                .extracting(PersistentAuditEvent::getAuditEventDate)
+                .containsExactlyElementsOf(newestFirst.subList(offset, Math.min(offset + 4, newestFirst.size())));
+        }
+        assertThat(auditEventBucketService.findPage(fromDate, toDate, Sort.Direction.ASC, 5, 3).collectList().block())
+            .extracting(PersistentAuditEvent::getAuditEventDate)
+            .containsExactly(newestFirst.get(newestFirst.size() - 6), newestFirst.get(newestFirst.size() - 7),
+                newestFirst.get(newestFirst.size() - 8));
+        assertThat(auditEventBucketService.findPage(null, null, Sort.Direction.DESC, 20, 4).collectList().block()).isEmpty();
+    }
+
+    private PersistentAuditEvent createEvent(String principal, Instant date) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType("AUTHENTICATION_SUCCESS");
+        event.setAuditEventDate(date);
+        return event;
+    }
+}
@@ -0,0 +1,149 @@
+package com.ft.service;
+
+import com.ft.domain.PersistentAuditEvent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditEventJournalTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReadAppendedEvents() throws Exception {
+        Instant date = Instant.parse("2020-01-01T00:00:00.123456Z");
+        try (AuditEventJournal journal = new AuditEventJournal(directory, SEGMENT_SIZE, 4)) {
+            PersistentAuditEvent event = createEvent("user-1");
+            event.setAuditEventDate(date);
+            event.setData(Collections.singletonMap("remoteAddress", "127.0.0.1"));
+            assertThat(journal.append(event)).isTrue();
+            assertThat(journal.append(createEvent("user-2"))).isTrue();
+
+            AuditEventJournal.Batch batch = journal.read(10);
+
+            assertThat(batch.getEvents()).extracting(PersistentAuditEvent::getPrincipal).containsExactly("user-1", "user-2");
+            PersistentAuditEvent read = batch.getEvents().get(0);
+            assertThat(read.getAuditEventType()).isEqualTo("test-type");
+            assertThat(read.getAuditEventDate()).isEqualTo(date);
+            assertThat(read.getData()).containsEntry("remoteAddress", "127.0.0.1");
+            assertThat(journal.getPendingEvents()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testCommittedEventsAreNotReadAgain() throws Exception {
+        try (AuditEventJournal journal = new AuditEventJournal(directory, SEGMENT_SIZE, 4)) {
+            journal.append(createEvent("user-1"));
+            journal.append(createEvent("user-2"));
+            journal.append(createEvent("user-3"));
+
+            journal.commit(journal.read(2));
+
+            assertThat(journal.getPendingEvents()).isEqualTo(1);
+            assertThat(journal.read(10).getEvents()).extracting(PersistentAuditEvent::getPrincipal).containsExactly("user-3");
+        }
+    }
+
+    @Test
+    public void testRecoverUncommittedEvents() throws Exception {
+        try (AuditEventJournal journal = new AuditEventJournal(directory, SEGMENT_SIZE, 4)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(createEvent("user-" + i));
+            }
+            journal.commit(journal.read(3));
+        }
+
+        try (AuditEventJournal journal = new AuditEventJournal(directory, SEGMENT_SIZE, 4)) {
+            assertThat(journal.getPendingEvents()).isEqualTo(7);
+            journal.append(createEvent("user-10"));
+
+            assertThat(journal.read(100).getEvents()).extracting(PersistentAuditEvent::getPrincipal)
+                .containsExactly("user-3", "user-4", "user-5", "user-6", "user-7", "user-8", "user-9", "user-10");
+        }
+    }
+
+    @Test
+    public void testDeleteCommittedSegments() throws Exception {
+        try (AuditEventJournal journal = new AuditEventJournal(directory, SEGMENT_SIZE, 4)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(createEvent("user-" + i));
+            }
+            assertThat(countSegments()).isGreaterThan(1);
+
+            journal.commit(journal.read(100));
+
+            assertThat(countSegments()).isEqualTo(1);
+            assertThat(journal.getPendingEvents()).isZero();
+        }
+    }
+
+    @Test
+    public void testRefuseEventsWhenFull() throws Exception {
+        try (AuditEventJournal journal = new AuditEventJournal(directory, SEGMENT_SIZE, 2)) {
+            int appended = 0;
+            while (journal.append(createEvent("user-" + appended))) {
+                appended++;
+            }
+
+            assertThat(countSegments()).isEqualTo(2);
+            journal.commit(journal.read(appended));
+            assertThat(journal.append(createEvent("user-" + appended))).isTrue();
+        }
+    }
+
+    @Test
+    public void testDiscardTornRecordOnRecovery() throws Exception {
+        try (AuditEventJournal journal = new AuditEventJournal(directory, SEGMENT_SIZE, 4)) {
+            journal.append(createEvent("user-1"));
+            journal.append(createEvent("user-2"));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".journal")).findFirst().get();
+        }
+        // Corrupt the last byte of the second record, as if the process stopped while writing it
+        byte[] content = Files.readAllBytes(segment);
+        int end = content.length;
+        while (content[end - 1] == 0) {
+            end--;
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { (byte) (content[end - 1] + 1) }), end - 1);
+        }
+
+        try (AuditEventJournal journal = new AuditEventJournal(directory, SEGMENT_SIZE, 4)) {
+            assertThat(journal.getPendingEvents()).isEqualTo(1);
+            journal.append(createEvent("user-3"));
+
+            assertThat(journal.read(10).getEvents()).extracting(PersistentAuditEvent::getPrincipal).containsExactly("user-1", "user-3");
+        }
+    }
+
+    private long countSegments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).count();
+        }
+    }
+
+    private PersistentAuditEvent createEvent(String principal) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType("test-type");
+        event.setAuditEventDate(Instant.now());
+        return event;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ft.service;
+
+import com.ft.domain.AuditEventRollup;
+import com.ft.service.dto.AuditEventStatsDTO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AuditEventRollupServiceTest {
+
+    private static final Instant DAY = Instant.parse("2020-05-01T00:00:00Z");
+
+    private AuditEventRollupService auditEventRollupService;
+
+    @BeforeEach
+    public void setup() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(AuditEventRollup.class))).thenReturn(Flux.just(
+            createRollup(DAY.plusSeconds(3600), "FAILURE", "user", 2),
+            createRollup(DAY.plusSeconds(3600), "SUCCESS", "user", 1),
+            createRollup(DAY.plusSeconds(7200), "FAILURE", "user", 3),
+            createRollup(DAY.plusSeconds(86400), "FAILURE", "user", 4)));
+        auditEventRollupService = new AuditEventRollupService(mongoTemplate);
+    }
+
+    @Test
+    public void testStatsPerHour() {
+        List<AuditEventStatsDTO> stats = auditEventRollupService
+            .findStats(DAY, DAY.plusSeconds(2 * 86400), AuditEventStatsDTO.Granularity.HOUR, null, null)
+            .collectList().block();
+
+        assertThat(stats).extracting(AuditEventStatsDTO::getCount).containsExactly(2L, 1L, 3L, 4L);
+    }
+
+    @Test
+    public void testStatsPerDay() {
+        List<AuditEventStatsDTO> stats = auditEventRollupService
+            .findStats(DAY, DAY.plusSeconds(2 * 86400), AuditEventStatsDTO.Granularity.DAY, null, null)
+            .collectList().block();
+
+        assertThat(stats).extracting(AuditEventStatsDTO::getDate).containsExactly(DAY, DAY, DAY.plusSeconds(86400));
+        assertThat(stats).extracting(AuditEventStatsDTO::getEventType).containsExactly("FAILURE", "SUCCESS", "FAILURE");
+        assertThat(stats).extracting(AuditEventStatsDTO::getCount).containsExactly(5L, 1L, 4L);
+    }
+
+    private AuditEventRollup createRollup(Instant bucketDate, String eventType, String principal, long count) {
+        AuditEventRollup rollup = new AuditEventRollup();
+        rollup.setBucketDate(bucketDate);
+        rollup.setEventType(eventType);
+        rollup.setPrincipal(principal);
+        rollup.setCount(count);
+        return rollup;
+    }
+}
@@ -4,12 +4,16 @@ import com.ft.domain.PersistentAuditEvent;
 import com.ft.repository.PersistenceAuditEventRepository;
 import com.ft.ApiGatewayApp;
 import io.github.jhipster.config.JHipsterProperties;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -27,6 +31,9 @@ public class AuditEventServiceIT {
     @Autowired
     private JHipsterProperties jHipsterProperties;
 
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
     private PersistentAuditEvent auditEventOld;
 
     private PersistentAuditEvent auditEventWithinRetention;
@@ -58,11 +65,22 @@ public class AuditEventServiceIT {
         persistenceAuditEventRepository.save(auditEventWithinRetention).block();
         persistenceAuditEventRepository.save(auditEventNew).block();
 
-        auditEventService.removeOldAuditEvents();
+        auditEventService.removeOldAuditEventsReactively().block();
 
         assertThat(persistenceAuditEventRepository.findAll().collectList().block().size()).isEqualTo(2);
         assertThat(persistenceAuditEventRepository.findByPrincipal("test-user-old").collectList().block()).isEmpty();
         assertThat(persistenceAuditEventRepository.findByPrincipal("test-user-retention").collectList().block()).isNotEmpty();
         assertThat(persistenceAuditEventRepository.findByPrincipal("test-user-new").collectList().block()).isNotEmpty();
     }
+
+    @Test
+    public void verifyAuditEventsExpireWithTtlIndex() {
+        Document index = Flux.from(mongoTemplate.getCollection(mongoTemplate.getCollectionName(PersistentAuditEvent.class)).listIndexes())
+            .filter(candidate -> "event_date_ttl".equals(candidate.getString("name")))
+            .blockFirst();
+
+        assertThat(index).isNotNull();
+        assertThat(((Number) index.get("expireAfterSeconds")).longValue())
+            .isEqualTo(TimeUnit.DAYS.toSeconds(jHipsterProperties.getAuditEvents().getRetentionPeriod()));
+    }
 }
@@ -0,0 +1,188 @@
+package com.ft.service;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.config.audit.AuditEventConverter;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Subscription;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.DirectProcessor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class AuditEventStreamServiceTest {
+
+    private static final Instant BUCKET_DATE = Instant.parse("2020-05-01T10:00:00Z");
+
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private MappingMongoConverter converter;
+
+    private DirectProcessor<ChangeStreamEvent<Document>> changes;
+
+    private ApplicationProperties applicationProperties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AuditEventStreamService auditEventStreamService;
+
+    @BeforeEach
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void setup() {
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        changes = DirectProcessor.create();
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(any(Class.class))).thenReturn("test");
+        when(mongoTemplate.changeStream(isNull(), anyString(), any(ChangeStreamOptions.class), eq(Document.class))).thenReturn((DirectProcessor) changes);
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAuditEvents().getStream().setClientBufferSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        auditEventStreamService = new AuditEventStreamService(mongoTemplate, new AuditEventConverter(), applicationProperties, meterRegistry);
+    }
+
+    @Test
+    public void testShareChangeStream() {
+        List<AuditEvent> first = new ArrayList<>();
+        List<AuditEvent> second = new ArrayList<>();
+        Disposable firstClient = auditEventStreamService.stream().subscribe(first::add);
+        Disposable secondClient = auditEventStreamService.stream().subscribe(second::add);
+
+        changes.onNext(change(OperationType.INSERT, createEvent("user"), null));
+
+        assertThat(first).extracting(AuditEvent::getPrincipal).containsExactly("user");
+        assertThat(second).extracting(AuditEvent::getPrincipal).containsExactly("user");
+        verify(mongoTemplate, times(1)).changeStream(isNull(), anyString(), any(ChangeStreamOptions.class), eq(Document.class));
+        assertThat(meterRegistry.get(AuditEventStreamService.CLIENTS_METER_NAME).gauge().value()).isEqualTo(2);
+
+        firstClient.dispose();
+        secondClient.dispose();
+
+        assertThat(meterRegistry.get(AuditEventStreamService.CLIENTS_METER_NAME).gauge().value()).isZero();
+        assertThat(changes.hasDownstreams()).isFalse();
+    }
+
+    @Test
+    public void testDropOldestEventsOfSlowClient() {
+        List<AuditEvent> fast = new ArrayList<>();
+        auditEventStreamService.stream().subscribe(fast::add);
+        auditEventStreamService.stream().subscribe(new BaseSubscriber<AuditEvent>() {
+
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // Never ready for an event
+            }
+        });
+
+        for (int i = 0; i < 5; i++) {
+            changes.onNext(change(OperationType.INSERT, createEvent("user-" + i), null));
+        }
+
+        assertThat(fast).hasSize(5);
+        assertThat(meterRegistry.get(AuditEventStreamService.DROPPED_METER_NAME).counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void testDoNotResumeAfterLastClientLeft() {
+        Disposable client = auditEventStreamService.stream().subscribe();
+        changes.onNext(change(OperationType.INSERT, createEvent("user"), null));
+        client.dispose();
+
+        auditEventStreamService.stream().subscribe();
+
+        ArgumentCaptor<ChangeStreamOptions> options = ArgumentCaptor.forClass(ChangeStreamOptions.class);
+        verify(mongoTemplate, times(2)).changeStream(isNull(), anyString(), options.capture(), eq(Document.class));
+        assertThat(options.getAllValues()).extracting(ChangeStreamOptions::getResumeToken)
+            .allSatisfy(resumeToken -> assertThat(resumeToken).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testRestartWhenResumeTokenIsLost() {
+        DirectProcessor<ChangeStreamEvent<Document>> restartedChanges = DirectProcessor.create();
+        when(mongoTemplate.changeStream(isNull(), anyString(), any(ChangeStreamOptions.class), eq(Document.class)))
+            .thenReturn((DirectProcessor) changes, (DirectProcessor) restartedChanges);
+        List<AuditEvent> events = new ArrayList<>();
+        auditEventStreamService.stream().subscribe(events::add);
+        changes.onNext(change(OperationType.INSERT, createEvent("user"), null));
+
+        BsonDocument response = new BsonDocument("ok", new BsonInt32(0)).append("code", new BsonInt32(286))
+            .append("errmsg", new BsonString("Resume of change stream was not possible"));
+        changes.onError(new UncategorizedMongoDbException("history lost", new MongoCommandException(response, new ServerAddress())));
+
+        ArgumentCaptor<ChangeStreamOptions> options = ArgumentCaptor.forClass(ChangeStreamOptions.class);
+        verify(mongoTemplate, timeout(5000).times(2)).changeStream(isNull(), anyString(), options.capture(), eq(Document.class));
+        assertThat(options.getAllValues().get(1).getResumeToken()).isEmpty();
+        assertThat(events).extracting(AuditEvent::getPrincipal).containsExactly("user");
+    }
+
+    @Test
+    public void testStreamEventsAppendedToBucket() {
+        applicationProperties.getAuditEvents().setStorage(ApplicationProperties.AuditEvents.Storage.BUCKET);
+        List<AuditEvent> events = new ArrayList<>();
+        auditEventStreamService.stream().subscribe(events::add);
+        Document bucket = new Document("_id", new ObjectId())
+            .append("principal", "user")
+            .append("bucket_date", Date.from(BUCKET_DATE))
+            .append("count", 3)
+            .append("events", Arrays.asList(
+                new Document("t", 0L).append("c", 0),
+                new Document("t", 1000L).append("c", 1),
+                new Document("t", 2000L).append("n", "custom-type")));
+        BsonDocument updatedFields = new BsonDocument("events.2", new BsonDocument("t", new BsonInt32(2000)))
+            .append("count", new BsonInt32(3));
+
+        changes.onNext(change(OperationType.UPDATE, bucket, new UpdateDescription(Collections.emptyList(), updatedFields)));
+
+        assertThat(events).extracting(AuditEvent::getType).containsExactly("custom-type");
+        assertThat(events).extracting(AuditEvent::getTimestamp).containsExactly(BUCKET_DATE.plusSeconds(2));
+    }
+
+    private ChangeStreamEvent<Document> change(OperationType operationType, Document document, UpdateDescription updateDescription) {
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(operationType, new BsonDocument("_data", new BsonString("token")),
+            null, null, document, null, null, updateDescription);
+        return new ChangeStreamEvent<>(raw, Document.class, converter);
+    }
+
+    private Document createEvent(String principal) {
+        return new Document("_id", new ObjectId().toHexString())
+            .append("principal", principal)
+            .append("event_date", new Date())
+            .append("event_type", "AUTHENTICATION_SUCCESS");
+    }
+}
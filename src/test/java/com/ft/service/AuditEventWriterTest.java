@@ -0,0 +1,223 @@
+package com.ft.service;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.PersistentAuditEvent;
+import com.ft.repository.PersistenceAuditEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class AuditEventWriterTest {
+
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private AuditEventBucketService auditEventBucketService;
+
+    private AuditEventRollupService auditEventRollupService;
+
+    private ApplicationProperties applicationProperties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AuditEventWriter auditEventWriter;
+
+    @BeforeEach
+    public void setup() {
+        persistenceAuditEventRepository = mock(PersistenceAuditEventRepository.class);
+        when(persistenceAuditEventRepository.insert(anyIterable())).thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+        when(persistenceAuditEventRepository.save(any(PersistentAuditEvent.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        auditEventBucketService = mock(AuditEventBucketService.class);
+        when(auditEventBucketService.insert(anyList())).thenReturn(Mono.empty());
+        auditEventRollupService = mock(AuditEventRollupService.class);
+        when(auditEventRollupService.increment(anyList())).thenReturn(Mono.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAuditEvents().setBufferSize(3);
+        applicationProperties.getAuditEvents().setBatchSize(2);
+        applicationProperties.getAuditEvents().setFlushIntervalInMilliseconds(60000);
+        auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository, auditEventBucketService, auditEventRollupService, applicationProperties, meterRegistry);
+    }
+
+    @AfterEach
+    public void teardown() {
+        auditEventWriter.destroy();
+    }
+
+    @Test
+    public void testWriteFullBatch() {
+        auditEventWriter.write(createEvent("user-1")).block();
+        verify(persistenceAuditEventRepository, never()).insert(anyIterable());
+        assertThat(queued()).isEqualTo(1);
+
+        auditEventWriter.write(createEvent("user-2")).block();
+
+        List<PersistentAuditEvent> batch = capturedBatch();
+        assertThat(batch).extracting(PersistentAuditEvent::getPrincipal).containsExactly("user-1", "user-2");
+        assertThat(queued()).isZero();
+    }
+
+    @Test
+    public void testFlushPartialBatch() {
+        auditEventWriter.write(createEvent("user-1")).block();
+
+        auditEventWriter.flush();
+
+        assertThat(capturedBatch()).extracting(PersistentAuditEvent::getPrincipal).containsExactly("user-1");
+    }
+
+    @Test
+    public void testDropWhenBufferIsFull() {
+        applicationProperties.getAuditEvents().setOverflowPolicy(ApplicationProperties.AuditEvents.OverflowPolicy.DROP);
+        // The first batch is never written, so the buffer fills up
+        when(persistenceAuditEventRepository.insert(anyIterable())).thenReturn(Flux.never(), Flux.empty());
+        recreateWriter();
+        for (int i = 0; i < 5; i++) {
+            auditEventWriter.write(createEvent("user-" + i)).block();
+        }
+
+        assertThat(auditEventWriter.write(createEvent("user-dropped")).block()).isNull();
+        assertThat(queued()).isEqualTo(3);
+        assertThat(dropped("overflow")).isEqualTo(1);
+        verify(persistenceAuditEventRepository, never()).save(any(PersistentAuditEvent.class));
+    }
+
+    @Test
+    public void testBlockWhenBufferIsFull() {
+        // The first batch is never written, so the buffer fills up
+        when(persistenceAuditEventRepository.insert(anyIterable())).thenReturn(Flux.never(), Flux.empty());
+        recreateWriter();
+        for (int i = 0; i < 5; i++) {
+            auditEventWriter.write(createEvent("user-" + i)).block();
+        }
+
+        assertThat(auditEventWriter.write(createEvent("user-direct")).block()).isNotNull();
+        verify(persistenceAuditEventRepository).save(any(PersistentAuditEvent.class));
+        assertThat(dropped("overflow")).isZero();
+    }
+
+    @Test
+    public void testBlockWhenBucketBufferIsFull() {
+        applicationProperties.getAuditEvents().setStorage(ApplicationProperties.AuditEvents.Storage.BUCKET);
+        // The first batch is never written, so the buffer fills up
+        when(auditEventBucketService.insert(anyList())).thenReturn(Mono.never(), Mono.empty());
+        recreateWriter();
+        for (int i = 0; i < 5; i++) {
+            auditEventWriter.write(createEvent("user-" + i)).block();
+        }
+
+        assertThat(auditEventWriter.write(createEvent("user-direct")).block()).isNotNull();
+        verify(auditEventBucketService).insert(argThat(batch -> batch.size() == 1 && "user-direct".equals(batch.get(0).getPrincipal())));
+        verify(auditEventRollupService).increment(argThat(batch -> batch.size() == 1 && "user-direct".equals(batch.get(0).getPrincipal())));
+        assertThat(dropped("overflow")).isZero();
+    }
+
+    @Test
+    public void testCountLostBatch() {
+        when(persistenceAuditEventRepository.insert(anyIterable())).thenReturn(Flux.error(new IllegalStateException("test")));
+
+        auditEventWriter.write(createEvent("user-1")).block();
+        auditEventWriter.write(createEvent("user-2")).block();
+
+        assertThat(dropped("error")).isEqualTo(2);
+    }
+
+    @Test
+    public void testWriteRemainingEventsOnDestroy() {
+        auditEventWriter.write(createEvent("user-1")).block();
+
+        auditEventWriter.destroy();
+
+        assertThat(capturedBatch()).extracting(PersistentAuditEvent::getPrincipal).containsExactly("user-1");
+    }
+
+    @Test
+    public void testRetryJournaledBatch(@TempDir Path directory) {
+        applicationProperties.getAuditEvents().getJournal().setEnabled(true);
+        applicationProperties.getAuditEvents().getJournal().setDirectory(directory.toString());
+        when(persistenceAuditEventRepository.insert(anyIterable()))
+            .thenReturn(Flux.error(new IllegalStateException("test")))
+            .thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+        recreateWriter();
+
+        auditEventWriter.write(createEvent("user-1")).block();
+        auditEventWriter.write(createEvent("user-2")).block();
+        assertThat(queued()).isEqualTo(2);
+
+        auditEventWriter.flush();
+
+        assertThat(queued()).isZero();
+        assertThat(dropped("error")).isZero();
+        verify(persistenceAuditEventRepository, times(2)).insert(anyIterable());
+    }
+
+    @Test
+    public void testWriteBatchToBuckets() {
+        applicationProperties.getAuditEvents().setStorage(ApplicationProperties.AuditEvents.Storage.BUCKET);
+        recreateWriter();
+
+        auditEventWriter.write(createEvent("user-1")).block();
+        auditEventWriter.write(createEvent("user-2")).block();
+
+        verify(auditEventBucketService).insert(argThat(batch -> batch.size() == 2));
+        verify(persistenceAuditEventRepository, never()).insert(anyIterable());
+        assertThat(queued()).isZero();
+    }
+
+    @Test
+    public void testKeepBatchWhenRollupFails() {
+        when(auditEventRollupService.increment(anyList())).thenReturn(Mono.error(new IllegalStateException("test")));
+
+        auditEventWriter.write(createEvent("user-1")).block();
+        auditEventWriter.write(createEvent("user-2")).block();
+
+        verify(auditEventRollupService).increment(argThat(batch -> batch.size() == 2));
+        assertThat(capturedBatch()).hasSize(2);
+        assertThat(dropped("error")).isZero();
+    }
+
+    private void recreateWriter() {
+        auditEventWriter.destroy();
+        meterRegistry = new SimpleMeterRegistry();
+        auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository, auditEventBucketService, auditEventRollupService, applicationProperties, meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PersistentAuditEvent> capturedBatch() {
+        ArgumentCaptor<Iterable<PersistentAuditEvent>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(persistenceAuditEventRepository).insert(captor.capture());
+        return (List<PersistentAuditEvent>) captor.getValue();
+    }
+
+    private double queued() {
+        return meterRegistry.get(AuditEventWriter.QUEUED_METER_NAME).gauge().value();
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get(AuditEventWriter.DROPPED_METER_NAME).tag("reason", reason).counter().count();
+    }
+
+    private PersistentAuditEvent createEvent(String principal) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType("test-type");
+        event.setAuditEventDate(Instant.now());
+        return event;
+    }
+}
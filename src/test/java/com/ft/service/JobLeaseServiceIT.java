@@ -0,0 +1,68 @@
+package com.ft.service;
+
+import com.ft.ApiGatewayApp;
+import com.ft.domain.JobLease;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link JobLeaseService}.
+ */
+@SpringBootTest(classes = ApiGatewayApp.class)
+public class JobLeaseServiceIT {
+
+    private static final String JOB = "test-job";
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate.dropCollection(JobLease.class).block();
+    }
+
+    @Test
+    public void assertThatHeldLeaseIsNotAcquiredAgain() {
+        JobLease lease = jobLeaseService.acquire(JOB).block();
+
+        assertThat(lease).isNotNull();
+        assertThat(lease.getFencingToken()).isEqualTo(1);
+        assertThat(jobLeaseService.acquire(JOB).block()).isNull();
+    }
+
+    @Test
+    public void assertThatReleasedLeaseIsKeptForMinimumTime() {
+        JobLease lease = jobLeaseService.acquire(JOB).block();
+
+        jobLeaseService.release(lease).block();
+
+        assertThat(jobLeaseService.acquire(JOB).block()).isNull();
+    }
+
+    @Test
+    public void assertThatExpiredLeaseIsAcquiredWithNewFencingToken() {
+        JobLease lease = jobLeaseService.acquire(JOB).block();
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(JOB)), Update.update("lockedUntil", Instant.now()), JobLease.class).block();
+
+        JobLease next = jobLeaseService.acquire(JOB).block();
+
+        assertThat(next).isNotNull();
+        assertThat(next.getFencingToken()).isEqualTo(lease.getFencingToken() + 1);
+        // The release of the expired lease must leave the new one alone
+        jobLeaseService.release(lease).block();
+        assertThat(mongoTemplate.findById(JOB, JobLease.class).block().getLockedUntil()).isEqualTo(next.getLockedUntil());
+    }
+}
@@ -0,0 +1,114 @@
+package com.ft.service;
+
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.JobLease;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class JobLeaseServiceTest {
+
+    private static final String JOB = "test-job";
+
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private JobLeaseService jobLeaseService;
+
+    private JobLease lease;
+
+    private ApplicationProperties applicationProperties;
+
+    @BeforeEach
+    public void setup() {
+        lease = new JobLease();
+        lease.setId(JOB);
+        lease.setLockedAt(Instant.now());
+        lease.setFencingToken(42);
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(JobLease.class)))
+            .thenReturn(Mono.just(lease));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(JobLease.class)))
+            .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        meterRegistry = new SimpleMeterRegistry();
+        applicationProperties = new ApplicationProperties();
+        jobLeaseService = new JobLeaseService(mongoTemplate, applicationProperties, meterRegistry);
+    }
+
+    @Test
+    public void testRunJobUnderLease() {
+        AtomicReference<JobLease> runUnder = new AtomicReference<>();
+
+        jobLeaseService.runExclusively(JOB, current -> Mono.fromRunnable(() -> runUnder.set(current))).block();
+
+        assertThat(runUnder.get().getFencingToken()).isEqualTo(42);
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(JobLease.class));
+        assertThat(meterRegistry.get(JobLeaseService.DURATION_METER_NAME).tag("job", JOB).tag("outcome", "success").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void testSkipJobWhenLeaseIsHeld() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(JobLease.class)))
+            .thenReturn(Mono.error(new DuplicateKeyException("test")));
+        AtomicReference<JobLease> runUnder = new AtomicReference<>();
+
+        jobLeaseService.runExclusively(JOB, current -> Mono.fromRunnable(() -> runUnder.set(current))).block();
+
+        assertThat(runUnder.get()).isNull();
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(JobLease.class));
+        assertThat(meterRegistry.get(JobLeaseService.CONTENTION_METER_NAME).tag("job", JOB).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testReleaseLeaseWhenJobFails() {
+        assertThatThrownBy(() -> jobLeaseService.runExclusively(JOB, current -> Mono.error(new IllegalStateException("test"))).block())
+            .isInstanceOf(IllegalStateException.class);
+
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(JobLease.class));
+        assertThat(meterRegistry.get(JobLeaseService.DURATION_METER_NAME).tag("job", JOB).tag("outcome", "error").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void testRenewLeaseWhileJobRuns() {
+        applicationProperties.getScheduling().setLockAtMostInSeconds(1);
+
+        jobLeaseService.runExclusively(JOB, current -> Mono.delay(Duration.ofMillis(800))).block();
+
+        // At least two renewals, then the release
+        verify(mongoTemplate, atLeast(3)).updateFirst(any(Query.class), any(Update.class), eq(JobLease.class));
+    }
+
+    @Test
+    public void testStopJobWhenLeaseIsLost() {
+        applicationProperties.getScheduling().setLockAtMostInSeconds(1);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(JobLease.class)))
+            .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+        assertThatThrownBy(() -> jobLeaseService.runExclusively(JOB, current -> Mono.never()).block(Duration.ofSeconds(5)))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Lost");
+        assertThat(meterRegistry.get(JobLeaseService.DURATION_METER_NAME).tag("job", JOB).tag("outcome", "error").timer().count())
+            .isEqualTo(1);
+    }
+}
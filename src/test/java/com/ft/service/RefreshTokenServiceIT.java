@@ -0,0 +1,42 @@
+package com.ft.service;
+
+import com.ft.ApiGatewayApp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link RefreshTokenService}.
+ */
+@SpringBootTest(classes = ApiGatewayApp.class)
+public class RefreshTokenServiceIT {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Test
+    public void assertThatConcurrentUsesOfRefreshTokenSucceedOnce() {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            String token = refreshTokenService.createRefreshToken("refresh-token-service", false).block();
+
+            List<Boolean> used = Mono.zip(use(token), use(token), (first, second) -> Arrays.asList(first, second)).block();
+
+            assertThat(used).containsExactlyInAnyOrder(true, false);
+        }
+    }
+
+    private Mono<Boolean> use(String token) {
+        return refreshTokenService.useRefreshToken(token)
+            .map(refreshToken -> true)
+            .onErrorReturn(false)
+            .subscribeOn(Schedulers.parallel());
+    }
+}
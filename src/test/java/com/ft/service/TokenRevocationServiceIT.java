@@ -0,0 +1,74 @@
+package com.ft.service;
+
+import com.ft.ApiGatewayApp;
+import com.ft.repository.RevokedTokenRepository;
+import com.ft.security.jwt.TokenProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link TokenRevocationService}.
+ */
+@SpringBootTest(classes = ApiGatewayApp.class)
+public class TokenRevocationServiceIT {
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    @BeforeEach
+    public void init() {
+        revokedTokenRepository.deleteAll().block();
+    }
+
+    @Test
+    public void assertThatRevokedTokenIsRejected() {
+        String token = createToken("test-user");
+
+        tokenRevocationService.revokeToken(tokenProvider.getAuthentication(token)).block();
+
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(revokedTokenRepository.count().block()).isEqualTo(1);
+    }
+
+    @Test
+    public void assertThatUserTokensAreRejected() {
+        String token = createToken("test-user");
+        String otherToken = createToken("other-user");
+
+        tokenRevocationService.revokeUserTokens("test-user").block();
+
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(tokenProvider.validateToken(otherToken)).isTrue();
+    }
+
+    @Test
+    public void assertThatRevocationListIsRebuiltFromDatabase() {
+        String token = createToken("test-user");
+        tokenRevocationService.revokeToken(tokenProvider.getAuthentication(token)).block();
+
+        tokenProvider.getRevocationList().rebuild(Collections.emptyList());
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+
+        tokenProvider.getRevocationList().rebuild(revokedTokenRepository.findAll().collectList().block());
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+    }
+
+    private String createToken(String login) {
+        return tokenProvider.createToken(new UsernamePasswordAuthenticationToken(login, login,
+            Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))), false);
+    }
+}
@@ -4,6 +4,7 @@ import com.ft.ApiGatewayApp;
 import com.ft.config.Constants;
 import com.ft.domain.User;
 import com.ft.repository.UserRepository;
+import com.ft.security.KeyDigests;
 import com.ft.service.dto.UserDTO;
 
 import io.github.jhipster.security.RandomUtil;
@@ -21,6 +22,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Integration tests for {@link UserService}.
@@ -91,10 +93,10 @@ public class UserServiceIT {
         String resetKey = RandomUtil.generateResetKey();
         user.setActivated(true);
         user.setResetDate(daysAgo);
-        user.setResetKey(resetKey);
+        user.setResetKey(KeyDigests.digest(resetKey));
         userRepository.save(user).block();
 
-        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", user.getResetKey()).blockOptional();
+        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", resetKey).blockOptional();
         assertThat(maybeUser).isNotPresent();
         userRepository.delete(user).block();
     }
@@ -104,10 +106,10 @@ public class UserServiceIT {
         Instant daysAgo = Instant.now().minus(25, ChronoUnit.HOURS);
         user.setActivated(true);
         user.setResetDate(daysAgo);
-        user.setResetKey("1234");
+        user.setResetKey(KeyDigests.digest("1234"));
         userRepository.save(user).block();
 
-        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", user.getResetKey()).blockOptional();
+        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", "1234").blockOptional();
         assertThat(maybeUser).isNotPresent();
         userRepository.delete(user).block();
     }
@@ -119,10 +121,10 @@ public class UserServiceIT {
         String resetKey = RandomUtil.generateResetKey();
         user.setActivated(true);
         user.setResetDate(daysAgo);
-        user.setResetKey(resetKey);
+        user.setResetKey(KeyDigests.digest(resetKey));
         userRepository.save(user).block();
 
-        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", user.getResetKey()).blockOptional();
+        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", resetKey).blockOptional();
         assertThat(maybeUser).isPresent();
         assertThat(maybeUser.orElse(null).getResetDate()).isNull();
         assertThat(maybeUser.orElse(null).getResetKey()).isNull();
@@ -143,7 +145,7 @@ public class UserServiceIT {
         List<User> users = userRepository.findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(threeDaysAgo)
             .collectList().block();
         assertThat(users).isNotEmpty();
-        userService.removeNotActivatedUsers();
+        userService.removeNotActivatedUsersReactively().blockLast();
         users = userRepository.findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(threeDaysAgo)
             .collectList().block();
         assertThat(users).isEmpty();
@@ -160,7 +162,7 @@ public class UserServiceIT {
         List<User> users = userRepository.findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(threeDaysAgo)
             .collectList().block();
         assertThat(users).isEmpty();
-        userService.removeNotActivatedUsers();
+        userService.removeNotActivatedUsersReactively().blockLast();
         Optional<User> maybeDbUser = userRepository.findById(dbUser.getId()).blockOptional();
         assertThat(maybeDbUser).contains(dbUser);
     }
@@ -179,4 +181,37 @@ public class UserServiceIT {
             .isTrue();
     }
 
+    @Test
+    public void assertThatDuplicateLoginIsRejected() {
+        userRepository.save(user).block();
+        UserDTO userDTO = new UserDTO(user);
+        userDTO.setId(null);
+        userDTO.setEmail("other-" + DEFAULT_EMAIL);
+
+        assertThatThrownBy(() -> userService.createUser(userDTO).block()).isInstanceOf(UsernameAlreadyUsedException.class);
+    }
+
+    @Test
+    public void assertThatDuplicateEmailIsRejectedWhateverItsCase() {
+        userRepository.save(user).block();
+        UserDTO userDTO = new UserDTO(user);
+        userDTO.setId(null);
+        userDTO.setLogin("other-" + DEFAULT_LOGIN);
+        userDTO.setEmail(DEFAULT_EMAIL.toUpperCase());
+
+        assertThatThrownBy(() -> userService.createUser(userDTO).block()).isInstanceOf(EmailAlreadyUsedException.class);
+    }
+
+    @Test
+    public void assertThatNotActivatedUserIsReplacedOnRegistration() {
+        user.setActivated(false);
+        userRepository.save(user).block();
+        UserDTO userDTO = new UserDTO(user);
+        userDTO.setId(null);
+
+        User registeredUser = userService.registerUser(userDTO, "password").block();
+
+        assertThat(registeredUser.getId()).isNotEqualTo(user.getId());
+        assertThat(userRepository.findById(user.getId()).blockOptional()).isNotPresent();
+    }
 }
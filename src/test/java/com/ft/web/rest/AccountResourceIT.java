@@ -6,6 +6,7 @@ import com.ft.domain.User;
 import com.ft.repository.AuthorityRepository;
 import com.ft.repository.UserRepository;
 import com.ft.security.AuthoritiesConstants;
+import com.ft.security.KeyDigests;
 import com.ft.service.UserService;
 import com.ft.service.dto.PasswordChangeDTO;
 import com.ft.service.dto.UserDTO;
@@ -157,7 +158,7 @@ public class AccountResourceIT {
             .exchange()
             .expectStatus().isBadRequest();
 
-        Optional<User> user = userRepository.findOneByEmailIgnoreCase("funky@example.com").blockOptional();
+        Optional<User> user = userRepository.findOneByEmail("funky@example.com").blockOptional();
         assertThat(user.isPresent()).isFalse();
     }
 
@@ -272,7 +273,7 @@ public class AccountResourceIT {
             .exchange()
             .expectStatus().isCreated();
 
-        Optional<User> testUser = userRepository.findOneByEmailIgnoreCase("alice2@example.com").blockOptional();
+        Optional<User> testUser = userRepository.findOneByEmail("alice2@example.com").blockOptional();
         assertThat(testUser.isPresent()).isTrue();
         testUser.get().setActivated(true);
         userRepository.save(testUser.get()).block();
@@ -399,7 +400,7 @@ public class AccountResourceIT {
         user.setEmail("activate-account@example.com");
         user.setPassword(RandomStringUtils.random(60));
         user.setActivated(false);
-        user.setActivationKey(activationKey);
+        user.setActivationKey(KeyDigests.digest(activationKey));
 
         userRepository.save(user).block();
 
@@ -482,7 +483,7 @@ public class AccountResourceIT {
             .exchange()
             .expectStatus().isBadRequest();
 
-        assertThat(userRepository.findOneByEmailIgnoreCase("invalid email").blockOptional()).isNotPresent();
+        assertThat(userRepository.findOneByEmail("invalid email").blockOptional()).isNotPresent();
     }
 
     @Test
@@ -703,11 +704,11 @@ public class AccountResourceIT {
         user.setLogin("finish-password-reset");
         user.setEmail("finish-password-reset@example.com");
         user.setResetDate(Instant.now().plusSeconds(60));
-        user.setResetKey("reset key");
+        user.setResetKey(KeyDigests.digest("reset key"));
         userRepository.save(user).block();
 
         KeyAndPasswordVM keyAndPassword = new KeyAndPasswordVM();
-        keyAndPassword.setKey(user.getResetKey());
+        keyAndPassword.setKey("reset key");
         keyAndPassword.setNewPassword("new password");
 
         accountWebTestClient.post().uri("/api/account/reset-password/finish")
@@ -727,11 +728,11 @@ public class AccountResourceIT {
         user.setLogin("finish-password-reset-too-small");
         user.setEmail("finish-password-reset-too-small@example.com");
         user.setResetDate(Instant.now().plusSeconds(60));
-        user.setResetKey("reset key too small");
+        user.setResetKey(KeyDigests.digest("reset key too small"));
         userRepository.save(user).block();
 
         KeyAndPasswordVM keyAndPassword = new KeyAndPasswordVM();
-        keyAndPassword.setKey(user.getResetKey());
+        keyAndPassword.setKey("reset key too small");
         keyAndPassword.setNewPassword("foo");
 
         accountWebTestClient.post().uri("/api/account/reset-password/finish")
@@ -1,20 +1,28 @@
 package com.ft.web.rest;
 
 import com.ft.ApiGatewayApp;
+import com.ft.config.ApplicationProperties;
+import com.ft.domain.AuditEventRollup;
 import com.ft.domain.PersistentAuditEvent;
 import com.ft.repository.PersistenceAuditEventRepository;
 import com.ft.security.AuthoritiesConstants;
+import com.ft.service.AuditEventRollupService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.net.URI;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.TimeZone;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.Matchers.hasItem;
@@ -35,14 +43,24 @@ public class AuditResourceIT {
     @Autowired
     private PersistenceAuditEventRepository auditEventRepository;
 
+    @Autowired
+    private AuditEventRollupService auditEventRollupService;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
     private PersistentAuditEvent auditEvent;
 
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private WebTestClient webTestClient;
 
     @BeforeEach
     public void initTest() {
         auditEventRepository.deleteAll().block();
+        mongoTemplate.dropCollection(AuditEventRollup.class).block();
         auditEvent = new PersistentAuditEvent();
         auditEvent.setAuditEventType(SAMPLE_TYPE);
         auditEvent.setPrincipal(SAMPLE_PRINCIPAL);
@@ -62,6 +80,22 @@ public class AuditResourceIT {
             .expectBody().jsonPath("$.[*].principal").value(hasItem(SAMPLE_PRINCIPAL));
     }
 
+    @Test
+    public void getAllAuditsWithUnsupportedSortOfBuckets() {
+        ApplicationProperties.AuditEvents.Storage storage = applicationProperties.getAuditEvents().getStorage();
+        applicationProperties.getAuditEvents().setStorage(ApplicationProperties.AuditEvents.Storage.BUCKET);
+        try {
+            webTestClient.get().uri("/management/audits?sort=principal,asc")
+                .exchange()
+                .expectStatus().isBadRequest();
+            webTestClient.get().uri("/management/audits?sort=auditEventDate,asc&sort=id")
+                .exchange()
+                .expectStatus().isOk();
+        } finally {
+            applicationProperties.getAuditEvents().setStorage(storage);
+        }
+    }
+
     @Test
     public void getAudit() {
         // Initialize the database
@@ -109,6 +143,88 @@ public class AuditResourceIT {
             .expectHeader().valueEquals("X-Total-Count", "0");
     }
 
+    @Test
+    public void getAuditsAfterCursor() {
+        // Initialize the database with 3 audits, one second apart
+        for (int i = 0; i < 3; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setAuditEventType(SAMPLE_TYPE);
+            event.setPrincipal(SAMPLE_PRINCIPAL + i);
+            event.setAuditEventDate(SAMPLE_TIMESTAMP.plusSeconds(i));
+            auditEventRepository.save(event).block();
+        }
+
+        // Get the first page, newest first
+        String link = webTestClient.get().uri("/management/audits?cursor=&size=2")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().doesNotExist("X-Total-Count")
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(2)
+            .jsonPath("$.[0].principal").isEqualTo(SAMPLE_PRINCIPAL + 2)
+            .jsonPath("$.[1].principal").isEqualTo(SAMPLE_PRINCIPAL + 1)
+            .returnResult().getResponseHeaders().getFirst(HttpHeaders.LINK);
+        assertThat(link).endsWith("; rel=\"next\"");
+
+        // Follow the link to the last page
+        webTestClient.get().uri(URI.create(link.substring(link.indexOf('<') + 1, link.indexOf('>'))))
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().doesNotExist(HttpHeaders.LINK)
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(1)
+            .jsonPath("$.[0].principal").isEqualTo(SAMPLE_PRINCIPAL + 0);
+    }
+
+    @Test
+    public void getAuditsWithInvalidCursor() {
+        webTestClient.get().uri("/management/audits?cursor=invalid")
+            .exchange()
+            .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getAuditStats() {
+        // Count 2 audits of the sample principal in their rollup
+        PersistentAuditEvent other = new PersistentAuditEvent();
+        other.setAuditEventType(SAMPLE_TYPE);
+        other.setPrincipal(SAMPLE_PRINCIPAL);
+        other.setAuditEventDate(SAMPLE_TIMESTAMP.plusSeconds(60));
+        auditEventRollupService.increment(Arrays.asList(auditEvent, other)).block();
+
+        String fromDate = SAMPLE_TIMESTAMP.minusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+        String toDate = SAMPLE_TIMESTAMP.plusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+
+        webTestClient.get().uri("/management/audits/stats?fromDate=" + fromDate + "&toDate=" + toDate + "&principal=" + SAMPLE_PRINCIPAL)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.APPLICATION_JSON)
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(1)
+            .jsonPath("$.[0].eventType").isEqualTo(SAMPLE_TYPE)
+            .jsonPath("$.[0].count").isEqualTo(2);
+    }
+
+    @Test
+    public void getAuditStatsPerDayInUtc() {
+        auditEventRollupService.increment(Arrays.asList(auditEvent)).block();
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        // Far enough from UTC for the local day to miss the event
+        TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+        try {
+            String date = SAMPLE_TIMESTAMP.toString().substring(0, 10);
+            webTestClient.get().uri("/management/audits/stats?fromDate=" + date + "&toDate=" + date + "&granularity=DAY")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$.[0].date").isEqualTo(date + "T00:00:00Z")
+                .jsonPath("$.[0].count").isEqualTo(1);
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
     @Test
     public void getNonExistingAudit() {
         // Get the audit
@@ -4,14 +4,21 @@ import com.ft.ApiGatewayApp;
 import com.ft.domain.User;
 import com.ft.repository.UserRepository;
 import com.ft.web.rest.vm.LoginVM;
+import com.ft.web.rest.vm.RefreshTokenVM;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.util.Map;
+
+import static org.hamcrest.Matchers.not;
+
 /**
  * Integration tests for the {@link UserJWTController} REST controller.
  */
@@ -89,4 +96,79 @@ public class UserJWTControllerIT {
             .expectBody()
             .jsonPath("$.id_token").doesNotExist();
     }
+
+    @Test
+    public void testAuthorizeThrottled() throws Exception {
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-throttled");
+        login.setPassword("wrong password");
+        for (int i = 0; i < 5; i++) {
+            webTestClient.post().uri("/api/authenticate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(TestUtil.convertObjectToJsonBytes(login))
+                .exchange()
+                .expectStatus().isUnauthorized();
+        }
+
+        webTestClient.post().uri("/api/authenticate")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(login))
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+            .expectHeader().exists(HttpHeaders.RETRY_AFTER)
+            .expectHeader().doesNotExist("Authorization");
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-refresh");
+        user.setEmail("user-jwt-controller-refresh@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+
+        userRepository.save(user).block();
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-refresh");
+        login.setPassword("test");
+        String refreshToken = webTestClient.post().uri("/api/authenticate")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(login))
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(Map.class)
+            .returnResult().getResponseBody().get("refresh_token").toString();
+
+        RefreshTokenVM refresh = new RefreshTokenVM();
+        refresh.setRefreshToken(refreshToken);
+        webTestClient.post().uri("/api/authenticate/refresh")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(refresh))
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueMatches("Authorization", "Bearer .+")
+            .expectBody()
+            .jsonPath("$.id_token").isNotEmpty()
+            .jsonPath("$.refresh_token").value(not(refreshToken));
+
+        // A refresh token can only be used once
+        webTestClient.post().uri("/api/authenticate/refresh")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(refresh))
+            .exchange()
+            .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    public void testRefreshFails() throws Exception {
+        RefreshTokenVM refresh = new RefreshTokenVM();
+        refresh.setRefreshToken("wrong-refresh-token");
+        webTestClient.post().uri("/api/authenticate/refresh")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(refresh))
+            .exchange()
+            .expectStatus().isUnauthorized()
+            .expectHeader().doesNotExist("Authorization");
+    }
 }
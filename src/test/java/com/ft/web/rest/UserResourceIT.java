@@ -14,10 +14,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.net.URI;
 import java.time.Instant;
 import java.util.*;
 import java.util.function.Consumer;
@@ -234,6 +236,36 @@ public class UserResourceIT {
         assertThat(foundUser.getLangKey()).isEqualTo(DEFAULT_LANGKEY);
     }
 
+    @Test
+    public void getAllUsersAfterCursor() {
+        // Initialize the database with 3 users
+        for (String login : Arrays.asList("cursor-c", "cursor-a", "cursor-b")) {
+            User other = createEntity();
+            other.setLogin(login);
+            other.setEmail(login + "@localhost");
+            userRepository.save(other).block();
+        }
+
+        // Get the first page, by login
+        String link = webTestClient.get().uri("/api/users?cursor=&size=2&count=true")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals("X-Total-Count", "3")
+            .expectBody()
+            .jsonPath("$.[*].login").isEqualTo(Arrays.asList("cursor-a", "cursor-b"))
+            .returnResult().getResponseHeaders().getFirst(HttpHeaders.LINK);
+
+        // Follow the link to the last page
+        webTestClient.get().uri(URI.create(link.substring(link.indexOf('<') + 1, link.indexOf('>'))))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().doesNotExist(HttpHeaders.LINK)
+            .expectBody()
+            .jsonPath("$.[*].login").isEqualTo(Collections.singletonList("cursor-c"));
+    }
+
     @Test
     public void getUser() {
         // Initialize the database
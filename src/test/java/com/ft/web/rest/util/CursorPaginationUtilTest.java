@@ -0,0 +1,58 @@
+package com.ft.web.rest.util;
+
+import com.ft.service.dto.CursorPage;
+import com.ft.web.rest.errors.BadRequestAlertException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CursorPaginationUtilTest {
+
+    @Test
+    public void testLinkNextPage() {
+        CursorPage<String> page = new CursorPage<>(Arrays.asList("a", "b"), Arrays.asList("user@localhost", "user-3"));
+
+        HttpHeaders headers = CursorPaginationUtil.generateCursorHttpHeaders(
+            UriComponentsBuilder.fromUriString("http://localhost/api/users?cursor=&size=2&page=1"), page, null);
+
+        String link = headers.getFirst(HttpHeaders.LINK);
+        assertThat(link).startsWith("<http://localhost/api/users?size=2&cursor=").endsWith(">; rel=\"next\"");
+        assertThat(headers.containsKey("X-Total-Count")).isFalse();
+        String cursor = link.substring(link.indexOf("cursor=") + "cursor=".length(), link.indexOf('>'));
+        assertThat(CursorPaginationUtil.decodeCursor(cursor, "test", 2)).containsExactly("user@localhost", "user-3");
+    }
+
+    @Test
+    public void testLastPage() {
+        CursorPage<String> page = new CursorPage<>(Collections.singletonList("a"), null);
+
+        HttpHeaders headers = CursorPaginationUtil.generateCursorHttpHeaders(
+            UriComponentsBuilder.fromUriString("http://localhost/api/users?cursor=abc"), page, 21L);
+
+        assertThat(headers.containsKey(HttpHeaders.LINK)).isFalse();
+        assertThat(headers.getFirst("X-Total-Count")).isEqualTo("21");
+    }
+
+    @Test
+    public void testFirstPageCursor() {
+        List<String> keys = CursorPaginationUtil.decodeCursor("", "test", 2);
+
+        assertThat(keys).isEmpty();
+    }
+
+    @Test
+    public void testRejectInvalidCursor() {
+        assertThatThrownBy(() -> CursorPaginationUtil.decodeCursor("not base64!", "test", 2))
+            .isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> CursorPaginationUtil.decodeCursor("YQ", "test", 2))
+            .isInstanceOf(BadRequestAlertException.class);
+    }
+}